@@ -0,0 +1,68 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+/**
+ * Benchmark for calculating the hash of a block.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockHashBenchmark {
+
+	@Param({"1", "10", "100"})
+	private int transactions;
+
+	private Node owner;
+	private List<Transaction> blockTransactions;
+
+	/**
+	 * Creates the transactions for the block.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42L);
+		owner = new Node(0);
+		Node receiver = new Node(1);
+		blockTransactions = new ArrayList<>(transactions);
+		for (int i = 0; i < transactions; i++) {
+			long amount = 1 + random.nextInt(LedgerFixture.MAX_AMOUNT);
+			Transaction transaction = new Transaction(i, owner, receiver, amount, 0, new TreeSet<>());
+			//Transactions cache their hash, so calculate it up front
+			transaction.getHash();
+			blockTransactions.add(transaction);
+		}
+	}
+
+	/**
+	 * @return - the hash of a new block with the transactions
+	 */
+	@Benchmark
+	public Sha256Hash blockHash() {
+		return new Block(1, owner, new ArrayList<>(blockTransactions)).getHash();
+	}
+}
@@ -0,0 +1,203 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.BranchAndBoundSourceSelector;
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.ProofConstructor;
+import nl.tudelft.blockchain.scaleoutdistributedledger.TransactionCreator;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.ProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Ed25519Key;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.simulation.tendermint.TendermintHelper;
+import nl.tudelft.blockchain.scaleoutdistributedledger.validation.ValidationException;
+
+import lombok.Getter;
+
+/**
+ * Synthetic ledger for benchmarks.
+ *
+ * Every node has its own local store with its own view of the other nodes, just like in a real
+ * simulation. Transactions are created with the {@link TransactionCreator}, committed to the mock
+ * main chain and delivered to their receivers as proof messages, which are validated before they
+ * are accepted. All random choices come from the given seed, so the same seed gives the same ledger.
+ */
+public class LedgerFixture {
+	public static final long INITIAL_MONEY = 1000000;
+	public static final int MAX_AMOUNT = 1000;
+
+	private final Random random;
+	private final int nodeCount;
+	private final LocalStore[] stores;
+
+	/**
+	 * Transactions which have been created, but not yet delivered to their receiver.
+	 */
+	@Getter
+	private final List<Transaction> undelivered = new ArrayList<>();
+
+	/**
+	 * Creates a ledger with only the genesis block.
+	 * @param seed      - the seed
+	 * @param nodeCount - the number of nodes
+	 */
+	public LedgerFixture(long seed, int nodeCount) {
+		this.random = new Random(seed);
+		this.nodeCount = nodeCount;
+		this.stores = new LocalStore[nodeCount];
+
+		Map<Integer, Node> nodeList = new HashMap<>();
+		for (int i = 0; i < nodeCount; i++) {
+			nodeList.put(i, new Node(i));
+		}
+		Block genesisBlock = TendermintHelper.generateGenesisBlock(INITIAL_MONEY, nodeList);
+
+		for (int i = 0; i < nodeCount; i++) {
+			stores[i] = createStore(i, genesisBlock.genesisCopy());
+		}
+	}
+
+	/**
+	 * @param id           - the id of the own node of the store
+	 * @param genesisBlock - the genesis block for this store
+	 * @return             - a local store with its own view of all nodes
+	 */
+	private LocalStore createStore(int id, Block genesisBlock) {
+		OwnNode ownNode = new OwnNode(id);
+		Ed25519Key key = new Ed25519Key();
+		ownNode.setPrivateKey(key.getPrivateKey());
+		ownNode.setPublicKey(key.getPublicKey());
+		ownNode.getChain().setGenesisBlock(genesisBlock);
+
+		Map<Integer, Node> nodes = new HashMap<>();
+		for (int i = 0; i < nodeCount; i++) {
+			if (i == id) continue;
+			Node node = new Node(i);
+			node.getChain().setGenesisBlock(genesisBlock);
+			nodes.put(i, node);
+		}
+
+		LocalStore localStore = new LocalStore(ownNode, null, genesisBlock, false);
+		localStore.getNodes().putAll(nodes);
+		localStore.setSourceSelector(new BranchAndBoundSourceSelector(100000, 50));
+		return localStore;
+	}
+
+	/**
+	 * Every node appends a block with the given number of transactions and commits it. The
+	 * transactions are then delivered to their receivers, except when they are sent by a node for
+	 * which delivery is held back.
+	 * @param transactionsPerNode - the number of transactions each node creates
+	 * @param receiverId          - the id of the node receiving all transactions, or -1 for random receivers
+	 * @param holdBackSenderId    - the id of the node whose transactions are not delivered, or -1
+	 * @throws ValidationException - If a delivered transaction is invalid.
+	 */
+	public void round(int transactionsPerNode, int receiverId, int holdBackSenderId) throws ValidationException {
+		List<Transaction> created = new ArrayList<>();
+		for (int i = 0; i < nodeCount; i++) {
+			if (i == receiverId) continue;
+
+			LocalStore localStore = stores[i];
+			Block block = localStore.getOwnNode().getChain().appendNewBlock();
+			for (int t = 0; t < transactionsPerNode; t++) {
+				int receiver = receiverId >= 0 ? receiverId : randomOtherNode(i);
+				long amount = 1 + random.nextInt(MAX_AMOUNT);
+				if (localStore.getAvailableMoney() < amount) break;
+
+				Transaction transaction = new TransactionCreator(localStore, localStore.getNode(receiver), amount).createTransaction();
+				block.addTransaction(transaction);
+				created.add(transaction);
+			}
+			block.commit(localStore);
+		}
+
+		for (Transaction transaction : created) {
+			if (transaction.getSender().getId() == holdBackSenderId) {
+				undelivered.add(transaction);
+			} else {
+				deliver(transaction);
+			}
+		}
+	}
+
+	/**
+	 * @param id - the id of a node
+	 * @return   - a random node id different from the given one
+	 */
+	private int randomOtherNode(int id) {
+		int other = random.nextInt(nodeCount - 1);
+		return other >= id ? other + 1 : other;
+	}
+
+	/**
+	 * Sends the given transaction to its receiver, which validates and accepts it.
+	 * @param transaction - the transaction
+	 * @throws ValidationException - If the transaction is invalid.
+	 */
+	public void deliver(Transaction transaction) throws ValidationException {
+		Proof proof = new ProofConstructor(transaction).constructProof();
+		LocalStore receiverStore = stores[transaction.getReceiver().getId()];
+		Proof decoded;
+		try {
+			decoded = new Proof(new ProofMessage(proof), receiverStore);
+		} catch (IOException ex) {
+			throw new IllegalStateException("Unable to decode proof", ex);
+		}
+
+		receiverStore.getVerification().validateNewMessage(decoded, receiverStore);
+		decoded.applyUpdates(receiverStore);
+		if (decoded.getTransaction().getAmount() > 0) {
+			receiverStore.addUnspentTransaction(decoded.getTransaction());
+		}
+		transaction.getReceiver().updateMetaKnowledge(proof);
+	}
+
+	/**
+	 * @param id - the id of the node
+	 * @return   - the local store of the given node
+	 */
+	public LocalStore getStore(int id) {
+		return stores[id];
+	}
+
+	/**
+	 * @param seed                - the seed
+	 * @param nodeCount           - the number of nodes
+	 * @param depth               - the number of blocks per chain
+	 * @param transactionsPerNode - the number of transactions in each block
+	 * @return                    - a ledger where the transactions of node 0 in the last round are not delivered
+	 * @throws ValidationException - If a transaction is invalid.
+	 */
+	public static LedgerFixture withDepth(long seed, int nodeCount, int depth, int transactionsPerNode) throws ValidationException {
+		LedgerFixture fixture = new LedgerFixture(seed, nodeCount);
+		for (int i = 1; i < depth; i++) {
+			fixture.round(transactionsPerNode, -1, -1);
+		}
+		fixture.round(transactionsPerNode, -1, 0);
+		return fixture;
+	}
+
+	/**
+	 * @param seed         - the seed
+	 * @param nodeCount    - the number of nodes
+	 * @param unspentCount - the minimum number of unspent transactions of node 0
+	 * @return             - a ledger where node 0 has received at least the given number of transactions
+	 * @throws ValidationException - If a transaction is invalid.
+	 */
+	public static LedgerFixture withUnspent(long seed, int nodeCount, int unspentCount) throws ValidationException {
+		LedgerFixture fixture = new LedgerFixture(seed, nodeCount);
+		while (fixture.getStore(0).getUnspent().size() < unspentCount) {
+			fixture.round(1, 0, -1);
+		}
+		return fixture;
+	}
+}
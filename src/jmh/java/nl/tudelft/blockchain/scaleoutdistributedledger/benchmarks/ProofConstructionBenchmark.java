@@ -0,0 +1,63 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.ProofConstructor;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+/**
+ * Benchmark for constructing the proof of a transaction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProofConstructionBenchmark {
+
+	@Param({"10", "50", "200"})
+	private int depth;
+
+	/**
+	 * If true, the receiver is assumed to know nothing, so the entire history has to be sent.
+	 */
+	@Param({"false", "true"})
+	private boolean coldReceiver;
+
+	private Transaction transaction;
+
+	/**
+	 * Creates a ledger of the requested depth.
+	 * @throws Exception - If the ledger is invalid.
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		LedgerFixture fixture = LedgerFixture.withDepth(42L, 8, depth, 2);
+		transaction = fixture.getUndelivered().get(0);
+		if (coldReceiver) {
+			transaction.getReceiver().getMetaKnowledge().clear();
+		}
+	}
+
+	/**
+	 * @return - the constructed proof
+	 */
+	@Benchmark
+	public Proof constructProof() {
+		return new ProofConstructor(transaction).constructProof();
+	}
+}
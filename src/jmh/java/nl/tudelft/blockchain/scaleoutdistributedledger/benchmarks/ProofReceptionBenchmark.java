@@ -0,0 +1,84 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.ProofConstructor;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.ProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.validation.ValidationException;
+import nl.tudelft.blockchain.scaleoutdistributedledger.validation.Verification;
+
+/**
+ * Benchmark for decoding and validating a received proof.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProofReceptionBenchmark {
+
+	@Param({"10", "50", "200"})
+	private int depth;
+
+	private ProofMessage message;
+	private LocalStore receiverStore;
+	private Proof decoded;
+
+	/**
+	 * Creates a ledger of the requested depth and the message for a transaction which has not been delivered yet.
+	 * @throws Exception - If the ledger is invalid.
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		LedgerFixture fixture = LedgerFixture.withDepth(42L, 8, depth, 2);
+		Transaction transaction = fixture.getUndelivered().get(0);
+		message = new ProofMessage(new ProofConstructor(transaction).constructProof());
+		receiverStore = fixture.getStore(transaction.getReceiver().getId());
+	}
+
+	/**
+	 * Decodes a fresh proof for validation, since validating caches results in the proof.
+	 * @throws IOException - If decoding fails.
+	 */
+	@Setup(Level.Invocation)
+	public void decodeForValidation() throws IOException {
+		decoded = new Proof(message, receiverStore);
+	}
+
+	/**
+	 * @return - the decoded proof
+	 * @throws IOException - If decoding fails.
+	 */
+	@Benchmark
+	public Proof decode() throws IOException {
+		return new Proof(message, receiverStore);
+	}
+
+	/**
+	 * @return - the proof
+	 * @throws ValidationException - If the proof is invalid.
+	 */
+	@Benchmark
+	public Proof validate() throws ValidationException {
+		new Verification().validateNewMessage(decoded, receiverStore);
+		return decoded;
+	}
+}
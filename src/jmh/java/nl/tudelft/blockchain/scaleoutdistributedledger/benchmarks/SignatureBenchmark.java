@@ -0,0 +1,67 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Ed25519Key;
+
+/**
+ * Benchmark for signing and verifying with Ed25519.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignatureBenchmark {
+
+	private byte[] message;
+	private byte[] privateKey;
+	private byte[] publicKey;
+	private byte[] signature;
+
+	/**
+	 * Creates the key pair and the message.
+	 * @throws Exception - If signing fails.
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		//The same size as the data that is signed for a block abstract.
+		message = new byte[40];
+		new Random(42L).nextBytes(message);
+		Ed25519Key key = new Ed25519Key();
+		privateKey = key.getPrivateKey();
+		publicKey = key.getPublicKey();
+		signature = Ed25519Key.sign(message, privateKey);
+	}
+
+	/**
+	 * @return - the signature
+	 * @throws Exception - If signing fails.
+	 */
+	@Benchmark
+	public byte[] sign() throws Exception {
+		return Ed25519Key.sign(message, privateKey);
+	}
+
+	/**
+	 * @return - if the signature is valid
+	 * @throws Exception - If verifying fails.
+	 */
+	@Benchmark
+	public boolean verify() throws Exception {
+		return Ed25519Key.verify(message, signature, publicKey);
+	}
+}
@@ -0,0 +1,92 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.BranchAndBoundSourceSelector;
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.TransactionCreator;
+import nl.tudelft.blockchain.scaleoutdistributedledger.TransactionTuple;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+/**
+ * Benchmark for selecting the sources of a new transaction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SourceSelectionBenchmark {
+
+	@Param({"16", "64", "256"})
+	private int unspent;
+
+	@Param({"rounds", "branchAndBound"})
+	private String selector;
+
+	private LocalStore localStore;
+	private Node receiver;
+	private long amount;
+
+	/**
+	 * Creates a ledger in which node 0 has the requested number of unspent transactions.
+	 * @throws Exception - If the ledger is invalid.
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		LedgerFixture fixture = LedgerFixture.withUnspent(42L, 8, unspent);
+		localStore = fixture.getStore(0);
+		receiver = localStore.getNode(1);
+		localStore.setSourceSelector("rounds".equals(selector) ? null : new BranchAndBoundSourceSelector(100000, 50));
+
+		//Use an amount which needs a few of the received transactions (not the genesis transaction).
+		long received = 0;
+		for (Transaction transaction : localStore.getUnspent()) {
+			if (transaction.getSender() != null) received += transaction.getAmount();
+		}
+		amount = LedgerFixture.INITIAL_MONEY + received / 4;
+	}
+
+	/**
+	 * @return - the selected sources
+	 */
+	@Benchmark
+	public TransactionTuple bestSources() {
+		return new Creator(localStore, receiver, amount).select();
+	}
+
+	/**
+	 * Creator which exposes the source selection.
+	 */
+	private static class Creator extends TransactionCreator {
+		/**
+		 * @param localStore - the local store
+		 * @param receiver   - the receiver
+		 * @param amount     - the amount
+		 */
+		Creator(LocalStore localStore, Node receiver, long amount) {
+			super(localStore, receiver, amount);
+		}
+
+		/**
+		 * @return - the best sources
+		 */
+		public TransactionTuple select() {
+			return bestSources();
+		}
+	}
+}
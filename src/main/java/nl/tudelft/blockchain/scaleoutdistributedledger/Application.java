@@ -1,6 +1,7 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.logging.Level;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
@@ -10,6 +11,8 @@ import nl.tudelft.blockchain.scaleoutdistributedledger.model.mainchain.MainChain
 import nl.tudelft.blockchain.scaleoutdistributedledger.simulation.CancellableInfiniteRunnable;
 import nl.tudelft.blockchain.scaleoutdistributedledger.simulation.transactionpattern.ITransactionPattern;
 import nl.tudelft.blockchain.scaleoutdistributedledger.sockets.SocketServer;
+import nl.tudelft.blockchain.scaleoutdistributedledger.storage.BlockArchive;
+import nl.tudelft.blockchain.scaleoutdistributedledger.storage.BlockStore;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 
 import lombok.Getter;
@@ -31,8 +34,14 @@ public class Application {
 	@Getter
 	private Thread serverThread;
 	
+	@Getter
+	private SocketServer socketServer;
+	
 	@Getter
 	private TransactionSender transactionSender;
+	
+	@Getter
+	private BlockCommitter blockCommitter;
 
 	/**
 	 * Creates a new application.
@@ -74,13 +83,48 @@ public class Application {
 		// Setup local store
 		localStore = new LocalStore(ownNode, this, genesisBlock, this.isProduction);
 		localStore.initMainChain();
+		if (SimulationMain.BRANCH_AND_BOUND_SOURCE_SELECTION) {
+			localStore.setSourceSelector(new BranchAndBoundSourceSelector(
+					SimulationMain.SOURCE_SELECTION_MAX_NODES, SimulationMain.SOURCE_SELECTION_MAX_TIME));
+		}
+		if (SimulationMain.ARCHIVE_FOREIGN_CHAINS) {
+			localStore.setBlockArchive(BlockArchive.createTemporary(localStore,
+					SimulationMain.ARCHIVE_HOT_BLOCKS, SimulationMain.ARCHIVE_CACHE_SIZE));
+		}
+		localStore.setParallelVerification(SimulationMain.PARALLEL_VERIFICATION);
+		localStore.setHeightAdvertisements(SimulationMain.HEIGHT_ADVERTISEMENTS || SimulationMain.DELTA_CHAIN_UPDATES);
+		localStore.setDeltaChainUpdates(SimulationMain.DELTA_CHAIN_UPDATES);
+		localStore.setAcknowledgedDelivery(SimulationMain.ACKNOWLEDGED_DELIVERY);
+		localStore.setCheckpointing(SimulationMain.CHECKPOINT_CHAINS);
+		localStore.setCheckpointMargin(SimulationMain.CHECKPOINT_MARGIN);
+		if (SimulationMain.PERSIST_CHAINS) {
+			openBlockStore(ownNode);
+		}
 
-		serverThread = new Thread(new SocketServer(nodePort, localStore));
+		socketServer = new SocketServer(nodePort, localStore);
+		serverThread = new Thread(socketServer);
 		serverThread.start();
+		blockCommitter = new BlockCommitter(localStore);
 		transactionSender = new TransactionSender(localStore);
 		TrackerHelper.setRunning(ownNode.getId(), true);
 	}
 	
+	/**
+	 * Opens the block store of the given node and recovers the chains that were stored in it
+	 * before a restart.
+	 * @param ownNode - the own node
+	 * @throws IOException - If the block store cannot be read.
+	 */
+	private void openBlockStore(OwnNode ownNode) throws IOException {
+		BlockStore blockStore = new BlockStore(
+				Paths.get(SimulationMain.STORAGE_DIRECTORY, "node-" + ownNode.getId()), SimulationMain.SYNC_ON_COMMIT);
+		
+		//All nodes must be known before their chains can be restored
+		localStore.updateNodes();
+		blockStore.recover(localStore);
+		localStore.setBlockStore(blockStore);
+	}
+	
 	/**
 	 * Stops this application. This means that this application no longer accepts any new
 	 * connections and that all existing connections are closed.
@@ -88,8 +132,25 @@ public class Application {
 	public void kill() {
 		if (serverThread.isAlive()) serverThread.interrupt();
 		if (transactionSender != null) transactionSender.shutdownNow();
+		if (blockCommitter != null) blockCommitter.shutdownNow();
 		
 		localStore.getMainChain().stop();
+		
+		if (localStore.getBlockStore() != null) {
+			try {
+				localStore.getBlockStore().close();
+			} catch (IOException ex) {
+				Log.log(Level.WARNING, "Unable to close the block store", ex);
+			}
+		}
+		
+		if (localStore.getBlockArchive() != null) {
+			try {
+				localStore.getBlockArchive().close();
+			} catch (IOException ex) {
+				Log.log(Level.WARNING, "Unable to close the block archive", ex);
+			}
+		}
 	}
 	
 	/**
@@ -146,6 +207,7 @@ public class Application {
 	public void finishTransactionSending() {
 		int nodeID = localStore.getOwnNode().getId();
 		try {
+			if (blockCommitter != null) blockCommitter.waitUntilDone();
 			transactionSender.waitUntilDone();
 			TrackerHelper.setRunning(nodeID, false);
 		} catch (IOException ex) {
@@ -0,0 +1,128 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
+
+/**
+ * Commits our blocks to the main chain in the background.
+ *
+ * The caller does not wait for the main chain. A block is marked as committed once its abstract
+ * is on the main chain, and failed commits are retried. Blocks are marked as committed in the
+ * order in which they were committed, so the next committed block of every block stays correct.
+ */
+public class BlockCommitter {
+	//The maximum number of times that the abstract of a block is submitted
+	private static final int MAX_COMMIT_ATTEMPTS = 3;
+	//In milliseconds, the time to wait before submitting the abstract of a block again
+	private static final long COMMIT_RETRY_DELAY = 1000;
+
+	private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor();
+	private final LocalStore localStore;
+
+	//Completes when the last block that was committed has been handled
+	private CompletableFuture<Boolean> last = CompletableFuture.completedFuture(true);
+	private volatile Block lastSubmitted;
+
+	/**
+	 * @param localStore - the local store
+	 */
+	public BlockCommitter(LocalStore localStore) {
+		this.localStore = localStore;
+	}
+
+	/**
+	 * Starts committing the given block.
+	 * @param block - the block to commit
+	 * @return      - a future with whether the block was committed, which completes after the
+	 *                blocks that were committed before it
+	 * @throws IllegalStateException - If the block has already been committed.
+	 */
+	public synchronized CompletableFuture<Boolean> commit(Block block) {
+		block.markCommitPending();
+		lastSubmitted = block;
+
+		CompletableFuture<Boolean> onMainChain = new CompletableFuture<>();
+		submit(block, 1, onMainChain);
+
+		//A failure of the previous block must not hold back this block
+		CompletableFuture<Boolean> previous = last.handle((success, ex) -> ex == null && success);
+		CompletableFuture<Boolean> committed = previous.thenCombine(onMainChain, (previousSuccess, success) -> {
+			if (success) block.completeCommit(localStore);
+			return success;
+		});
+		last = committed;
+		return committed;
+	}
+
+	/**
+	 * Submits the abstract of the given block, and submits it again later if that fails.
+	 * @param block   - the block
+	 * @param attempt - the number of times that the abstract is submitted, including this time
+	 * @param result  - the future to complete with whether the abstract is on the main chain
+	 */
+	private void submit(Block block, int attempt, CompletableFuture<Boolean> result) {
+		block.submitAbstract(localStore).whenComplete((hash, ex) -> {
+			if (ex == null && hash != null) {
+				result.complete(true);
+				return;
+			}
+
+			if (attempt >= MAX_COMMIT_ATTEMPTS) {
+				Log.log(Level.WARNING, "Giving up on committing block " + block.getNumber() + " after " + attempt + " attempts",
+						localStore.getOwnNode().getId());
+				result.complete(false);
+				return;
+			}
+
+			Log.log(Level.INFO, "Committing block " + block.getNumber() + " failed, trying again", localStore.getOwnNode().getId());
+			try {
+				retryExecutor.schedule(() -> submit(block, attempt + 1, result), COMMIT_RETRY_DELAY, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException rex) {
+				//We are shutting down
+				result.complete(false);
+			}
+		});
+	}
+
+	/**
+	 * @return - the last block of our chain that is committed or being committed
+	 */
+	public Block getLastCommitRequested() {
+		Block committed = localStore.getOwnNode().getChain().getLastCommittedBlock();
+		Block submitted = lastSubmitted;
+		if (submitted == null || committed == null) return committed;
+		return submitted.getNumber() > committed.getNumber() ? submitted : committed;
+	}
+
+	/**
+	 * Sleeps until all blocks that were committed have been handled.
+	 * @throws InterruptedException - If we are interrupted while waiting.
+	 */
+	public void waitUntilDone() throws InterruptedException {
+		CompletableFuture<Boolean> current;
+		synchronized (this) {
+			current = last;
+		}
+
+		try {
+			current.get();
+		} catch (ExecutionException ex) {
+			Log.log(Level.SEVERE, "Unable to commit blocks", ex);
+		}
+	}
+
+	/**
+	 * Stops retrying failed commits.
+	 */
+	public void shutdownNow() {
+		retryExecutor.shutdownNow();
+	}
+}
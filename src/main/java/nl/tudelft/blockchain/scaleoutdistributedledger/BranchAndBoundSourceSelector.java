@@ -0,0 +1,217 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
+
+import lombok.Getter;
+
+/**
+ * Source selector which uses a depth first branch and bound search.
+ *
+ * The search minimizes the number of chains that are required, and secondly the number of
+ * candidates that are used. Branches are pruned when the chains they already require are not
+ * better than the best solution so far, or when the remaining candidates cannot cover the amount.
+ *
+ * The search is limited by a budget of search nodes and time. When the budget runs out, the best
+ * solution found so far is returned. The search is seeded with a greedy solution, so there is
+ * always a solution to fall back to if the candidates can cover the amount.
+ */
+public class BranchAndBoundSourceSelector implements SourceSelector {
+	private static final int TIME_CHECK_INTERVAL = 1024;
+
+	@Getter
+	private final long maxNodes;
+
+	@Getter
+	private final long maxTime;
+
+	/**
+	 * @param maxNodes - the maximum number of search nodes to explore per selection
+	 * @param maxTime  - the maximum time in milliseconds to spend per selection
+	 */
+	public BranchAndBoundSourceSelector(long maxNodes, long maxTime) {
+		if (maxNodes <= 0) throw new IllegalArgumentException("The node budget must be positive");
+		if (maxTime <= 0) throw new IllegalArgumentException("The time budget must be positive");
+
+		this.maxNodes = maxNodes;
+		this.maxTime = maxTime;
+	}
+
+	@Override
+	public TransactionTuple selectSources(List<TransactionTuple> candidates, long amount) {
+		if (candidates.isEmpty()) return null;
+
+		Search search = new Search(candidates, amount);
+		return search.run();
+	}
+
+	/**
+	 * Class which holds the state of a single search.
+	 */
+	private class Search {
+		private final TransactionTuple[] tuples;
+		private final long[] reachable;
+		private final BitSet[] chainsAtDepth;
+		private final boolean[] selected;
+		private final long amount;
+		private final long deadline;
+
+		private long nodes;
+		private boolean exhausted;
+
+		private int bestChains = Integer.MAX_VALUE;
+		private int bestSize = Integer.MAX_VALUE;
+		private boolean[] bestSelected;
+
+		/**
+		 * @param candidates - the candidates
+		 * @param amount     - the amount to cover
+		 */
+		Search(List<TransactionTuple> candidates, long amount) {
+			//Try tuples that require few chains and have a high amount first
+			List<TransactionTuple> sorted = new ArrayList<>(candidates);
+			sorted.sort(Comparator.<TransactionTuple>comparingInt(t -> t.getChainsRequired().cardinality())
+					.thenComparing(Comparator.comparingLong(TransactionTuple::getAmount).reversed()));
+
+			int n = sorted.size();
+			this.tuples = sorted.toArray(new TransactionTuple[n]);
+			this.reachable = new long[n + 1];
+			this.chainsAtDepth = new BitSet[n + 1];
+			this.selected = new boolean[n];
+			this.amount = amount;
+			this.deadline = System.nanoTime() + maxTime * 1_000_000L;
+
+			for (int i = n - 1; i >= 0; i--) {
+				reachable[i] = reachable[i + 1] + tuples[i].getAmount();
+			}
+
+			for (int i = 0; i <= n; i++) {
+				chainsAtDepth[i] = new BitSet();
+			}
+		}
+
+		/**
+		 * @return - the best tuple, or null if the amount cannot be covered
+		 */
+		public TransactionTuple run() {
+			if (reachable[0] < amount) return null;
+
+			greedy();
+			search(0, 0, 0, 0L);
+
+			if (exhausted) {
+				Log.log(Level.FINE, "Source selection budget exhausted after " + nodes + " nodes, using best found so far ("
+						+ bestChains + " chains)");
+			}
+
+			return materialize();
+		}
+
+		/**
+		 * Creates an initial solution by adding candidates in order until the amount is covered.
+		 */
+		private void greedy() {
+			BitSet chains = new BitSet();
+			boolean[] greedySelected = new boolean[tuples.length];
+			long total = 0L;
+			int size = 0;
+			for (int i = 0; i < tuples.length && total < amount; i++) {
+				chains.or(tuples[i].getChainsRequired());
+				greedySelected[i] = true;
+				total += tuples[i].getAmount();
+				size++;
+			}
+
+			bestChains = chains.cardinality();
+			bestSize = size;
+			bestSelected = greedySelected;
+		}
+
+		/**
+		 * @param depth  - the index of the candidate to decide on
+		 * @param chains - the number of chains required by the current selection
+		 * @param size   - the number of candidates in the current selection
+		 * @param total  - the amount covered by the current selection
+		 */
+		private void search(int depth, int chains, int size, long total) {
+			if (exhausted || budgetExhausted()) return;
+
+			if (total >= amount) {
+				if (isBetter(chains, size)) {
+					bestChains = chains;
+					bestSize = size;
+					bestSelected = selected.clone();
+				}
+				return;
+			}
+
+			//We need at least one more candidate, so this branch can never become better
+			if (depth == tuples.length || !isBetter(chains, size + 1)) return;
+
+			//The remaining candidates cannot cover the amount
+			if (total + reachable[depth] < amount) return;
+
+			//Include the candidate at this depth
+			BitSet current = chainsAtDepth[depth];
+			BitSet next = chainsAtDepth[depth + 1];
+			next.clear();
+			next.or(current);
+			next.or(tuples[depth].getChainsRequired());
+			int nextChains = next.cardinality();
+			if (isBetter(nextChains, size + 1)) {
+				selected[depth] = true;
+				search(depth + 1, nextChains, size + 1, total + tuples[depth].getAmount());
+				selected[depth] = false;
+			}
+
+			//Exclude the candidate at this depth
+			next.clear();
+			next.or(current);
+			search(depth + 1, chains, size, total);
+		}
+
+		/**
+		 * @param chains - the number of chains
+		 * @param size   - the number of candidates
+		 * @return       - true if a selection with the given properties is better than the best
+		 */
+		private boolean isBetter(int chains, int size) {
+			if (chains != bestChains) return chains < bestChains;
+			return size < bestSize;
+		}
+
+		/**
+		 * @return - true if the budget of this search has been exhausted
+		 */
+		private boolean budgetExhausted() {
+			nodes++;
+			if (nodes > maxNodes || nodes % TIME_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+				exhausted = true;
+			}
+			return exhausted;
+		}
+
+		/**
+		 * @return - a tuple consisting of the best selection
+		 */
+		private TransactionTuple materialize() {
+			TransactionTuple result = null;
+			for (int i = 0; i < tuples.length; i++) {
+				if (!bestSelected[i]) continue;
+
+				if (result == null) {
+					result = tuples[i];
+				} else {
+					BitSet chains = TransactionCreator.combineBitSets(result.getChainsRequired(), tuples[i].getChainsRequired());
+					result = new TransactionTuple(result, tuples[i], chains);
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.MetaKnowledge;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+/**
+ * Index of the chains that are required to send unspent transactions to other nodes.
+ *
+ * For every combination of transaction and receiver, the required chains are stored together
+ * with the lowest block number that was visited on each of those chains. Meta knowledge only
+ * grows, so the stored chains remain correct as long as the receiver does not know any of the
+ * visited blocks. Only when the receiver learns about a visited block, the chains are recomputed.
+ */
+public class ChainsRequiredIndex {
+	private final Map<Transaction, Map<Node, ChainsEntry>> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * @param transaction - the transaction
+	 * @param receiver    - the receiver of the transaction
+	 * @param nrOfNodes   - the number of nodes in the system
+	 * @return            - a new BitSet with the chains that are required to send the given transaction
+	 */
+	public BitSet getChainsRequired(Transaction transaction, Node receiver, int nrOfNodes) {
+		Map<Node, ChainsEntry> perReceiver = entries.computeIfAbsent(transaction, t -> new ConcurrentHashMap<>());
+		ChainsEntry entry = perReceiver.get(receiver);
+		if (entry == null || !entry.isValid(receiver.getMetaKnowledge(), nrOfNodes)) {
+			entry = new ChainsEntry(transaction, receiver, nrOfNodes);
+			perReceiver.put(receiver, entry);
+		}
+
+		return (BitSet) entry.chains.clone();
+	}
+
+	/**
+	 * Removes all entries of the given transaction.
+	 * @param transaction - the transaction
+	 */
+	public void remove(Transaction transaction) {
+		entries.remove(transaction);
+	}
+
+	/**
+	 * @return - the number of transactions in this index
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Class which holds the required chains of a single transaction for a single receiver.
+	 */
+	private static class ChainsEntry {
+		private final int nrOfNodes;
+		private final BitSet chains;
+		private final int[] chainIds;
+		private final int[] minVisited;
+
+		/**
+		 * @param transaction - the transaction
+		 * @param receiver    - the receiver
+		 * @param nrOfNodes   - the number of nodes in the system
+		 */
+		ChainsEntry(Transaction transaction, Node receiver, int nrOfNodes) {
+			this.nrOfNodes = nrOfNodes;
+
+			Map<Node, Integer> highest = new HashMap<>();
+			Map<Integer, Integer> lowest = new HashMap<>();
+			appendChains(nrOfNodes, transaction, receiver, highest, lowest);
+
+			this.chains = new BitSet(nrOfNodes);
+			this.chainIds = new int[lowest.size()];
+			this.minVisited = new int[lowest.size()];
+			int i = 0;
+			for (Entry<Integer, Integer> entry : lowest.entrySet()) {
+				chains.set(entry.getKey());
+				chainIds[i] = entry.getKey();
+				minVisited[i] = entry.getValue();
+				i++;
+			}
+		}
+
+		/**
+		 * @param metaKnowledge - the meta knowledge of the receiver
+		 * @param nrOfNodes     - the number of nodes in the system
+		 * @return              - true if the stored chains are still correct
+		 */
+		public boolean isValid(MetaKnowledge metaKnowledge, int nrOfNodes) {
+			if (this.nrOfNodes != nrOfNodes) return false;
+
+			for (int i = 0; i < chainIds.length; i++) {
+				if (metaKnowledge.getLastKnownBlockNumber(chainIds[i]) >= minVisited[i]) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Mirrors {@link nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof#appendChains2},
+		 * but additionally keeps track of the lowest visited block number of each chain.
+		 * @param nrOfNodes   - the number of nodes in the system
+		 * @param transaction - the transaction
+		 * @param receiver    - the receiver
+		 * @param highest     - the map with the highest block number per chain
+		 * @param lowest      - the map with the lowest visited block number per chain id
+		 */
+		private static void appendChains(int nrOfNodes, Transaction transaction, Node receiver,
+				Map<Node, Integer> highest, Map<Integer, Integer> lowest) {
+			Node owner = transaction.getSender();
+			if (owner == null || owner == receiver) return;
+
+			//Skip transactions that are already known
+			int lastKnown = receiver.getMetaKnowledge().getLastKnownBlockNumber(owner);
+			int blockNumber = transaction.getBlockNumber().getAsInt();
+			if (lastKnown >= blockNumber) return;
+
+			highest.merge(owner, blockNumber, Math::max);
+			lowest.merge(owner.getId(), blockNumber, Math::min);
+			if (highest.size() >= nrOfNodes - 1) return;
+
+			//Check all the sources
+			for (Transaction source : transaction.getSource()) {
+				appendChains(nrOfNodes, source, receiver, highest, lowest);
+			}
+		}
+	}
+}
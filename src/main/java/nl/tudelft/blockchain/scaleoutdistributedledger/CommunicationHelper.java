@@ -1,9 +1,18 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger;
 
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.AcknowledgementMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.ChainUpdatesRequestMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.HeightAdvertisementMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 import nl.tudelft.blockchain.scaleoutdistributedledger.validation.ValidationException;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 /**
@@ -15,6 +24,7 @@ public final class CommunicationHelper {
 	}
 	
 	/**
+	 * Receives a transaction and acknowledges it to the sender.
 	 * @param proof         - the proof provided with the transaction
 	 * @param localStore	- the localstore of the node
 	 * @return               true if the transaction was accepted, false otherwise
@@ -27,22 +37,185 @@ public final class CommunicationHelper {
 			return false;
 		}
 		
+		List<Integer> numbers = Collections.singletonList(proof.getTransaction().getNumber());
+		Node sender = proof.getTransaction().getSender();
+		if (isRetransmission(proof, localStore)) {
+			acknowledge(sender, numbers, Collections.emptyList(), localStore);
+			return false;
+		}
+		
 		try {
 			localStore.getVerification().validateNewMessage(proof, localStore);
 		} catch (ValidationException ex) {
 			Log.log(Level.WARNING, "Received an invalid transaction/proof " + proof.getTransaction() + ": " + ex.getMessage());
+			acknowledge(sender, Collections.emptyList(), numbers, localStore);
 			return false;
 		}
 
 		Log.log(Level.INFO, "Received and validated transaction: " + proof.getTransaction());
 		Log.log(Level.FINE, "Transaction " + proof.getTransaction() + " is valid, applying updates...");
 		proof.applyUpdates(localStore);
+		accept(proof, localStore);
+		acknowledge(sender, numbers, Collections.emptyList(), localStore);
+		return true;
+	}
+	
+	/**
+	 * Receives a batch of transactions which share their chain updates.
+	 * 
+	 * All transactions are validated first. If all of them are valid, the shared chain updates
+	 * are applied once and the transactions are accepted. Since the chain updates are shared, we
+	 * cannot tell which blocks only an invalid transaction relies on, so if any transaction is
+	 * invalid, the whole batch is rejected.
+	 * @param proofs     - the proofs of the transactions, sharing the same chain updates
+	 * @param localStore - the localstore of the node
+	 * @return           the number of transactions that were accepted
+	 */
+	public static int receiveTransactions(List<Proof> proofs, LocalStore localStore) {
+		Log.log(Level.FINE, "Received batch of " + proofs.size() + " transactions");
+		
+		List<Proof> valid = new ArrayList<>(proofs.size());
+		List<Integer> accepted = new ArrayList<>(proofs.size());
+		List<Integer> rejected = new ArrayList<>();
+		for (Proof proof : proofs) {
+			if (proof.getTransaction().getReceiver().getId() != localStore.getOwnNode().getId()) {
+				Log.log(Level.WARNING, "Received a transaction that isn't for us: " + proof.getTransaction());
+				continue;
+			}
+			
+			if (isRetransmission(proof, localStore)) {
+				accepted.add(proof.getTransaction().getNumber());
+				continue;
+			}
+			
+			try {
+				localStore.getVerification().validateNewMessage(proof, localStore);
+				valid.add(proof);
+				accepted.add(proof.getTransaction().getNumber());
+			} catch (ValidationException ex) {
+				Log.log(Level.WARNING, "Received an invalid transaction/proof " + proof.getTransaction() + ": " + ex.getMessage());
+				rejected.add(proof.getTransaction().getNumber());
+			}
+		}
+		
+		if (!rejected.isEmpty()) rejectAll(valid, accepted, rejected, localStore);
+		
+		if (valid.isEmpty()) {
+			if (!proofs.isEmpty()) acknowledge(proofs.get(0).getTransaction().getSender(), accepted, rejected, localStore);
+			return 0;
+		}
+		
+		Log.log(Level.INFO, "Received and validated " + valid.size() + " of " + proofs.size() + " transactions, applying updates...");
+		
+		//The chain updates are shared, so they only need to be applied once.
+		valid.get(0).applyUpdates(localStore);
+		for (Proof proof : valid) {
+			accept(proof, localStore);
+		}
+		acknowledge(valid.get(0).getTransaction().getSender(), accepted, rejected, localStore);
+		
+		return valid.size();
+	}
+	
+	/**
+	 * Rejects the given valid proofs of a batch in which another proof was invalid. The
+	 * transactions are unmarked as received, so that they can be accepted when they are sent again.
+	 * @param valid      - the valid proofs, which is cleared
+	 * @param accepted   - the numbers of the accepted transactions
+	 * @param rejected   - the numbers of the rejected transactions
+	 * @param localStore - the localstore of the node
+	 */
+	private static void rejectAll(List<Proof> valid, List<Integer> accepted, List<Integer> rejected, LocalStore localStore) {
+		for (Proof proof : valid) {
+			Transaction transaction = proof.getTransaction();
+			localStore.getVerification().removeReceivedTransaction(transaction);
+			accepted.remove(Integer.valueOf(transaction.getNumber()));
+			rejected.add(transaction.getNumber());
+		}
+		valid.clear();
+	}
+	
+	/**
+	 * A transaction that we accepted before is received again if our acknowledgement did not
+	 * reach the sender in time. It is acknowledged again, but not processed again.
+	 * @param proof      - the proof of the transaction
+	 * @param localStore - the localstore of the node
+	 * @return           - true if we received the transaction of the given proof before
+	 */
+	private static boolean isRetransmission(Proof proof, LocalStore localStore) {
+		if (!localStore.getVerification().isReceived(proof.getTransaction())) return false;
+		
+		Log.log(Level.FINE, "Received transaction " + proof.getTransaction() + " again");
+		return true;
+	}
+	
+	/**
+	 * Replies to the given node with the transactions that we accepted and rejected.
+	 * 
+	 * If acknowledgements are disabled, only the heights of our chains are advertised after we
+	 * accepted transactions, if height advertisements are enabled. Otherwise the heights are
+	 * piggybacked on the acknowledgement.
+	 * @param to         - the node that sent us the transactions
+	 * @param accepted   - the numbers of the accepted transactions
+	 * @param rejected   - the numbers of the rejected transactions
+	 * @param localStore - the localstore of the node
+	 */
+	private static void acknowledge(Node to, List<Integer> accepted, List<Integer> rejected, LocalStore localStore) {
+		TransactionSender transactionSender = getTransactionSender(localStore);
+		if (transactionSender == null) return;
+		
+		Map<Integer, Integer> heights = localStore.isHeightAdvertisements() && !accepted.isEmpty()
+				? localStore.getHeightsToAdvertise(to) : Collections.emptyMap();
+		int ownId = localStore.getOwnNode().getId();
+		if (localStore.isAcknowledgedDelivery()) {
+			transactionSender.sendMessage(to, new AcknowledgementMessage(ownId, accepted, rejected, heights));
+		} else if (!heights.isEmpty()) {
+			transactionSender.sendMessage(to, new HeightAdvertisementMessage(ownId, heights));
+		}
+	}
+	
+	/**
+	 * Requests the proofs of the given transactions again, with all blocks included.
+	 * This is used when a proof refers to blocks that we do not have.
+	 * @param senderId           - the id of the sender of the transactions
+	 * @param transactionNumbers - the numbers of the transactions
+	 * @param localStore         - the localstore of the node
+	 */
+	public static void requestChainUpdates(int senderId, List<Integer> transactionNumbers, LocalStore localStore) {
+		TransactionSender transactionSender = getTransactionSender(localStore);
+		if (transactionSender == null) {
+			Log.log(Level.WARNING, "Unable to request the proofs of transactions " + transactionNumbers + " again");
+			return;
+		}
+		
+		transactionSender.sendMessage(localStore.getNode(senderId),
+				new ChainUpdatesRequestMessage(localStore.getOwnNode().getId(), transactionNumbers));
+	}
+	
+	/**
+	 * @param localStore - the localstore of the node
+	 * @return           - the transaction sender of the node, or null if it has none
+	 */
+	private static TransactionSender getTransactionSender(LocalStore localStore) {
+		Application application = localStore.getApplication();
+		return application == null ? null : application.getTransactionSender();
+	}
+	
+	/**
+	 * Registers the transaction of the given valid proof, stores that we received it and adds it
+	 * to our unspent transactions.
+	 * @param proof      - the proof, of which the updates have been applied
+	 * @param localStore - the localstore of the node
+	 */
+	private static void accept(Proof proof, LocalStore localStore) {
 		TrackerHelper.registerTransaction(proof);
-
+		
+		if (localStore.getBlockStore() != null) {
+			localStore.getBlockStore().appendReceived(proof.getTransaction());
+		}
+		
 		if (proof.getTransaction().getAmount() > 0) {
 			localStore.addUnspentTransaction(proof.getTransaction());
 		}
-
-		return true;
 	}
 }
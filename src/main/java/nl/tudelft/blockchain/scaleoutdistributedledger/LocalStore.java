@@ -1,21 +1,29 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger;
 
 import lombok.Getter;
+import lombok.Setter;
 import nl.tudelft.blockchain.scaleoutdistributedledger.mocks.TendermintChainMock;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Chain;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.mainchain.MainChain;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.mainchain.tendermint.TendermintChain;
+import nl.tudelft.blockchain.scaleoutdistributedledger.storage.BlockArchive;
+import nl.tudelft.blockchain.scaleoutdistributedledger.storage.BlockStore;
 import nl.tudelft.blockchain.scaleoutdistributedledger.validation.Verification;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class to store information related to our own node.
@@ -35,6 +43,12 @@ public class LocalStore {
 	private final Verification verification = new Verification();
 	
 	private final Set<Transaction> unspent = new HashSet<>();
+	
+	@Getter
+	private final ChainsRequiredIndex chainsRequiredIndex = new ChainsRequiredIndex();
+	
+	@Getter
+	private final ProofCache proofCache = new ProofCache();
 
 	@Getter
 	private final MainChain mainChain;
@@ -44,6 +58,39 @@ public class LocalStore {
 	
 	private int transactionId;
 	
+	@Getter @Setter
+	private SourceSelector sourceSelector;
+	
+	@Getter @Setter
+	private boolean parallelSourceSelection;
+	
+	@Getter @Setter
+	private boolean parallelVerification;
+	
+	@Getter @Setter
+	private BlockStore blockStore;
+	
+	@Getter @Setter
+	private BlockArchive blockArchive;
+	
+	@Getter @Setter
+	private boolean checkpointing;
+	
+	@Getter @Setter
+	private int checkpointMargin;
+	
+	@Getter @Setter
+	private boolean heightAdvertisements;
+	
+	@Getter @Setter
+	private boolean deltaChainUpdates;
+	
+	@Getter @Setter
+	private boolean acknowledgedDelivery;
+	
+	//Map: node id, the heights of the chains that we last advertised to that node
+	private final Map<Integer, Map<Integer, Integer>> advertisedHeights = new ConcurrentHashMap<>();
+	
 	/**
 	 * Constructor.
 	 * @param ownNode      - our own node.
@@ -110,6 +157,9 @@ public class LocalStore {
 			}
 		} else {
 			Node node = getNode(nodeId);
+			Transaction indexed = node.getChain().getTransaction(transactionId);
+			if (indexed != null) return indexed;
+			
 			for (Block block : node.getChain().getBlocks()) {
 				for (Transaction transaction : block.getTransactions()) {
 					if (transaction.getNumber() == transactionId) return transaction;
@@ -158,6 +208,16 @@ public class LocalStore {
 		}
 	}
 	
+	/**
+	 * @param transaction - the transaction
+	 * @return            - true if the given transaction is unspent
+	 */
+	public boolean isUnspent(Transaction transaction) {
+		synchronized (unspent) {
+			return unspent.contains(transaction);
+		}
+	}
+	
 	/**
 	 * Adds the given transaction as unspent.
 	 * @param transaction - the transaction to add
@@ -183,6 +243,7 @@ public class LocalStore {
 		synchronized (unspent) {
 			for (Transaction transaction : toRemove) {
 				if (!unspent.remove(transaction)) continue;
+				chainsRequiredIndex.remove(transaction);
 				
 				if (ownNode.equals(transaction.getReceiver())) {
 					availableMoney -= transaction.getAmount();
@@ -200,6 +261,101 @@ public class LocalStore {
 	public synchronized int getNewTransactionId() {
 		return transactionId++;
 	}
+	
+	/**
+	 * Makes sure that new transaction ids are at least the given id.
+	 * This is used after restoring transactions that were created before a restart.
+	 * @param nextId - the lowest id that is not used yet
+	 */
+	public synchronized void restoreTransactionId(int nextId) {
+		transactionId = Math.max(transactionId, nextId);
+	}
+	
+	/**
+	 * Updates the meta knowledge of the given node with the given chain updates, and stores the
+	 * update if there is a block store.
+	 * @param node    - the node that now knows about the given updates
+	 * @param updates - the chain updates
+	 */
+	public void updateMetaKnowledge(Node node, Map<Node, List<Block>> updates) {
+		node.updateMetaKnowledge(updates);
+		if (blockStore != null) {
+			blockStore.appendMetaKnowledge(node, updates);
+		}
+		if (checkpointing) {
+			updateCheckpoints(updates.keySet());
+		}
+	}
+	
+	/**
+	 * Updates the meta knowledge of the given node with the heights that it advertised, and stores
+	 * the update if there is a block store.
+	 * @param node    - the node that advertised the given heights
+	 * @param heights - the number of the last block that the node has, per node id
+	 */
+	public void updateKnownHeights(Node node, Map<Integer, Integer> heights) {
+		List<Node> chainOwners = new ArrayList<>(heights.size());
+		for (Entry<Integer, Integer> entry : heights.entrySet()) {
+			Node chainOwner = getNode(entry.getKey());
+			if (chainOwner == null || chainOwner == node) continue;
+			
+			node.getMetaKnowledge().updateLastKnownBlockNumber(chainOwner, entry.getValue());
+			chainOwners.add(chainOwner);
+		}
+		if (blockStore != null) {
+			blockStore.appendKnownHeights(node, heights);
+		}
+		if (checkpointing) {
+			updateCheckpoints(chainOwners);
+		}
+	}
+	
+	/**
+	 * Determines the heights of the chains that have grown since we last advertised them to the
+	 * given node, and remembers them as advertised.
+	 * @param node - the node to advertise the heights to
+	 * @return     - the number of the last block that we have, per node id
+	 */
+	public Map<Integer, Integer> getHeightsToAdvertise(Node node) {
+		Map<Integer, Integer> advertised = advertisedHeights.computeIfAbsent(node.getId(), id -> new HashMap<>());
+		Map<Integer, Integer> heights = new HashMap<>();
+		synchronized (advertised) {
+			for (Node chainOwner : nodes.values()) {
+				if (chainOwner == ownNode) continue;
+				
+				//The genesis block is known by everyone
+				int height = chainOwner.getChain().getLastBlockNumber();
+				if (height <= advertised.getOrDefault(chainOwner.getId(), 0)) continue;
+				
+				advertised.put(chainOwner.getId(), height);
+				heights.put(chainOwner.getId(), height);
+			}
+		}
+		return heights;
+	}
+	
+	/**
+	 * Moves the checkpoints of the chains of the given nodes forward to the last block that every
+	 * other node knows about, except for the last {@link #getCheckpointMargin()} committed blocks.
+	 * @param chainOwners - the owners of the chains to update the checkpoint of
+	 */
+	public void updateCheckpoints(Collection<Node> chainOwners) {
+		for (Node chainOwner : chainOwners) {
+			Chain chain = chainOwner.getChain();
+			Block lastCommitted = chain.getLastCommittedBlock();
+			if (lastCommitted == null) continue;
+			
+			int known = lastCommitted.getNumber() - checkpointMargin;
+			for (Node node : nodes.values()) {
+				if (node == ownNode || node == chainOwner) continue;
+				known = Math.min(known, node.getMetaKnowledge().getLastKnownBlockNumber(chainOwner));
+			}
+			
+			if (known > chain.getCheckpointNumber()) {
+				chain.createCheckpoint(known);
+			}
+		}
+	}
 
 	/**
 	 * Initializes the main chain.
@@ -0,0 +1,130 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+import lombok.Getter;
+
+/**
+ * Sent proofs which have not been acknowledged by their receiver yet.
+ *
+ * A send is tracked under the numbers of all its transactions, so an acknowledgement of any of
+ * them resolves the whole send. Sends that are not acknowledged in time can be retransmitted.
+ */
+public class OutstandingSends {
+	private final Map<Integer, OutstandingSend> sends = new ConcurrentHashMap<>();
+
+	/**
+	 * Tracks the given send, replacing earlier sends of the same transactions.
+	 * @param receiver     - the receiver of the transactions
+	 * @param transactions - the transactions that were sent
+	 * @param chainUpdates - the chain updates that were sent with the transactions
+	 * @param attempt      - the number of times that the transactions have been sent, including this time
+	 */
+	public void add(Node receiver, List<Transaction> transactions, Map<Node, List<Block>> chainUpdates, int attempt) {
+		OutstandingSend send = new OutstandingSend(receiver, transactions, chainUpdates, attempt, System.currentTimeMillis());
+		for (Transaction transaction : transactions) {
+			sends.put(transaction.getNumber(), send);
+		}
+	}
+
+	/**
+	 * @param transactionNumber - the number of a transaction
+	 * @return                  - the number of times that the transaction was sent, or 0 if it is not outstanding
+	 */
+	public int getAttempt(int transactionNumber) {
+		OutstandingSend send = sends.get(transactionNumber);
+		return send == null ? 0 : send.attempt;
+	}
+
+	/**
+	 * Removes the sends of the given transactions.
+	 * @param receiver           - the node that acknowledged the transactions
+	 * @param transactionNumbers - the numbers of the acknowledged transactions
+	 * @return                   - the removed sends
+	 */
+	public Set<OutstandingSend> remove(Node receiver, Collection<Integer> transactionNumbers) {
+		Set<OutstandingSend> removed = new LinkedHashSet<>();
+		for (int number : transactionNumbers) {
+			OutstandingSend send = sends.get(number);
+			if (send != null && send.receiver == receiver && remove(send)) removed.add(send);
+		}
+		return removed;
+	}
+
+	/**
+	 * Removes the sends that have not been acknowledged within the given time.
+	 * @param timeout - the time in milliseconds
+	 * @return        - the removed sends
+	 */
+	public List<OutstandingSend> removeTimedOut(long timeout) {
+		long now = System.currentTimeMillis();
+		List<OutstandingSend> removed = new ArrayList<>();
+		for (OutstandingSend send : new ArrayList<>(sends.values())) {
+			if (now - send.sentAt >= timeout && remove(send)) removed.add(send);
+		}
+		return removed;
+	}
+
+	/**
+	 * @param send - the send to remove
+	 * @return     - true if the send was still tracked under any of its transactions
+	 */
+	private boolean remove(OutstandingSend send) {
+		boolean removed = false;
+		for (Transaction transaction : send.transactions) {
+			removed |= sends.remove(transaction.getNumber(), send);
+		}
+		return removed;
+	}
+
+	/**
+	 * @return - true if no sends are waiting for an acknowledgement
+	 */
+	public boolean isEmpty() {
+		return sends.isEmpty();
+	}
+
+	/**
+	 * Transactions that were sent together in a single message.
+	 */
+	public static class OutstandingSend {
+		@Getter
+		private final Node receiver;
+
+		@Getter
+		private final List<Transaction> transactions;
+
+		@Getter
+		private final Map<Node, List<Block>> chainUpdates;
+
+		@Getter
+		private final int attempt;
+
+		private final long sentAt;
+
+		/**
+		 * @param receiver     - the receiver of the transactions
+		 * @param transactions - the transactions
+		 * @param chainUpdates - the chain updates sent with the transactions
+		 * @param attempt      - the number of times that the transactions have been sent
+		 * @param sentAt       - the time at which the transactions were sent
+		 */
+		OutstandingSend(Node receiver, List<Transaction> transactions, Map<Node, List<Block>> chainUpdates, int attempt, long sentAt) {
+			this.receiver = receiver;
+			this.transactions = transactions;
+			this.chainUpdates = chainUpdates;
+			this.attempt = attempt;
+			this.sentAt = sentAt;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.MetaKnowledge;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+
+/**
+ * Cache of the last constructed proof closure per receiver.
+ *
+ * A closure is stored together with the meta knowledge of the receiver it was built against. As
+ * long as that meta knowledge has not changed, a proof for a later transaction of the same sender
+ * contains the cached closure, so the {@link ProofConstructor} only has to extend it.
+ */
+public class ProofCache {
+	private final Map<Node, CachedClosure> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns a copy of the cached closure for the given receiver, if it can be extended to a
+	 * closure up to the given block of the sender.
+	 * @param receiver   - the receiver
+	 * @param sender     - the sender
+	 * @param endBlockNr - the number of the last block of the sender that will be sent
+	 * @return           - a copy of the cached closure, or null if it cannot be used
+	 */
+	public Map<Node, List<Block>> get(Node receiver, Node sender, int endBlockNr) {
+		CachedClosure cached = cache.get(receiver);
+		if (cached == null || !cached.isValidFor(receiver.getMetaKnowledge(), sender, endBlockNr)) return null;
+
+		Map<Node, List<Block>> copy = new HashMap<>();
+		for (Entry<Node, List<Block>> entry : cached.closure.entrySet()) {
+			copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+		}
+		return copy;
+	}
+
+	/**
+	 * Stores the given closure for the given receiver.
+	 * The meta knowledge the closure was built against is derived from the first block of each chain.
+	 * @param receiver - the receiver
+	 * @param closure  - the closure
+	 */
+	public void put(Node receiver, Map<Node, List<Block>> closure) {
+		cache.put(receiver, new CachedClosure(closure));
+	}
+
+	/**
+	 * Removes the cached closure of the given receiver.
+	 * @param receiver - the receiver
+	 */
+	public void invalidate(Node receiver) {
+		cache.remove(receiver);
+	}
+
+	/**
+	 * Class which holds a closure and the meta knowledge it was built against.
+	 */
+	private static class CachedClosure {
+		private final Map<Node, List<Block>> closure = new HashMap<>();
+		private final Map<Integer, Integer> lastKnown = new HashMap<>();
+
+		/**
+		 * @param closure - the closure
+		 */
+		CachedClosure(Map<Node, List<Block>> closure) {
+			for (Entry<Node, List<Block>> entry : closure.entrySet()) {
+				List<Block> blocks = entry.getValue();
+				if (blocks.isEmpty()) continue;
+
+				this.closure.put(entry.getKey(), new ArrayList<>(blocks));
+				this.lastKnown.put(entry.getKey().getId(), blocks.get(0).getNumber() - 1);
+			}
+		}
+
+		/**
+		 * @param metaKnowledge - the current meta knowledge of the receiver
+		 * @param sender        - the sender
+		 * @param endBlockNr    - the number of the last block of the sender that will be sent
+		 * @return              - true if this closure is part of the closure up to the given block
+		 */
+		public boolean isValidFor(MetaKnowledge metaKnowledge, Node sender, int endBlockNr) {
+			//The cached blocks of the sender must not go beyond the blocks that will be sent
+			List<Block> senderBlocks = closure.get(sender);
+			if (senderBlocks == null || senderBlocks.get(senderBlocks.size() - 1).getNumber() > endBlockNr) return false;
+
+			for (Entry<Integer, Integer> entry : lastKnown.entrySet()) {
+				if (metaKnowledge.getLastKnownBlockNumber(entry.getKey()) != entry.getValue()) return false;
+			}
+			return true;
+		}
+	}
+}
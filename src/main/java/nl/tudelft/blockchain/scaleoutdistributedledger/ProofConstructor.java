@@ -2,8 +2,10 @@ package nl.tudelft.blockchain.scaleoutdistributedledger;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.MetaKnowledge;
@@ -21,16 +23,26 @@ public class ProofConstructor {
 	private final Node sender;
 	private final Map<Node, List<Block>> toSend;
 	private final Proof proof;
+	private final ProofCache proofCache;
 	
 	/**
 	 * @param mainTransaction - the transaction to construct the proof for
 	 */
 	public ProofConstructor(Transaction mainTransaction) {
+		this(mainTransaction, null);
+	}
+	
+	/**
+	 * @param mainTransaction - the transaction to construct the proof for
+	 * @param proofCache      - the cache with previously constructed proofs, or null
+	 */
+	public ProofConstructor(Transaction mainTransaction, ProofCache proofCache) {
 		this.mainTransaction = mainTransaction;
 		this.receiver = mainTransaction.getReceiver();
 		this.sender = mainTransaction.getSender();
 		this.proof = new Proof(mainTransaction);
 		this.toSend = proof.getChainUpdates();
+		this.proofCache = proofCache;
 	}
 	
 	/**
@@ -50,11 +62,39 @@ public class ProofConstructor {
 			return proof;
 		}
 		
+		//Start from the closure of a previous proof to the receiver, if it is still valid.
+		//Only the blocks that are not in that closure will then be processed.
+		if (proofCache != null) {
+			Map<Node, List<Block>> cached = proofCache.get(receiver, sender, nextCommitted.getNumber());
+			if (cached != null) toSend.putAll(cached);
+		}
+		
 		//Recursively process all the blocks
 		processBlocks(sender, ownBlocks);
+		
+		if (proofCache != null) proofCache.put(receiver, toSend);
 		return proof;
 	}
 	
+	/**
+	 * Determines the chains in the given proof of which only references to the blocks have to be
+	 * sent when sending delta chain updates. These are the chains of nodes other than the sender
+	 * and the receiver, since the receiver may have received those blocks from other nodes since
+	 * it last advertised its heights. The blocks of the sender can only be known by the receiver
+	 * through us, so they are always sent in full.
+	 * @param chainUpdates - the chain updates of the proof
+	 * @param sender       - the sender of the proof
+	 * @param receiver     - the receiver of the proof
+	 * @return             - the owners of the chains to send references for
+	 */
+	public static Set<Node> getReferencedChains(Map<Node, List<Block>> chainUpdates, Node sender, Node receiver) {
+		Set<Node> referenced = new HashSet<>();
+		for (Node owner : chainUpdates.keySet()) {
+			if (owner != sender && owner != receiver) referenced.add(owner);
+		}
+		return referenced;
+	}
+	
 	/**
 	 * Processes the given list of blocks belonging to the given owner.
 	 * The given list is expected to be non-empty.
@@ -118,7 +158,7 @@ public class ProofConstructor {
 		//low to high block numbers. This means that the given list will contain all elements that we already have + some extra.
 		//So we can start at the index equal to what we already have.
 		
-		assert current.containsAll(toAdd);
+		assert toAdd.containsAll(current);
 		assert current.size() < toAdd.size();
 		
 		int startBlockNr = current.size();
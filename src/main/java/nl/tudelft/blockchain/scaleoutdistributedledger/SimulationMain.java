@@ -11,6 +11,7 @@ import nl.tudelft.blockchain.scaleoutdistributedledger.simulation.transactionpat
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Utils;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
@@ -20,6 +21,8 @@ import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import org.apache.commons.io.FileUtils;
+
 /**
  * Main class for running a simulation.
  */
@@ -40,8 +43,9 @@ public final class SimulationMain {
 	public static final int MAX_BLOCKS_PENDING = 50;
 	//The initial delay in milliseconds to wait before checking what blocks can be sent.
 	public static final long INITIAL_SENDING_DELAY = 5000;
-	//The time in milliseconds between send checks.
-	public static final long SENDING_WAIT_TIME = 5000;
+	//The time in milliseconds between periodic send checks. Blocks are sent as soon as the main chain reports a commit,
+	//so these checks only retransmit unacknowledged sends and pick up commits of which the notification was missed.
+	public static final long SENDING_WAIT_TIME = 10000;
 	//The number of blocks (with the same or higher block number) that need to be committed before we send a certain block.
 	public static final int REQUIRED_COMMITS = 2;
 	// The number of transactions that are registered in one batch.
@@ -50,6 +54,46 @@ public final class SimulationMain {
 	public static final ITransactionPattern TRANSACTION_PATTERN = new UniformRandomTransactionPattern(10, 20, 100, 200, 10);
 	//The initial amount of money each node has.
 	public static final long INITIAL_MONEY = 1000000;
+	//Whether the sources of a transaction are selected with a branch-and-bound search instead of in rounds.
+	public static final boolean BRANCH_AND_BOUND_SOURCE_SELECTION = true;
+	//The maximum number of search nodes explored when selecting the sources of a transaction.
+	public static final long SOURCE_SELECTION_MAX_NODES = 100000;
+	//The maximum time in milliseconds spent when selecting the sources of a transaction.
+	public static final long SOURCE_SELECTION_MAX_TIME = 50;
+	//The number of threads that handle received messages.
+	public static final int MESSAGE_HANDLER_THREADS = 4;
+	//The number of received messages waiting per handler thread at which reading from the connection is paused.
+	public static final int MESSAGE_HANDLER_QUEUE_SIZE = 256;
+	//The number of threads that construct the proofs for different receivers concurrently.
+	public static final int SENDER_THREADS = 4;
+	//Whether the chains of different nodes in a received proof are verified concurrently.
+	public static final boolean PARALLEL_VERIFICATION = false;
+	//Whether a node replies to a proof with the heights of its chains, so that the sender can update its meta knowledge.
+	public static final boolean HEIGHT_ADVERTISEMENTS = false;
+	//Whether blocks of other nodes are only sent as a reference (number and hash) in proofs. Also enables height advertisements.
+	public static final boolean DELTA_CHAIN_UPDATES = false;
+	//Whether a node acknowledges every proof, so that the meta knowledge only advances when a proof is accepted and unacknowledged proofs are retransmitted.
+	public static final boolean ACKNOWLEDGED_DELIVERY = false;
+	//Whether the chains are stored on disk, so that they can be recovered after a restart.
+	public static final boolean PERSIST_CHAINS = false;
+	//The directory in which every node stores its chains, in a subdirectory per node.
+	public static final String STORAGE_DIRECTORY = "storage";
+	//Whether the stored chains are synced to disk whenever a block is committed.
+	public static final boolean SYNC_ON_COMMIT = true;
+	//Whether old blocks of other nodes are moved from the heap to a memory-mapped archive.
+	public static final boolean ARCHIVE_FOREIGN_CHAINS = false;
+	//The number of committed blocks at the end of every chain of another node that stay on the heap.
+	public static final int ARCHIVE_HOT_BLOCKS = 20;
+	//The maximum number of archived blocks that are cached on the heap after being loaded.
+	public static final int ARCHIVE_CACHE_SIZE = 512;
+	//Whether prefixes of chains that every node knows about are replaced by a checkpoint.
+	public static final boolean CHECKPOINT_CHAINS = false;
+	//The number of committed blocks at the end of every chain that are never checkpointed.
+	public static final int CHECKPOINT_MARGIN = 20;
+	//The maximum number of open connections from a node to its Tendermint node.
+	public static final int ABCI_MAX_CONNECTIONS = 8;
+	//The timeout in milliseconds for connecting to and waiting for data from the Tendermint node.
+	public static final int ABCI_TIMEOUT = 30 * 1000;
 
 	private SimulationMain() {}
 	
@@ -178,6 +222,15 @@ public final class SimulationMain {
 	private static boolean cleanup() throws IOException {
 		// Clean Tendermint folder
 		TendermintHelper.cleanTendermintFiles();
+		
+		// Stored chains belong to the previous run
+		if (PERSIST_CHAINS) {
+			try {
+				FileUtils.deleteDirectory(new File(STORAGE_DIRECTORY));
+			} catch (IOException ex) {
+				Log.log(Level.WARNING, "Could not delete storage folder");
+			}
+		}
 
 		// Reset the tracker server when you are running the tracker server
 		try {
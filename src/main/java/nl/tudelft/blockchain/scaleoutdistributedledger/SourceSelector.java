@@ -0,0 +1,17 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.List;
+
+/**
+ * Interface for algorithms that select the sources of a new transaction.
+ */
+public interface SourceSelector {
+	/**
+	 * Selects the combination of the given candidates that covers the given amount while
+	 * requiring as few chains as possible.
+	 * @param candidates - the candidate tuples, grouped by the chains they require
+	 * @param amount     - the amount that needs to be covered
+	 * @return           - the selected tuple, or null if the candidates cannot cover the amount
+	 */
+	public TransactionTuple selectSources(List<TransactionTuple> candidates, long amount);
+}
@@ -1,17 +1,19 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.exceptions.NotEnoughMoneyException;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
-import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
 
 import lombok.Getter;
@@ -23,6 +25,10 @@ import lombok.Getter;
  * sources for a transaction.
  */
 public class TransactionCreator {
+	//The minimum number of combinations in a round before it is evaluated in parallel.
+	private static final long PARALLEL_THRESHOLD = 256;
+	private static final int TASKS_PER_THREAD = 4;
+	
 	private final LocalStore localStore;
 	private final int nodesCount;
 	@Getter
@@ -32,6 +38,8 @@ public class TransactionCreator {
 
 	private int currentBest = Integer.MAX_VALUE;
 	private TransactionTuple currentBestTuple;
+	private TransactionTuple[] baseTuples;
+	private long[] currentBestMembers;
 
 	/**
 	 * @param localStore  - the local store
@@ -89,6 +97,10 @@ public class TransactionCreator {
 		
 		Collection<TransactionTuple> candidates = candidateMap.values();
 
+		//If a different source selection algorithm is configured, use it instead.
+		SourceSelector selector = localStore.getSourceSelector();
+		if (selector != null) return selector.selectSources(new ArrayList<>(candidates), amount);
+
 		//Step 2: Check if we can cover the transaction amount with a single transaction (group).
 		firstRound(candidates);
 		cleanup(candidates, Integer.MAX_VALUE);
@@ -97,25 +109,28 @@ public class TransactionCreator {
 		if (candidates.size() <= 1) return currentBestTuple;
 
 		//Step 3: keep trying to improve for multiple rounds to get the best set of transactions
-		int roundCount = candidates.size() - 1;
+		//The rounds are done on a compact representation, only the best tuple is materialized.
+		baseTuples = candidates.toArray(new TransactionTuple[candidates.size()]);
+		TupleArena base = TupleArena.fromTuples(baseTuples);
+		int roundCount = baseTuples.length - 1;
 		int previousBest = currentBest;
-		Set<TransactionTuple> temp;
-		Set<TransactionTuple> currentRound = new HashSet<>(candidates);
-		Set<TransactionTuple> nextRound = new HashSet<>();
+		TupleArena temp;
+		TupleArena currentRound = base.copy();
+		TupleArena nextRound = base.emptyCopy();
 		
 		//Repeat for at most the number of total unspent transactions.
 		//At that point we will have created the only possible set: the set of all unspent transactions.
 		for (int i = 0; i < roundCount; i++) {
-			doOneRound(candidates, currentRound, nextRound);
+			doOneRound(base, currentRound, nextRound);
 
 			//If no better tuples were found, then we can return the best-so-far.
 			//If one tuple remains, it will never become better as all other combinations have been ruled out.
-			if (nextRound.size() <= 1) return currentBestTuple;
+			if (nextRound.getSize() <= 1) return materializeBest();
 
 			//Delete all sets that are worse than the current best.
-			cleanup(nextRound, previousBest);
+			if (currentBest != previousBest) nextRound.removeNotBetterThan(currentBest);
 
-			//Swap the lists so we don't have to create a new one
+			//Swap the arenas so we don't have to create a new one
 			temp = currentRound;
 			currentRound = nextRound;
 			nextRound = temp;
@@ -124,7 +139,7 @@ public class TransactionCreator {
 		}
 		
 		//We didn't find an absolute best.
-		return currentBestTuple;
+		return materializeBest();
 	}
 
 	/**
@@ -150,40 +165,126 @@ public class TransactionCreator {
 	}
 
 	/**
-	 * @param baseElements - a collection with individual transactions / grouped transactions
-	 * @param currentRound - a set with tuples of the current round
-	 * @param nextRound    - a set to which tuples for the next round are added
+	 * @param base         - the arena with individual transactions / grouped transactions
+	 * @param currentRound - the arena with tuples of the current round
+	 * @param nextRound    - the arena to which tuples for the next round are added
 	 */
-	private void doOneRound(Collection<TransactionTuple> baseElements, Set<TransactionTuple> currentRound, Set<TransactionTuple> nextRound) {
+	private void doOneRound(TupleArena base, TupleArena currentRound, TupleArena nextRound) {
 		//Choose the best collection to iterate over.
-		//If we choose to use currentRound, we can skip the containment check since it is a set and thus no two tuples will be equal.
+		//If we choose to use currentRound, we can skip the containment check since no two tuples in it will be equal.
+		TupleArena baseElements = base;
 		boolean skipContainsCheck = false;
-		if (currentRound.size() < baseElements.size()) {
+		if (currentRound.getSize() < base.getSize()) {
 			baseElements = currentRound;
 			skipContainsCheck = true;
 		}
 		
-		for (TransactionTuple t1 : baseElements) {
-			for (TransactionTuple t2 : currentRound) {
-				if (!skipContainsCheck && t2.containsAll(t1)) continue;
-
-				BitSet r3 = combineBitSets(t1.getChainsRequired(), t2.getChainsRequired());
+		//Only split the work if there are enough combinations to make it worth it.
+		if (localStore.isParallelSourceSelection()
+				&& (long) baseElements.getSize() * currentRound.getSize() >= PARALLEL_THRESHOLD) {
+			doOneRoundParallel(base, baseElements, currentRound, skipContainsCheck, nextRound);
+			return;
+		}
+		
+		long[] chainBuffer = new long[base.getChainWords()];
+		long[] memberBuffer = new long[base.getMemberWords()];
+		int baseSize = baseElements.getSize();
+		int roundSize = currentRound.getSize();
+		for (int t1 = 0; t1 < baseSize; t1++) {
+			for (int t2 = 0; t2 < roundSize; t2++) {
+				if (!skipContainsCheck && currentRound.containsMember(t2, t1)) continue;
 
 				//If this combination is worse than the current best, we don't consider it.
-				int chainsRequired = r3.cardinality();
+				int chainsRequired = baseElements.combineChains(t1, currentRound, t2, chainBuffer);
 				if (chainsRequired >= currentBest) continue;
 
-				TransactionTuple t3 = new TransactionTuple(t1, t2, r3);
-				if (t3.getAmount() >= amount) {
+				baseElements.combineMembers(t1, currentRound, t2, memberBuffer);
+				long combinedAmount = base.amountOf(memberBuffer);
+				if (combinedAmount >= amount) {
 					//This combination is a good candidate
 					currentBest = chainsRequired;
-					currentBestTuple = t3;
+					currentBestMembers = memberBuffer.clone();
 				} else {
 					//Consider this tuple for the next round
-					nextRound.add(t3);
+					nextRound.add(chainBuffer, memberBuffer, combinedAmount, chainsRequired);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evaluates one round in parallel.
+	 * 
+	 * The base elements are split into contiguous ranges, which are evaluated by separate tasks.
+	 * Tasks prune with the best found by themselves and by the tasks before them. The results of
+	 * the tasks are then merged in order, which gives exactly the same result as evaluating the
+	 * round sequentially.
+	 * @param base              - the arena with individual transactions / grouped transactions
+	 * @param baseElements      - the arena to iterate over in the outer loop
+	 * @param currentRound      - the arena with tuples of the current round
+	 * @param skipContainsCheck - if the containment check can be skipped
+	 * @param nextRound         - the arena to which tuples for the next round are added
+	 */
+	private void doOneRoundParallel(TupleArena base, TupleArena baseElements, TupleArena currentRound,
+			boolean skipContainsCheck, TupleArena nextRound) {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		int size = baseElements.getSize();
+		int taskCount = Math.min(size, pool.getParallelism() * TASKS_PER_THREAD);
+		AtomicIntegerArray taskBests = new AtomicIntegerArray(taskCount);
+		List<RoundTask> tasks = new ArrayList<>(taskCount);
+		for (int i = 0; i < taskCount; i++) {
+			taskBests.set(i, currentBest);
+			int from = (int) ((long) size * i / taskCount);
+			int to = (int) ((long) size * (i + 1) / taskCount);
+			tasks.add(new RoundTask(i, from, to, base, baseElements, currentRound, skipContainsCheck, taskBests));
+		}
+		
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+
+		//Merge in order. A task may have used an outdated best of the tasks before it, so we
+		//filter its tuples again with the best that a sequential evaluation would have used.
+		for (RoundTask task : tasks) {
+			int bestBefore = currentBest;
+			TupleArena found = task.found;
+			for (int i = 0; i < found.getSize(); i++) {
+				if (found.getCardinality(i) < bestBefore) nextRound.add(found, i);
+			}
+			
+			if (task.bestMembers != null && task.best < bestBefore) {
+				currentBest = task.best;
+				currentBestMembers = task.bestMembers;
+			}
+		}
+	}
+
+	/**
+	 * @return the best tuple found so far, or null if no tuple covers the amount
+	 */
+	private TransactionTuple materializeBest() {
+		if (currentBestMembers == null) return currentBestTuple;
+
+		TransactionTuple result = null;
+		for (int w = 0; w < currentBestMembers.length; w++) {
+			long word = currentBestMembers[w];
+			while (word != 0) {
+				TransactionTuple tuple = baseTuples[(w << 6) + Long.numberOfTrailingZeros(word)];
+				word &= word - 1;
+				
+				if (result == null) {
+					result = tuple;
+				} else {
+					result = new TransactionTuple(result, tuple, combineBitSets(result.getChainsRequired(), tuple.getChainsRequired()));
 				}
 			}
 		}
+		return result;
 	}
 
 	/**
@@ -209,20 +310,7 @@ public class TransactionCreator {
 	 */
 	public BitSet chainsRequired(Transaction transaction) {
 		//TODO Verify that this collection of chains is correct.
-		Map<Node, Integer> chains = new HashMap<>();
-		
-		int nrOfNodes = localStore.getNodes().size();
-		Proof.appendChains2(nrOfNodes, transaction, receiver, chains);
-		BitSet bitset = chains
-				.keySet()
-				.stream()
-				.map(Node::getId)
-				.collect(() -> new BitSet(nodesCount),
-						(bs, i) -> bs.set(i),
-						(bs1, bs2) -> bs1.or(bs2)
-				);
-
-		return bitset;
+		return localStore.getChainsRequiredIndex().getChainsRequired(transaction, receiver, nodesCount);
 	}
 
 	/**
@@ -235,4 +323,86 @@ public class TransactionCreator {
 		c.or(b);
 		return c;
 	}
+
+	/**
+	 * Task which evaluates a range of the base elements of a round.
+	 */
+	private class RoundTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+		private final int from;
+		private final int to;
+		private final TupleArena base;
+		private final TupleArena baseElements;
+		private final TupleArena currentRound;
+		private final boolean skipContainsCheck;
+		private final AtomicIntegerArray taskBests;
+
+		private final TupleArena found;
+		private int best;
+		private long[] bestMembers;
+
+		/**
+		 * @param index             - the index of this task
+		 * @param from              - the first base element to evaluate (inclusive)
+		 * @param to                - the last base element to evaluate (exclusive)
+		 * @param base              - the arena with individual transactions / grouped transactions
+		 * @param baseElements      - the arena to iterate over in the outer loop
+		 * @param currentRound      - the arena with tuples of the current round
+		 * @param skipContainsCheck - if the containment check can be skipped
+		 * @param taskBests         - the best found so far by each task
+		 */
+		RoundTask(int index, int from, int to, TupleArena base, TupleArena baseElements, TupleArena currentRound,
+				boolean skipContainsCheck, AtomicIntegerArray taskBests) {
+			this.index = index;
+			this.from = from;
+			this.to = to;
+			this.base = base;
+			this.baseElements = baseElements;
+			this.currentRound = currentRound;
+			this.skipContainsCheck = skipContainsCheck;
+			this.taskBests = taskBests;
+			this.found = base.emptyCopy();
+			this.best = taskBests.get(index);
+		}
+
+		@Override
+		protected void compute() {
+			long[] chainBuffer = new long[base.getChainWords()];
+			long[] memberBuffer = new long[base.getMemberWords()];
+			int roundSize = currentRound.getSize();
+			for (int t1 = from; t1 < to; t1++) {
+				int bound = Math.min(best, bestOfEarlierTasks());
+				for (int t2 = 0; t2 < roundSize; t2++) {
+					if (!skipContainsCheck && currentRound.containsMember(t2, t1)) continue;
+
+					int chainsRequired = baseElements.combineChains(t1, currentRound, t2, chainBuffer);
+					if (chainsRequired >= bound) continue;
+
+					baseElements.combineMembers(t1, currentRound, t2, memberBuffer);
+					long combinedAmount = base.amountOf(memberBuffer);
+					if (combinedAmount >= amount) {
+						best = chainsRequired;
+						bound = chainsRequired;
+						bestMembers = memberBuffer.clone();
+						taskBests.set(index, chainsRequired);
+					} else {
+						found.add(chainBuffer, memberBuffer, combinedAmount, chainsRequired);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return - the lowest best of the tasks before this task
+		 */
+		private int bestOfEarlierTasks() {
+			int result = Integer.MAX_VALUE;
+			for (int i = 0; i < index; i++) {
+				result = Math.min(result, taskBests.get(i));
+			}
+			return result;
+		}
+	}
 }
@@ -2,12 +2,28 @@ package nl.tudelft.blockchain.scaleoutdistributedledger;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
+import nl.tudelft.blockchain.scaleoutdistributedledger.OutstandingSends.OutstandingSend;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.BatchProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
 import nl.tudelft.blockchain.scaleoutdistributedledger.message.ProofMessage;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Chain;
@@ -19,41 +35,103 @@ import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 
 /**
  * Class which handles sending of transactions.
+ *
+ * A send pass is started as soon as the main chain reports new commits, or when an
+ * acknowledgement or request is received. A periodic pass retransmits unacknowledged sends and
+ * catches up on commits that were missed.
  */
 public class TransactionSender implements Runnable {
 	
+	//In milliseconds, the time after which a send that has not been acknowledged is retransmitted
+	private static final long ACK_TIMEOUT = 30 * 1000L;
+	//The maximum number of times that the same transaction is sent
+	private static final int MAX_SEND_ATTEMPTS = 3;
+	
 	private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+	//Constructs the proofs for different receivers concurrently
+	private final ExecutorService proofPool = Executors.newFixedThreadPool(SimulationMain.SENDER_THREADS);
 	private final LocalStore localStore;
 	private final SocketClient socketClient;
 	private final Chain chain;
 	private int alreadySent;
 	
+	//If a send pass has been requested and has not started yet
+	private final AtomicBoolean passScheduled = new AtomicBoolean();
+	//Send passes are only requested after the initial sending delay
+	private volatile boolean started;
+	private final Runnable commitListener = this::requestSendPass;
+	
+	//Received acknowledgements and height advertisements and updates of sent messages, applied from the sending thread
+	private final Queue<Runnable> received = new ConcurrentLinkedQueue<>();
+	
+	//Map: receiver, the sends to it that have to be started in this pass, in order. Only used from the sending thread.
+	private final Map<Node, List<Runnable>> toDispatch = new LinkedHashMap<>();
+	
+	//Sends that have not been acknowledged yet
+	private final OutstandingSends outstanding = new OutstandingSends();
+	
+	//Map: node, numbers of the transactions of which the node requested the proof again
+	private final Map<Node, Set<Integer>> resendRequests = new ConcurrentHashMap<>();
+	
 	/**
 	 * Creates a new TransactionSender.
 	 * @param localStore - the local store
 	 */
 	public TransactionSender(LocalStore localStore) {
+		this(localStore, new SocketClient());
+	}
+	
+	/**
+	 * Creates a new TransactionSender that sends with the given socket client.
+	 * @param localStore   - the local store
+	 * @param socketClient - the socket client
+	 */
+	TransactionSender(LocalStore localStore, SocketClient socketClient) {
 		this.localStore = localStore;
-		this.socketClient = new SocketClient();
+		this.socketClient = socketClient;
 		this.chain = localStore.getOwnNode().getChain();
 		
-		this.executor.schedule(this, SimulationMain.INITIAL_SENDING_DELAY, TimeUnit.MILLISECONDS);
+		this.executor.scheduleWithFixedDelay(this, SimulationMain.INITIAL_SENDING_DELAY, SimulationMain.SENDING_WAIT_TIME, TimeUnit.MILLISECONDS);
+		localStore.getMainChain().addCommitListener(commitListener);
 	}
 	
+	/**
+	 * Runs a send pass. Passes never overlap, also when a pass is run directly instead of on the
+	 * sending thread.
+	 */
 	@Override
-	public void run() {
-		//Send all and reschedule
+	public synchronized void run() {
+		//Requests that arrive from now on need a new pass
+		passScheduled.set(false);
+		started = true;
 		try {
+			applyReceived();
 			sendAllBlocksThatCanBeSent();
+			resendRequested();
+			retransmitTimedOut();
+			dispatch();
 		} catch (Exception ex) {
-			Log.log(Level.SEVERE, "Uncaught exception in transaction sender!");
-		} finally {
-			executor.schedule(this, SimulationMain.SENDING_WAIT_TIME, TimeUnit.MILLISECONDS);
+			Log.log(Level.SEVERE, "Uncaught exception in transaction sender!", ex);
+		}
+	}
+	
+	/**
+	 * Requests a send pass on the sending thread. Multiple requests made before the pass starts
+	 * result in a single pass.
+	 */
+	public void requestSendPass() {
+		if (!started || !passScheduled.compareAndSet(false, true)) return;
+		
+		try {
+			executor.execute(this);
+		} catch (RejectedExecutionException ex) {
+			//We are shutting down
+			passScheduled.set(false);
 		}
 	}
 	
 	/**
-	 * Sends all blocks that can be sent.
+	 * Adds the sends of all blocks that can be sent.
 	 */
 	public void sendAllBlocksThatCanBeSent() {
 		int lastBlockNr = chain.getLastBlockNumber();
@@ -73,12 +151,234 @@ public class TransactionSender implements Runnable {
 		if (committed.size() < SimulationMain.REQUIRED_COMMITS) return;
 		
 		//Send all the blocks that we haven't sent up to the committed block (inclusive)
+		//The transactions are grouped per receiver, so each receiver gets a single message.
 		int lastToSend = committed.get(committed.size() - SimulationMain.REQUIRED_COMMITS);
+		Map<Node, List<Transaction>> perReceiver = new LinkedHashMap<>();
 		for (int blockNr = alreadySent + 1; blockNr <= lastToSend; blockNr++) {
-			sendBlock(chain.getBlocks().get(blockNr));
+			for (Transaction transaction : chain.getBlocks().get(blockNr).getTransactions()) {
+				perReceiver.computeIfAbsent(transaction.getReceiver(), n -> new ArrayList<>()).add(transaction);
+			}
+		}
+		alreadySent = lastToSend;
+		
+		for (List<Transaction> transactions : perReceiver.values()) {
+			send(transactions, localStore.isDeltaChainUpdates(), 1);
+		}
+	}
+	
+	/**
+	 * Adds the sends of the proofs of the transactions that were requested again, with all blocks included.
+	 */
+	public void resendRequested() {
+		for (Node node : new ArrayList<>(resendRequests.keySet())) {
+			Set<Integer> numbers = resendRequests.remove(node);
+			if (numbers == null) continue;
+			
+			//The resend replaces the outstanding sends, so they are not retransmitted again when they time out
+			int attempt = 0;
+			for (OutstandingSend send : outstanding.remove(node, numbers)) {
+				attempt = Math.max(attempt, send.getAttempt());
+				for (Transaction transaction : send.getTransactions()) {
+					numbers.add(transaction.getNumber());
+				}
+			}
+			
+			List<Transaction> transactions = new ArrayList<>(numbers.size());
+			for (int number : numbers) {
+				Transaction transaction = chain.getTransaction(number);
+				if (transaction == null || transaction.getReceiver() != node) {
+					Log.log(Level.WARNING, "Node " + node.getId() + " requested unknown transaction " + number);
+				} else {
+					transactions.add(transaction);
+				}
+			}
+			if (transactions.isEmpty()) continue;
+			
+			send(transactions, false, attempt + 1);
 		}
 	}
 	
+	/**
+	 * Adds the retransmissions of the sends that have not been acknowledged in time.
+	 */
+	public void retransmitTimedOut() {
+		for (OutstandingSend send : outstanding.removeTimedOut(ACK_TIMEOUT)) {
+			logNode(Level.FINE, send.getReceiver().getId(), "did not acknowledge transactions " + send.getTransactions());
+			retransmit(send.getTransactions(), send.getAttempt());
+		}
+	}
+	
+	/**
+	 * Adds a send of the given transactions again, with all blocks included, unless they have
+	 * been sent too often already.
+	 * @param transactions - the transactions to send, all to the same receiver
+	 * @param attempt      - the number of times that the transactions have been sent
+	 */
+	private void retransmit(List<Transaction> transactions, int attempt) {
+		if (attempt >= MAX_SEND_ATTEMPTS) {
+			Log.log(Level.WARNING, "Giving up on sending transactions " + transactions + " after " + attempt + " attempts");
+			return;
+		}
+		
+		send(transactions, false, attempt + 1);
+	}
+	
+	/**
+	 * Adds a send of the given transactions to the same receiver, which is started when the sends
+	 * of this pass are dispatched.
+	 * @param transactions - the transactions to send, all to the same receiver
+	 * @param delta        - if only references are sent of the blocks that the receiver may have
+	 * @param attempt      - the number of times that the transactions are sent, including this time
+	 */
+	private void send(List<Transaction> transactions, boolean delta, int attempt) {
+		toDispatch.computeIfAbsent(transactions.get(0).getReceiver(), n -> new ArrayList<>()).add(() -> {
+			try {
+				if (transactions.size() == 1) {
+					sendTransaction(transactions.get(0), delta, attempt);
+				} else {
+					sendTransactions(transactions, delta, attempt);
+				}
+			} catch (Exception ex) {
+				Log.log(Level.SEVERE, "Unable to send transactions " + transactions, ex);
+			}
+		});
+	}
+	
+	/**
+	 * Constructs the proofs of the sends of this pass and starts sending them.
+	 * 
+	 * The proofs for different receivers are constructed concurrently, while the sends to the same
+	 * receiver are started in order. This method only waits until all proofs have been constructed,
+	 * since the meta knowledge must not change while they are. It does not wait for the messages
+	 * to be sent, so a slow or unreachable receiver does not hold back the others.
+	 */
+	private void dispatch() {
+		if (toDispatch.isEmpty()) return;
+		
+		//A completed send requests a new pass, so the sends are taken out before any of them is started
+		List<List<Runnable>> perReceiver = new ArrayList<>(toDispatch.values());
+		toDispatch.clear();
+		
+		List<CompletableFuture<Void>> started = new ArrayList<>(perReceiver.size());
+		for (List<Runnable> sends : perReceiver) {
+			started.add(CompletableFuture.runAsync(() -> sends.forEach(Runnable::run), proofPool));
+		}
+		
+		try {
+			CompletableFuture.allOf(started.toArray(new CompletableFuture<?>[0])).get();
+		} catch (ExecutionException ex) {
+			Log.log(Level.SEVERE, "Unable to send transactions", ex);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Applies the given meta knowledge update in the next send pass if the given message is sent
+	 * successfully. The meta knowledge is only updated from the sending thread, since the proofs
+	 * are constructed against it.
+	 * @param sent   - the future of the message
+	 * @param update - the meta knowledge update to apply on success
+	 */
+	private void whenSent(CompletableFuture<Boolean> sent, Runnable update) {
+		sent.whenComplete((success, ex) -> {
+			if (ex != null) {
+				Log.log(Level.SEVERE, "Unable to send transactions", ex);
+			} else if (success) {
+				received.add(update);
+				requestSendPass();
+			}
+		});
+	}
+	
+	/**
+	 * Applies the acknowledgements and heights that were received since the last time.
+	 */
+	private void applyReceived() {
+		Runnable update;
+		while ((update = received.poll()) != null) {
+			update.run();
+		}
+	}
+	
+	/**
+	 * Called when the given node advertised the heights of its chains to us.
+	 * The meta knowledge is updated in the next send pass.
+	 * @param node    - the node that advertised its heights
+	 * @param heights - the number of the last block that the node has, per node id
+	 */
+	public void receivedHeights(Node node, Map<Integer, Integer> heights) {
+		received.add(() -> localStore.updateKnownHeights(node, heights));
+		requestSendPass();
+	}
+	
+	/**
+	 * Called when the given node acknowledged transactions that we sent to it.
+	 * The acknowledgement is processed in the next send pass.
+	 * @param node     - the node that acknowledged the transactions
+	 * @param accepted - the numbers of the transactions that the node accepted
+	 * @param rejected - the numbers of the transactions that the node rejected
+	 * @param heights  - the number of the last block that the node has, per node id
+	 */
+	public void receivedAcknowledgement(Node node, List<Integer> accepted, List<Integer> rejected, Map<Integer, Integer> heights) {
+		received.add(() -> acknowledged(node, accepted, rejected, heights));
+		requestSendPass();
+	}
+	
+	/**
+	 * Only now that the receiver has accepted a proof, its meta knowledge is updated with the
+	 * chain updates of the proof. Rejected transactions are sent again with a new proof.
+	 * @param node     - the node that acknowledged the transactions
+	 * @param accepted - the numbers of the transactions that the node accepted
+	 * @param rejected - the numbers of the transactions that the node rejected
+	 * @param heights  - the number of the last block that the node has, per node id
+	 */
+	private void acknowledged(Node node, List<Integer> accepted, List<Integer> rejected, Map<Integer, Integer> heights) {
+		List<Integer> numbers = new ArrayList<>(accepted);
+		numbers.addAll(rejected);
+		Set<Integer> rejectedSet = new HashSet<>(rejected);
+		
+		for (OutstandingSend send : outstanding.remove(node, numbers)) {
+			List<Transaction> retry = new ArrayList<>();
+			for (Transaction transaction : send.getTransactions()) {
+				if (rejectedSet.contains(transaction.getNumber())) retry.add(transaction);
+			}
+			
+			//The receiver only applies the chain updates if it accepted all transactions of the send
+			if (retry.isEmpty()) {
+				localStore.updateMetaKnowledge(node, send.getChainUpdates());
+			}
+			if (!retry.isEmpty()) {
+				logNode(Level.FINE, node.getId(), "rejected transactions " + retry);
+				retransmit(retry, send.getAttempt());
+			}
+		}
+		
+		if (!heights.isEmpty()) localStore.updateKnownHeights(node, heights);
+	}
+	
+	/**
+	 * Called when the given node requests the proofs of the given transactions again.
+	 * The proofs are sent in the next send pass.
+	 * @param node               - the node that requested the proofs
+	 * @param transactionNumbers - the numbers of the transactions
+	 */
+	public void requestResend(Node node, List<Integer> transactionNumbers) {
+		resendRequests.computeIfAbsent(node, n -> ConcurrentHashMap.newKeySet()).addAll(transactionNumbers);
+		requestSendPass();
+	}
+	
+	/**
+	 * Sends the given message to the given node, without waiting for it to be sent.
+	 * @param to  - the node to send to
+	 * @param msg - the message to send
+	 */
+	public void sendMessage(Node to, Message msg) {
+		socketClient.sendMessageAsync(to, msg).whenComplete((sent, ex) -> {
+			if (ex != null || !sent) Log.log(Level.FINE, "Unable to send " + msg + " to node " + to.getId());
+		});
+	}
+	
 	/**
 	 * @return - the number of blocks currently waiting to be sent
 	 */
@@ -100,7 +400,7 @@ public class TransactionSender implements Runnable {
 	 * @throws InterruptedException - If we are interrupted while waiting.
 	 */
 	public void waitUntilDone() throws InterruptedException {
-		while (blocksWaiting() > 0) {
+		while (blocksWaiting() > 0 || !outstanding.isEmpty()) {
 			Thread.sleep(1000L);
 		}
 	}
@@ -110,40 +410,29 @@ public class TransactionSender implements Runnable {
 	 * Pending blocks will not be sent.
 	 */
 	public void shutdownNow() {
+		localStore.getMainChain().removeCommitListener(commitListener);
 		executor.shutdownNow();
+		proofPool.shutdownNow();
 		socketClient.shutdown();
 	}
 	
 	/**
-	 * Sends the transactions in the given block.
-	 * @param block - the block
-	 */
-	private void sendBlock(Block block) {
-		alreadySent = block.getNumber();
-		for (Transaction transaction : block.getTransactions()) {
-			try {
-				sendTransaction(transaction);
-			} catch (Exception ex) {
-				Log.log(Level.SEVERE, "Unable to send transaction " + transaction, ex);
-			}
-		}
-	}
-	
-	/**
-	 * Sends the given transaction.
-	 * Can block up to 60 seconds.
+	 * Starts sending the given transaction.
 	 * @param transaction - the transaction to send
-	 * @return            - if the sending succeeded
-	 * @throws InterruptedException - If the current thread was interrupted while sending.
+	 * @param delta       - if only references are sent of the blocks that the receiver may have
+	 * @param attempt     - the number of times that the transaction is sent, including this time
+	 * @throws IOException - If the proof cannot be constructed.
 	 */
-	private boolean sendTransaction(Transaction transaction) throws InterruptedException, IOException {
+	private void sendTransaction(Transaction transaction, boolean delta, int attempt) throws IOException {
 		Log.log(Level.FINE, "Node " + transaction.getSender().getId() + " starting sending transaction: " + transaction);
 		long startingTime = System.currentTimeMillis();
 		Node to = transaction.getReceiver();
 
-		ProofConstructor proofConstructor = new ProofConstructor(transaction);
+		ProofConstructor proofConstructor = new ProofConstructor(transaction, localStore.getProofCache());
 		Proof proof = proofConstructor.constructProof();
-		ProofMessage msg = new ProofMessage(proof);
+		Set<Node> referenced = delta
+				? ProofConstructor.getReferencedChains(proof.getChainUpdates(), transaction.getSender(), to) : Collections.emptySet();
+		ProofMessage msg = new ProofMessage(proof, referenced);
 		
 		//Check if the proof creation took a long time and log it.
 		long timeDelta = System.currentTimeMillis() - startingTime;
@@ -152,12 +441,77 @@ public class TransactionSender implements Runnable {
 		}
 		
 		Log.log(Level.FINE, "Node " + transaction.getSender().getId() + " now actually sending transaction: " + transaction);
-		if (socketClient.sendMessage(to, msg)) {
-			to.updateMetaKnowledge(proof);
+		if (localStore.isAcknowledgedDelivery()) {
+			outstanding.add(to, Collections.singletonList(transaction), proof.getChainUpdates(), attempt);
+		}
+		whenSent(socketClient.sendMessageAsync(to, msg), () -> {
+			updateMetaKnowledge(to, proof.getChainUpdates());
 			Log.log(Level.FINE, "Node " + transaction.getSender().getId() + " done sending transaction: " + transaction);
-			return true;
+		});
+	}
+	
+	/**
+	 * Starts sending the given transactions to the same receiver in a single message.
+	 * @param transactions - the transactions to send, all to the same receiver
+	 * @param delta        - if only references are sent of the blocks that the receiver may have
+	 * @param attempt      - the number of times that the transactions are sent, including this time
+	 * @throws IOException - If the proofs cannot be constructed.
+	 */
+	private void sendTransactions(List<Transaction> transactions, boolean delta, int attempt) throws IOException {
+		Node to = transactions.get(0).getReceiver();
+		Log.log(Level.FINE, "Node " + localStore.getOwnNode().getId() + " starting sending " + transactions.size()
+				+ " transactions to node " + to.getId());
+		long startingTime = System.currentTimeMillis();
+		
+		//The proofs are constructed against the same meta knowledge, so the cache lets each proof extend the previous one.
+		List<Proof> proofs = new ArrayList<>(transactions.size());
+		for (Transaction transaction : transactions) {
+			proofs.add(new ProofConstructor(transaction, localStore.getProofCache()).constructProof());
 		}
+		Map<Node, List<Block>> chainUpdates = Proof.mergeChainUpdates(proofs);
+		Set<Node> referenced = delta
+				? ProofConstructor.getReferencedChains(chainUpdates, localStore.getOwnNode(), to) : Collections.emptySet();
+		BatchProofMessage msg = new BatchProofMessage(transactions, chainUpdates, referenced);
 		
-		return false;
+		//Check if the proof creation took a long time and log it.
+		long timeDelta = System.currentTimeMillis() - startingTime;
+		if (timeDelta > 5 * 1000) {
+			Log.log(Level.WARNING, "Proof creation took " + timeDelta + " ms for transactions: " + transactions);
+		}
+		
+		if (localStore.isAcknowledgedDelivery()) {
+			outstanding.add(to, transactions, chainUpdates, attempt);
+		}
+		whenSent(socketClient.sendMessageAsync(to, msg), () -> {
+			updateMetaKnowledge(to, chainUpdates);
+			Log.log(Level.FINE, "Node " + localStore.getOwnNode().getId() + " done sending " + transactions.size()
+					+ " transactions to node " + to.getId());
+		});
+	}
+	
+	/**
+	 * Updates the meta knowledge of the given node after chain updates were sent to it.
+	 * 
+	 * With acknowledged delivery, the meta knowledge is only updated when the receiver accepts
+	 * the proof. With delta chain updates, the meta knowledge follows the heights that the
+	 * receiver advertises, since the receiver rejects a proof if it does not have a referenced
+	 * block.
+	 * @param to      - the node that the chain updates were sent to
+	 * @param updates - the chain updates
+	 */
+	private void updateMetaKnowledge(Node to, Map<Node, List<Block>> updates) {
+		if (localStore.isAcknowledgedDelivery() || localStore.isDeltaChainUpdates()) return;
+		
+		localStore.updateMetaKnowledge(to, updates);
+	}
+	
+	/**
+	 * Logs the given message about the given node.
+	 * @param level   - the level to log at
+	 * @param nodeId  - the id of the node that the message is about
+	 * @param message - the message
+	 */
+	private static void logNode(Level level, int nodeId, String message) {
+		Log.log(level, "Node " + nodeId + " " + message);
 	}
 }
@@ -0,0 +1,343 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * Compact storage for the tuples considered while selecting the sources of a transaction.
+ *
+ * Tuples are referenced by their index in the arena. The chains a tuple requires and the base
+ * tuples it consists of are both stored as packed bitsets in shared {@code long[]} arrays. Bit
+ * {@code i} of the members of a tuple refers to tuple {@code i} of the base arena, which is the
+ * arena created with {@link #fromTuples(TransactionTuple[])}.
+ *
+ * The required chains and the amount of a tuple follow from its members, so two tuples are
+ * considered equal if they have the same members. Adding a tuple that is already present has no
+ * effect.
+ */
+public class TupleArena {
+	private static final int INITIAL_CAPACITY = 16;
+
+	@Getter
+	private final int chainWords;
+
+	@Getter
+	private final int memberWords;
+
+	private long[] chains;
+	private long[] members;
+	private long[] amounts;
+	private int[] cardinalities;
+
+	@Getter
+	private int size;
+
+	//Open addressing table with the index + 1 of each tuple, 0 marks an empty slot.
+	private int[] table;
+
+	/**
+	 * @param chainWords  - the number of words used for the required chains of a tuple
+	 * @param memberWords - the number of words used for the members of a tuple
+	 * @param capacity    - the initial capacity
+	 */
+	public TupleArena(int chainWords, int memberWords, int capacity) {
+		this.chainWords = chainWords;
+		this.memberWords = memberWords;
+
+		int initial = Math.max(capacity, INITIAL_CAPACITY);
+		this.chains = new long[initial * chainWords];
+		this.members = new long[initial * memberWords];
+		this.amounts = new long[initial];
+		this.cardinalities = new int[initial];
+		this.table = new int[tableSizeFor(initial)];
+	}
+
+	/**
+	 * Creates the base arena for the given tuples. Tuple {@code i} in the returned arena
+	 * corresponds to {@code tuples[i]} and has only bit {@code i} set in its members.
+	 * @param tuples - the tuples
+	 * @return       - the base arena
+	 */
+	public static TupleArena fromTuples(TransactionTuple[] tuples) {
+		int chainWords = 1;
+		long[][] chainArrays = new long[tuples.length][];
+		for (int i = 0; i < tuples.length; i++) {
+			chainArrays[i] = tuples[i].getChainsRequired().toLongArray();
+			chainWords = Math.max(chainWords, chainArrays[i].length);
+		}
+
+		int memberWords = Math.max(1, (tuples.length + 63) >>> 6);
+		TupleArena arena = new TupleArena(chainWords, memberWords, tuples.length);
+		long[] chainBuffer = new long[chainWords];
+		long[] memberBuffer = new long[memberWords];
+		for (int i = 0; i < tuples.length; i++) {
+			Arrays.fill(chainBuffer, 0L);
+			System.arraycopy(chainArrays[i], 0, chainBuffer, 0, chainArrays[i].length);
+			Arrays.fill(memberBuffer, 0L);
+			memberBuffer[i >>> 6] = 1L << i;
+
+			arena.add(chainBuffer, memberBuffer, tuples[i].getAmount(), tuples[i].getChainsRequired().cardinality());
+		}
+		return arena;
+	}
+
+	/**
+	 * @return - an empty arena with the same dimensions as this arena
+	 */
+	public TupleArena emptyCopy() {
+		return new TupleArena(chainWords, memberWords, size);
+	}
+
+	/**
+	 * @return - a copy of this arena
+	 */
+	public TupleArena copy() {
+		TupleArena copy = emptyCopy();
+		System.arraycopy(chains, 0, copy.chains, 0, size * chainWords);
+		System.arraycopy(members, 0, copy.members, 0, size * memberWords);
+		System.arraycopy(amounts, 0, copy.amounts, 0, size);
+		System.arraycopy(cardinalities, 0, copy.cardinalities, 0, size);
+		copy.size = size;
+		copy.rebuildTable();
+		return copy;
+	}
+
+	/**
+	 * Adds a tuple to this arena, unless a tuple with the same members is already present.
+	 * @param chainBuffer  - the required chains of the tuple
+	 * @param memberBuffer - the members of the tuple
+	 * @param amount       - the amount of the tuple
+	 * @param cardinality  - the number of chains required by the tuple
+	 * @return             - true if the tuple was added, false if it was already present
+	 */
+	public boolean add(long[] chainBuffer, long[] memberBuffer, long amount, int cardinality) {
+		return add(chainBuffer, 0, memberBuffer, 0, amount, cardinality);
+	}
+
+	/**
+	 * Adds a tuple of the given arena to this arena, unless a tuple with the same members is
+	 * already present.
+	 * @param other - the arena of the tuple
+	 * @param index - the index of the tuple in the given arena
+	 * @return      - true if the tuple was added, false if it was already present
+	 */
+	public boolean add(TupleArena other, int index) {
+		return add(other.chains, index * chainWords, other.members, index * memberWords,
+				other.amounts[index], other.cardinalities[index]);
+	}
+
+	/**
+	 * @param chainSrc     - the array with the required chains of the tuple
+	 * @param chainOffset  - the offset of the chains in the array
+	 * @param memberSrc    - the array with the members of the tuple
+	 * @param memberOffset - the offset of the members in the array
+	 * @param amount       - the amount of the tuple
+	 * @param cardinality  - the number of chains required by the tuple
+	 * @return             - true if the tuple was added, false if it was already present
+	 */
+	private boolean add(long[] chainSrc, int chainOffset, long[] memberSrc, int memberOffset, long amount, int cardinality) {
+		if ((size + 1) * 2 > table.length) {
+			table = new int[table.length * 2];
+			rebuildTable();
+		}
+
+		int mask = table.length - 1;
+		int slot = hash(memberSrc, memberOffset) & mask;
+		while (table[slot] != 0) {
+			if (membersEqual(table[slot] - 1, memberSrc, memberOffset)) return false;
+			slot = (slot + 1) & mask;
+		}
+
+		ensureCapacity(size + 1);
+		System.arraycopy(chainSrc, chainOffset, chains, size * chainWords, chainWords);
+		System.arraycopy(memberSrc, memberOffset, members, size * memberWords, memberWords);
+		amounts[size] = amount;
+		cardinalities[size] = cardinality;
+		size++;
+		table[slot] = size;
+		return true;
+	}
+
+	/**
+	 * @param index - the index of the tuple
+	 * @return      - the amount of the tuple
+	 */
+	public long getAmount(int index) {
+		return amounts[index];
+	}
+
+	/**
+	 * @param index - the index of the tuple
+	 * @return      - the number of chains required by the tuple
+	 */
+	public int getCardinality(int index) {
+		return cardinalities[index];
+	}
+
+	/**
+	 * @param index - the index of the tuple
+	 * @param base  - the index of the base tuple
+	 * @return      - true if the given tuple contains the given base tuple
+	 */
+	public boolean containsMember(int index, int base) {
+		return (members[index * memberWords + (base >>> 6)] & (1L << base)) != 0;
+	}
+
+	/**
+	 * Stores the union of the required chains of the given tuples in the given buffer.
+	 * @param index       - the index of the tuple in this arena
+	 * @param other       - the arena of the other tuple
+	 * @param otherIndex  - the index of the other tuple
+	 * @param chainBuffer - the buffer to store the union in
+	 * @return            - the number of chains in the union
+	 */
+	public int combineChains(int index, TupleArena other, int otherIndex, long[] chainBuffer) {
+		int offset = index * chainWords;
+		int otherOffset = otherIndex * chainWords;
+		int cardinality = 0;
+		for (int w = 0; w < chainWords; w++) {
+			long word = chains[offset + w] | other.chains[otherOffset + w];
+			chainBuffer[w] = word;
+			cardinality += Long.bitCount(word);
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Stores the union of the members of the given tuples in the given buffer.
+	 * @param index        - the index of the tuple in this arena
+	 * @param other        - the arena of the other tuple
+	 * @param otherIndex   - the index of the other tuple
+	 * @param memberBuffer - the buffer to store the union in
+	 */
+	public void combineMembers(int index, TupleArena other, int otherIndex, long[] memberBuffer) {
+		int offset = index * memberWords;
+		int otherOffset = otherIndex * memberWords;
+		for (int w = 0; w < memberWords; w++) {
+			memberBuffer[w] = members[offset + w] | other.members[otherOffset + w];
+		}
+	}
+
+	/**
+	 * Calculates the amount of a tuple with the given members. This method should be called on
+	 * the base arena.
+	 * @param memberBuffer - the members
+	 * @return             - the total amount of the members
+	 */
+	public long amountOf(long[] memberBuffer) {
+		long total = 0L;
+		for (int w = 0; w < memberWords; w++) {
+			long word = memberBuffer[w];
+			while (word != 0) {
+				total += amounts[(w << 6) + Long.numberOfTrailingZeros(word)];
+				word &= word - 1;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Removes all tuples that require at least the given number of chains.
+	 * @param best - the number of chains of the current best
+	 */
+	public void removeNotBetterThan(int best) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (cardinalities[i] >= best) continue;
+
+			if (kept != i) {
+				System.arraycopy(chains, i * chainWords, chains, kept * chainWords, chainWords);
+				System.arraycopy(members, i * memberWords, members, kept * memberWords, memberWords);
+				amounts[kept] = amounts[i];
+				cardinalities[kept] = cardinalities[i];
+			}
+			kept++;
+		}
+
+		if (kept == size) return;
+		size = kept;
+		rebuildTable();
+	}
+
+	/**
+	 * Removes all tuples from this arena.
+	 */
+	public void clear() {
+		size = 0;
+		Arrays.fill(table, 0);
+	}
+
+	/**
+	 * @param index - the index of the tuple
+	 * @return      - a copy of the members of the given tuple
+	 */
+	public long[] getMembers(int index) {
+		return Arrays.copyOfRange(members, index * memberWords, (index + 1) * memberWords);
+	}
+
+	/**
+	 * Rebuilds the open addressing table.
+	 */
+	private void rebuildTable() {
+		Arrays.fill(table, 0);
+		int mask = table.length - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = hash(members, i * memberWords) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * @param minimum - the minimum capacity
+	 */
+	private void ensureCapacity(int minimum) {
+		int capacity = amounts.length;
+		if (minimum <= capacity) return;
+
+		int newCapacity = Math.max(minimum, capacity + (capacity >> 1));
+		chains = Arrays.copyOf(chains, newCapacity * chainWords);
+		members = Arrays.copyOf(members, newCapacity * memberWords);
+		amounts = Arrays.copyOf(amounts, newCapacity);
+		cardinalities = Arrays.copyOf(cardinalities, newCapacity);
+	}
+
+	/**
+	 * @param index        - the index of the tuple
+	 * @param memberSrc    - the array with the members to compare with
+	 * @param memberOffset - the offset of the members in the array
+	 * @return             - true if the given tuple has exactly the given members
+	 */
+	private boolean membersEqual(int index, long[] memberSrc, int memberOffset) {
+		int offset = index * memberWords;
+		for (int w = 0; w < memberWords; w++) {
+			if (members[offset + w] != memberSrc[memberOffset + w]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param words  - the words
+	 * @param offset - the offset of the members in the words
+	 * @return       - the hash of the members
+	 */
+	private int hash(long[] words, int offset) {
+		long h = 1L;
+		for (int w = 0; w < memberWords; w++) {
+			h = 31 * h + words[offset + w];
+		}
+		h *= 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * @param capacity - the capacity
+	 * @return         - a power of two table size that can hold the given capacity
+	 */
+	private static int tableSizeFor(int capacity) {
+		return Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+	}
+}
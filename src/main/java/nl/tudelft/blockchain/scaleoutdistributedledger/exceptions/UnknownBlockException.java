@@ -0,0 +1,15 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.exceptions;
+
+/**
+ * Exception for indicating that a proof refers to a block that we do not have.
+ */
+public class UnknownBlockException extends RuntimeException {
+	private static final long serialVersionUID = 4182391620488017533L;
+
+	/**
+	 * @param msg - the message
+	 */
+	public UnknownBlockException(String msg) {
+		super(msg);
+	}
+}
@@ -0,0 +1,66 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.message;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.TransactionSender;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+
+/**
+ * Reply to a proof, with the transactions that were accepted and the transactions that were
+ * rejected by the receiver of the proof.
+ *
+ * The heights of the chains of the receiver can be piggybacked on it, see
+ * {@link HeightAdvertisementMessage}.
+ */
+public class AcknowledgementMessage extends Message {
+	private static final long serialVersionUID = 1L;
+
+	@Getter
+	private final int receiverId;
+
+	@Getter
+	private final List<Integer> accepted;
+
+	@Getter
+	private final List<Integer> rejected;
+
+	/**
+	 * Map: node id, number of the last block of that node that the receiver has.
+	 */
+	@Getter
+	private final Map<Integer, Integer> heights;
+
+	/**
+	 * @param receiverId - the id of the node that received the transactions
+	 * @param accepted   - the numbers of the accepted transactions
+	 * @param rejected   - the numbers of the rejected transactions
+	 * @param heights    - the number of the last block per node, possibly empty
+	 */
+	public AcknowledgementMessage(int receiverId, List<Integer> accepted, List<Integer> rejected, Map<Integer, Integer> heights) {
+		this.receiverId = receiverId;
+		this.accepted = accepted;
+		this.rejected = rejected;
+		this.heights = heights;
+	}
+
+	@Override
+	public void handle(LocalStore localStore) {
+		Node receiver = localStore.getNode(receiverId);
+		TransactionSender transactionSender = localStore.getApplication() == null
+				? null : localStore.getApplication().getTransactionSender();
+		if (transactionSender != null) {
+			transactionSender.receivedAcknowledgement(receiver, accepted, rejected, heights);
+		} else if (!heights.isEmpty()) {
+			localStore.updateKnownHeights(receiver, heights);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AcknowledgementMessage<receiver=" + receiverId + ", accepted=" + accepted + ", rejected=" + rejected + ">";
+	}
+}
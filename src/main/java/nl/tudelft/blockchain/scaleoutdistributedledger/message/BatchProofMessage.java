@@ -0,0 +1,154 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.message;
+
+import lombok.Getter;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.CommunicationHelper;
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.exceptions.UnknownBlockException;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Message with multiple transactions to the same receiver and a single set of chain updates
+ * which proves all of them.
+ */
+public class BatchProofMessage extends Message {
+	private static final long serialVersionUID = 1L;
+
+	@Getter
+	private final List<TransactionMessage> transactionMessages;
+
+	/**
+	 * Map: node id, list of blocks.
+	 */
+	private volatile Map<Integer, List<BlockMessage>> chainUpdates;
+	
+	//The chain updates as received, if this message was decoded
+	private final transient EncodedChainUpdates encodedChainUpdates;
+
+	/**
+	 * Constructor.
+	 * @param transactions - the transactions to send
+	 * @param chainUpdates - the chain updates that prove all the given transactions
+	 */
+	public BatchProofMessage(List<Transaction> transactions, Map<Node, List<Block>> chainUpdates) {
+		this(transactions, chainUpdates, Collections.emptySet());
+	}
+
+	/**
+	 * Constructor.
+	 * @param transactions - the transactions to send
+	 * @param chainUpdates - the chain updates that prove all the given transactions
+	 * @param referenced   - the nodes of which the blocks are only sent as a reference
+	 */
+	public BatchProofMessage(List<Transaction> transactions, Map<Node, List<Block>> chainUpdates, Set<Node> referenced) {
+		this.transactionMessages = new ArrayList<>(transactions.size());
+		for (Transaction transaction : transactions) {
+			this.transactionMessages.add(new TransactionMessage(transaction));
+		}
+
+		this.encodedChainUpdates = null;
+		this.chainUpdates = new HashMap<>();
+		for (Entry<Node, List<Block>> entry : chainUpdates.entrySet()) {
+			List<Block> blockList = entry.getValue();
+			if (blockList.isEmpty()) continue;
+
+			boolean reference = referenced.contains(entry.getKey());
+			List<BlockMessage> blockMessageList = new ArrayList<>(blockList.size());
+			for (Block block : blockList) {
+				blockMessageList.add(reference ? BlockMessage.reference(block) : new BlockMessage(block));
+			}
+			this.chainUpdates.put(entry.getKey().getId(), blockMessageList);
+		}
+	}
+
+	/**
+	 * Constructor used when decoding.
+	 * @param encodedChainUpdates - the encoded chain updates
+	 * @param transactionMessages - the transactions
+	 */
+	private BatchProofMessage(EncodedChainUpdates encodedChainUpdates, List<TransactionMessage> transactionMessages) {
+		this.transactionMessages = transactionMessages;
+		this.encodedChainUpdates = encodedChainUpdates;
+	}
+	
+	/**
+	 * Creates a batch proof message from decoded messages.
+	 * @param transactionMessages - the transactions
+	 * @param encodedChainUpdates - the encoded chain updates
+	 * @return                    - the batch proof message
+	 */
+	static BatchProofMessage fromMessages(List<TransactionMessage> transactionMessages, EncodedChainUpdates encodedChainUpdates) {
+		return new BatchProofMessage(encodedChainUpdates, transactionMessages);
+	}
+	
+	/**
+	 * @return - the chain updates, which are decoded completely if this message was received
+	 */
+	public Map<Integer, List<BlockMessage>> getChainUpdates() {
+		if (chainUpdates == null) {
+			chainUpdates = encodedChainUpdates.decodeMessages();
+		}
+		return chainUpdates;
+	}
+	
+	/**
+	 * Decodes the chain updates into blocks. Blocks that we already have are not decoded, our own
+	 * block is used instead. The transactions of the new blocks do not have sources yet.
+	 * @param localStore - the local store
+	 * @return           - the chain updates
+	 */
+	public Map<Node, List<Block>> decodeChainUpdates(LocalStore localStore) {
+		if (chainUpdates == null) return encodedChainUpdates.decodeBlocks(localStore);
+		
+		return EncodedChainUpdates.toBlocks(chainUpdates, localStore);
+	}
+
+	@Override
+	public void handle(LocalStore localStore) {
+		try {
+			CommunicationHelper.receiveTransactions(Proof.decodeBatch(this, localStore), localStore);
+		} catch (UnknownBlockException ex) {
+			Log.log(Level.FINE, "Requesting all blocks of a batch of transactions: " + ex.getMessage());
+			List<Integer> numbers = new ArrayList<>(transactionMessages.size());
+			for (TransactionMessage transactionMessage : transactionMessages) {
+				numbers.add(transactionMessage.getNumber());
+			}
+			CommunicationHelper.requestChainUpdates(transactionMessages.get(0).getSenderId(), numbers, localStore);
+		} catch (IOException e) {
+			Log.log(Level.SEVERE, "Exception while handling batch proof message", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(64);
+		sb.append("BatchProofMessage\n  Transactions = ").append(transactionMessages).append("\n{");
+		if (getChainUpdates().isEmpty()) {
+			return sb.append("}").toString();
+		}
+
+		for (Entry<Integer, List<BlockMessage>> entry : getChainUpdates().entrySet()) {
+			sb.append("\n  ").append(entry.getKey()).append(": [");
+			for (BlockMessage bm : entry.getValue()) {
+				sb.append("\n    ").append(bm);
+			}
+			sb.append("\n  ]");
+		}
+		sb.append("\n}");
+		return sb.toString();
+	}
+}
@@ -3,6 +3,7 @@ package nl.tudelft.blockchain.scaleoutdistributedledger.message;
 import lombok.Getter;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.exceptions.UnknownBlockException;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
@@ -31,6 +32,12 @@ public class BlockMessage extends Message {
 	@Getter
 	private final Sha256Hash hash;
 	
+	/**
+	 * If this message only refers to a block that the receiver should already have.
+	 */
+	@Getter
+	private final boolean reference;
+	
 	/**
 	 * Constructor.
 	 * @param block - original block
@@ -55,6 +62,62 @@ public class BlockMessage extends Message {
 			this.transactions.add(new TransactionMessage(transaction));
 		}
 		this.hash = block.getHash();
+		this.reference = false;
+	}
+	
+	/**
+	 * Creates a message which only refers to the given block by its number and hash, without its
+	 * transactions.
+	 * @param block - the block
+	 * @return      - the reference to the block
+	 */
+	public static BlockMessage reference(Block block) {
+		Block prevBlock = block.getPreviousBlock();
+		int previousBlockNumber = prevBlock == null ? -1 : prevBlock.getNumber();
+		int ownerId = block.getOwner() == null ? Transaction.GENESIS_SENDER : block.getOwner().getId();
+		return new BlockMessage(block.getNumber(), previousBlockNumber, ownerId, new ArrayList<>(0), block.getHash(), true);
+	}
+
+	/**
+	 * Constructor used when decoding.
+	 * @param number              - the number of the block
+	 * @param previousBlockNumber - the number of the previous block, or -1
+	 * @param ownerId             - the id of the owner
+	 * @param transactions        - the transactions in the block
+	 * @param hash                - the hash of the block
+	 */
+	BlockMessage(int number, int previousBlockNumber, int ownerId, List<TransactionMessage> transactions, Sha256Hash hash) {
+		this(number, previousBlockNumber, ownerId, transactions, hash, false);
+	}
+	
+	/**
+	 * @param number              - the number of the block
+	 * @param previousBlockNumber - the number of the previous block, or -1
+	 * @param ownerId             - the id of the owner
+	 * @param transactions        - the transactions in the block
+	 * @param hash                - the hash of the block
+	 * @param reference           - if the message only refers to the block
+	 */
+	private BlockMessage(int number, int previousBlockNumber, int ownerId, List<TransactionMessage> transactions, Sha256Hash hash,
+			boolean reference) {
+		this.number = number;
+		this.previousBlockNumber = previousBlockNumber;
+		this.ownerId = ownerId;
+		this.transactions = transactions;
+		this.hash = hash;
+		this.reference = reference;
+	}
+	
+	/**
+	 * Creates a reference to a block, used when decoding.
+	 * @param number              - the number of the block
+	 * @param previousBlockNumber - the number of the previous block, or -1
+	 * @param ownerId             - the id of the owner
+	 * @param hash                - the hash of the block
+	 * @return                    - the reference to the block
+	 */
+	static BlockMessage reference(int number, int previousBlockNumber, int ownerId, Sha256Hash hash) {
+		return new BlockMessage(number, previousBlockNumber, ownerId, new ArrayList<>(0), hash, true);
 	}
 
 	@Override
@@ -65,8 +128,13 @@ public class BlockMessage extends Message {
 	/**
 	 * @param localStore - the local store
 	 * @return - the block that this message represents, without any sources in the transactions
+	 * @throws UnknownBlockException - If this message is only a reference to the block.
 	 */
 	public Block toBlockWithoutSources(LocalStore localStore) {
+		if (reference) {
+			throw new UnknownBlockException("Block " + number + " of node " + ownerId + " was referenced but is not known");
+		}
+		
 		List<Transaction> transactions = new ArrayList<>();
 		for (TransactionMessage tm : this.transactions) {
 			transactions.add(tm.toTransactionWithoutSources(localStore));
@@ -77,7 +145,10 @@ public class BlockMessage extends Message {
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder(64);
-		sb.append("BlockMessage<nr=").append(number).append(", owner=").append(ownerId).append(", transactions=[");
+		sb.append("BlockMessage<nr=").append(number).append(", owner=").append(ownerId);
+		if (reference) return sb.append(", reference>").toString();
+		
+		sb.append(", transactions=[");
 		if (transactions.isEmpty()) return sb.append("]").toString();
 		
 		for (TransactionMessage tm : transactions) {
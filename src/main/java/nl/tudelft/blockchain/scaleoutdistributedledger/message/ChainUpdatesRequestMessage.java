@@ -0,0 +1,52 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.message;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import lombok.Getter;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.TransactionSender;
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
+
+/**
+ * Message to request the proofs of transactions again, with all blocks included.
+ *
+ * This is sent in reply to a proof which refers to blocks that the requester does not have.
+ */
+public class ChainUpdatesRequestMessage extends Message {
+	private static final long serialVersionUID = 1L;
+
+	@Getter
+	private final int requesterId;
+
+	@Getter
+	private final List<Integer> transactionNumbers;
+
+	/**
+	 * @param requesterId        - the id of the node that received the transactions
+	 * @param transactionNumbers - the numbers of the transactions of which the proof is requested
+	 */
+	public ChainUpdatesRequestMessage(int requesterId, List<Integer> transactionNumbers) {
+		this.requesterId = requesterId;
+		this.transactionNumbers = transactionNumbers;
+	}
+
+	@Override
+	public void handle(LocalStore localStore) {
+		TransactionSender transactionSender = localStore.getApplication() == null
+				? null : localStore.getApplication().getTransactionSender();
+		if (transactionSender == null) {
+			Log.log(Level.WARNING, "Node " + localStore.getOwnNode().getId() + " is unable to resend transactions "
+					+ transactionNumbers + " to node " + requesterId);
+			return;
+		}
+		
+		transactionSender.requestResend(localStore.getNode(requesterId), transactionNumbers);
+	}
+
+	@Override
+	public String toString() {
+		return "ChainUpdatesRequestMessage<requester=" + requesterId + ", transactions=" + transactionNumbers + ">";
+	}
+}
@@ -0,0 +1,153 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.exceptions.UnknownBlockException;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Chain;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Chain updates of a received proof, kept in their encoded form until they are needed.
+ *
+ * When the updates are decoded, blocks that we already have (same number and hash) are skipped
+ * without being decoded, and our own block is used in their place. Only new blocks are turned
+ * into objects. This makes redundant blocks in proofs almost free to receive.
+ *
+ * Blocks can also be sent as a reference, without their transactions. A reference can only be
+ * decoded if we already have the block.
+ */
+final class EncodedChainUpdates {
+	private final byte[] bytes;
+
+	/**
+	 * Copies the remaining bytes of the given buffer, which must be encoded chain updates.
+	 * @param in - the buffer to read from
+	 */
+	EncodedChainUpdates(ByteBuf in) {
+		this.bytes = new byte[in.readableBytes()];
+		in.readBytes(this.bytes);
+	}
+
+	/**
+	 * @return - all the chain updates as messages
+	 */
+	Map<Integer, List<BlockMessage>> decodeMessages() {
+		return MessageCodec.readChainUpdates(Unpooled.wrappedBuffer(bytes));
+	}
+
+	/**
+	 * Decodes the chain updates, where blocks that we already have are replaced by our own block.
+	 * The new blocks do not have sources yet.
+	 * @param localStore - the local store
+	 * @return           - the chain updates
+	 * @throws UnknownBlockException - If a block is referenced that we do not have.
+	 */
+	Map<Node, List<Block>> decodeBlocks(LocalStore localStore) {
+		ByteBuf in = Unpooled.wrappedBuffer(bytes);
+		int chains = MessageCodec.readCount(in);
+		Map<Node, List<Block>> chainUpdates = new HashMap<>();
+		for (int i = 0; i < chains; i++) {
+			Node node = localStore.getNode(MessageCodec.readVarInt(in));
+			int count = MessageCodec.readCount(in);
+			List<Block> blocks = new ArrayList<>(count);
+			for (int j = 0; j < count; j++) {
+				int length = MessageCodec.readBlockLength(in);
+				int start = in.readerIndex();
+				Block known = findKnownBlock(node.getChain(), in);
+				in.readerIndex(start);
+				if (length == MessageCodec.BLOCK_REFERENCE) {
+					//References can only be resolved with our own block
+					BlockMessage reference = MessageCodec.readBlockReference(in);
+					blocks.add(known != null ? known : reference.toBlockWithoutSources(localStore));
+				} else if (known != null) {
+					blocks.add(known);
+					in.readerIndex(start + length);
+				} else {
+					blocks.add(MessageCodec.readBlock(in).toBlockWithoutSources(localStore));
+				}
+			}
+			chainUpdates.put(node, blocks);
+		}
+		return chainUpdates;
+	}
+
+	/**
+	 * Reads the header of an encoded block and looks it up in the given chain.
+	 * @param chain - the chain of the block
+	 * @param in    - the buffer, positioned at the start of the block
+	 * @return      - our block with the same number and hash, or null if we do not have it
+	 */
+	private static Block findKnownBlock(Chain chain, ByteBuf in) {
+		int number = MessageCodec.readVarInt(in);
+		if (!isCommitted(chain, number)) return null;
+
+		//Previous block number and owner
+		MessageCodec.readVarInt(in);
+		MessageCodec.readVarInt(in);
+
+		Block block = chain.getBlocks().get(number);
+		byte[] hash = block.getHash().getBytes();
+		int index = in.readerIndex();
+		for (int i = 0; i < MessageCodec.HASH_LENGTH; i++) {
+			if (in.getByte(index + i) != hash[i]) return null;
+		}
+		return block;
+	}
+
+	/**
+	 * Converts the given chain updates to blocks, where blocks that we already have are replaced
+	 * by our own block. The new blocks do not have sources yet.
+	 * @param chainUpdates - the chain updates
+	 * @param localStore   - the local store
+	 * @return             - the chain updates
+	 * @throws UnknownBlockException - If a block is referenced that we do not have.
+	 */
+	static Map<Node, List<Block>> toBlocks(Map<Integer, List<BlockMessage>> chainUpdates, LocalStore localStore) {
+		Map<Node, List<Block>> decoded = new HashMap<>();
+		for (Entry<Integer, List<BlockMessage>> entry : chainUpdates.entrySet()) {
+			Node node = localStore.getNode(entry.getKey());
+			Chain chain = node.getChain();
+			List<Block> blocks = new ArrayList<>(entry.getValue().size());
+			for (BlockMessage blockMessage : entry.getValue()) {
+				Block known = findKnownBlock(chain, blockMessage.getNumber(), blockMessage.getHash());
+				blocks.add(known != null ? known : blockMessage.toBlockWithoutSources(localStore));
+			}
+			decoded.put(node, blocks);
+		}
+		return decoded;
+	}
+
+	/**
+	 * @param chain  - the chain of the block
+	 * @param number - the number of the block
+	 * @param hash   - the hash of the block
+	 * @return       - our block with the given number and hash, or null if we do not have it
+	 */
+	private static Block findKnownBlock(Chain chain, int number, Sha256Hash hash) {
+		if (!isCommitted(chain, number)) return null;
+
+		Block block = chain.getBlocks().get(number);
+		return block.getHash().equals(hash) ? block : null;
+	}
+
+	/**
+	 * Only committed blocks are compared, since the hash of a block can change until it is committed.
+	 * @param chain  - the chain
+	 * @param number - the number of a block
+	 * @return       - true if we have the block with the given number and it is committed
+	 */
+	private static boolean isCommitted(Chain chain, int number) {
+		Block lastCommitted = chain.getLastCommittedBlock();
+		return number >= 0 && lastCommitted != null && number <= lastCommitted.getNumber();
+	}
+}
@@ -0,0 +1,54 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.message;
+
+import java.util.Map;
+
+import lombok.Getter;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.TransactionSender;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+
+/**
+ * Message with the heights of the chains that the sender has, sent in reply to a proof.
+ *
+ * The receiver uses the heights to bring its meta knowledge of the sender up to date, so that
+ * blocks which the sender received from other nodes are not sent to it again.
+ */
+public class HeightAdvertisementMessage extends Message {
+	private static final long serialVersionUID = 1L;
+
+	@Getter
+	private final int senderId;
+
+	/**
+	 * Map: node id, number of the last block of that node that the sender has.
+	 */
+	@Getter
+	private final Map<Integer, Integer> heights;
+
+	/**
+	 * @param senderId - the id of the node that has the given heights
+	 * @param heights  - the number of the last block per node
+	 */
+	public HeightAdvertisementMessage(int senderId, Map<Integer, Integer> heights) {
+		this.senderId = senderId;
+		this.heights = heights;
+	}
+
+	@Override
+	public void handle(LocalStore localStore) {
+		Node sender = localStore.getNode(senderId);
+		TransactionSender transactionSender = localStore.getApplication() == null
+				? null : localStore.getApplication().getTransactionSender();
+		if (transactionSender == null) {
+			localStore.updateKnownHeights(sender, heights);
+		} else {
+			transactionSender.receivedHeights(sender, heights);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "HeightAdvertisementMessage<sender=" + senderId + ", heights=" + heights + ">";
+	}
+}
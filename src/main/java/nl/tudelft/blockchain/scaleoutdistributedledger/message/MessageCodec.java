@@ -0,0 +1,475 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.message;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.TransactionMessage.TransactionSource;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
+
+/**
+ * Binary encoding of messages.
+ *
+ * Every message starts with a type tag. Numbers are written as zigzag encoded varints and hashes
+ * are written as their raw 32 bytes. Messages without a binary encoding (such as the
+ * {@link TransactionPatternMessage}) are written with Java serialization.
+ */
+public final class MessageCodec {
+	//Message type tags
+	public static final byte JAVA_SERIALIZED = 0;
+	public static final byte PROOF = 1;
+	public static final byte BATCH_PROOF = 2;
+	public static final byte START_TRANSACTING = 3;
+	public static final byte STOP_TRANSACTING = 4;
+	public static final byte UPDATE_NODES = 5;
+	public static final byte BLOCK = 6;
+	public static final byte TRANSACTION = 7;
+	public static final byte HEIGHT_ADVERTISEMENT = 8;
+	public static final byte CHAIN_UPDATES_REQUEST = 9;
+	public static final byte ACKNOWLEDGEMENT = 10;
+
+	public static final int HASH_LENGTH = 32;
+	
+	//Written instead of the length of a block in chain updates if only its header is sent
+	static final int BLOCK_REFERENCE = -1;
+
+	private MessageCodec() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Writes the given message to the given buffer.
+	 * @param message - the message to write
+	 * @param out     - the buffer to write to
+	 * @throws IOException - If the message cannot be serialized.
+	 */
+	public static void encode(Message message, ByteBuf out) throws IOException {
+		if (message instanceof ProofMessage) {
+			ProofMessage proofMessage = (ProofMessage) message;
+			out.writeByte(PROOF);
+			writeTransaction(proofMessage.getTransactionMessage(), out);
+			writeChainUpdates(proofMessage.getChainUpdates(), out);
+		} else if (message instanceof BatchProofMessage) {
+			BatchProofMessage batchMessage = (BatchProofMessage) message;
+			out.writeByte(BATCH_PROOF);
+			writeVarInt(batchMessage.getTransactionMessages().size(), out);
+			for (TransactionMessage transactionMessage : batchMessage.getTransactionMessages()) {
+				writeTransaction(transactionMessage, out);
+			}
+			writeChainUpdates(batchMessage.getChainUpdates(), out);
+		} else if (message instanceof StartTransactingMessage) {
+			out.writeByte(START_TRANSACTING);
+		} else if (message instanceof StopTransactingMessage) {
+			out.writeByte(STOP_TRANSACTING);
+		} else if (message instanceof UpdateNodesMessage) {
+			out.writeByte(UPDATE_NODES);
+		} else if (message instanceof BlockMessage) {
+			out.writeByte(BLOCK);
+			writeBlock((BlockMessage) message, out);
+		} else if (message instanceof TransactionMessage) {
+			out.writeByte(TRANSACTION);
+			writeTransaction((TransactionMessage) message, out);
+		} else if (message instanceof HeightAdvertisementMessage) {
+			HeightAdvertisementMessage heightsMessage = (HeightAdvertisementMessage) message;
+			out.writeByte(HEIGHT_ADVERTISEMENT);
+			writeVarInt(heightsMessage.getSenderId(), out);
+			writeHeights(heightsMessage.getHeights(), out);
+		} else if (message instanceof ChainUpdatesRequestMessage) {
+			ChainUpdatesRequestMessage requestMessage = (ChainUpdatesRequestMessage) message;
+			out.writeByte(CHAIN_UPDATES_REQUEST);
+			writeVarInt(requestMessage.getRequesterId(), out);
+			writeNumbers(requestMessage.getTransactionNumbers(), out);
+		} else if (message instanceof AcknowledgementMessage) {
+			AcknowledgementMessage ackMessage = (AcknowledgementMessage) message;
+			out.writeByte(ACKNOWLEDGEMENT);
+			writeVarInt(ackMessage.getReceiverId(), out);
+			writeNumbers(ackMessage.getAccepted(), out);
+			writeNumbers(ackMessage.getRejected(), out);
+			writeHeights(ackMessage.getHeights(), out);
+		} else {
+			out.writeByte(JAVA_SERIALIZED);
+			try (ObjectOutputStream oos = new ObjectOutputStream(new ByteBufOutputStream(out))) {
+				oos.writeObject(message);
+			}
+		}
+	}
+
+	/**
+	 * Reads a message from the given buffer.
+	 * @param in - the buffer containing exactly one message
+	 * @return   - the message
+	 * @throws IOException - If the message cannot be deserialized.
+	 */
+	public static Message decode(ByteBuf in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+			case PROOF:
+				return new ProofMessage(readTransaction(in), new EncodedChainUpdates(in));
+			case BATCH_PROOF:
+				int count = readCount(in);
+				List<TransactionMessage> transactions = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					transactions.add(readTransaction(in));
+				}
+				return BatchProofMessage.fromMessages(transactions, new EncodedChainUpdates(in));
+			case START_TRANSACTING:
+				return new StartTransactingMessage();
+			case STOP_TRANSACTING:
+				return new StopTransactingMessage();
+			case UPDATE_NODES:
+				return new UpdateNodesMessage();
+			case BLOCK:
+				return readBlock(in);
+			case TRANSACTION:
+				return readTransaction(in);
+			case HEIGHT_ADVERTISEMENT:
+				int senderId = readVarInt(in);
+				return new HeightAdvertisementMessage(senderId, readHeights(in));
+			case CHAIN_UPDATES_REQUEST:
+				int requesterId = readVarInt(in);
+				return new ChainUpdatesRequestMessage(requesterId, readNumbers(in));
+			case ACKNOWLEDGEMENT:
+				int receiverId = readVarInt(in);
+				List<Integer> accepted = readNumbers(in);
+				List<Integer> rejected = readNumbers(in);
+				return new AcknowledgementMessage(receiverId, accepted, rejected, readHeights(in));
+			case JAVA_SERIALIZED:
+				return readSerialized(in);
+			default:
+				throw new DecoderException("Unknown message type " + type);
+		}
+	}
+
+	/**
+	 * @param in - the buffer containing exactly one java serialized message
+	 * @return   - the message
+	 * @throws IOException - If the message cannot be deserialized.
+	 */
+	private static Message readSerialized(ByteBuf in) throws IOException {
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteBufInputStream(in))) {
+			return (Message) ois.readObject();
+		} catch (ClassNotFoundException | ClassCastException ex) {
+			throw new DecoderException("Unable to deserialize message", ex);
+		}
+	}
+
+	/**
+	 * @param transaction - the transaction to write
+	 * @param out         - the buffer to write to
+	 */
+	private static void writeTransaction(TransactionMessage transaction, ByteBuf out) {
+		writeVarInt(transaction.getNumber(), out);
+		writeVarInt(transaction.getSenderId(), out);
+		writeVarInt(transaction.getReceiverId(), out);
+		writeVarLong(transaction.getAmount(), out);
+		writeVarLong(transaction.getRemainder(), out);
+		writeVarInt(transaction.getBlockNumber(), out);
+		writeHash(transaction.getHash(), out);
+
+		writeVarInt(transaction.getSource().size(), out);
+		for (TransactionSource source : transaction.getSource()) {
+			writeVarInt(source.getOwner(), out);
+			writeVarInt(source.getBlockNumber(), out);
+			writeVarInt(source.getId(), out);
+		}
+	}
+
+	/**
+	 * @param in - the buffer to read from
+	 * @return   - the transaction message
+	 */
+	private static TransactionMessage readTransaction(ByteBuf in) {
+		int number = readVarInt(in);
+		int senderId = readVarInt(in);
+		int receiverId = readVarInt(in);
+		long amount = readVarLong(in);
+		long remainder = readVarLong(in);
+		int blockNumber = readVarInt(in);
+		Sha256Hash hash = readHash(in);
+
+		int count = readCount(in);
+		Set<TransactionSource> sources = new HashSet<>();
+		for (int i = 0; i < count; i++) {
+			int owner = readVarInt(in);
+			int sourceBlockNumber = readVarInt(in);
+			int id = readVarInt(in);
+			sources.add(new TransactionSource(owner, sourceBlockNumber, id));
+		}
+
+		return new TransactionMessage(number, senderId, receiverId, amount, remainder, sources, hash, blockNumber);
+	}
+
+	/**
+	 * @param heights - the heights of chains per node id
+	 * @param out     - the buffer to write to
+	 */
+	private static void writeHeights(Map<Integer, Integer> heights, ByteBuf out) {
+		writeVarInt(heights.size(), out);
+		for (Entry<Integer, Integer> entry : heights.entrySet()) {
+			writeVarInt(entry.getKey(), out);
+			writeVarInt(entry.getValue(), out);
+		}
+	}
+
+	/**
+	 * @param in - the buffer to read from
+	 * @return   - the heights of chains per node id
+	 */
+	private static Map<Integer, Integer> readHeights(ByteBuf in) {
+		int count = readCount(in);
+		Map<Integer, Integer> heights = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			int nodeId = readVarInt(in);
+			heights.put(nodeId, readVarInt(in));
+		}
+		return heights;
+	}
+
+	/**
+	 * @param numbers - the numbers to write
+	 * @param out     - the buffer to write to
+	 */
+	private static void writeNumbers(List<Integer> numbers, ByteBuf out) {
+		writeVarInt(numbers.size(), out);
+		for (int number : numbers) {
+			writeVarInt(number, out);
+		}
+	}
+
+	/**
+	 * @param in - the buffer to read from
+	 * @return   - the numbers
+	 */
+	private static List<Integer> readNumbers(ByteBuf in) {
+		int count = readCount(in);
+		List<Integer> numbers = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			numbers.add(readVarInt(in));
+		}
+		return numbers;
+	}
+
+	/**
+	 * Writes the number, previous block number, owner and hash of the given block.
+	 * @param block - the block to write the header of
+	 * @param out   - the buffer to write to
+	 */
+	private static void writeBlockHeader(BlockMessage block, ByteBuf out) {
+		writeVarInt(block.getNumber(), out);
+		writeVarInt(block.getPreviousBlockNumber(), out);
+		writeVarInt(block.getOwnerId(), out);
+		writeHash(block.getHash(), out);
+	}
+
+	/**
+	 * @param in - the buffer to read from
+	 * @return   - a reference to the block of which the header is read
+	 */
+	static BlockMessage readBlockReference(ByteBuf in) {
+		int number = readVarInt(in);
+		int previousBlockNumber = readVarInt(in);
+		int ownerId = readVarInt(in);
+		return BlockMessage.reference(number, previousBlockNumber, ownerId, readHash(in));
+	}
+
+	/**
+	 * @param block - the block to write
+	 * @param out   - the buffer to write to
+	 */
+	private static void writeBlock(BlockMessage block, ByteBuf out) {
+		writeBlockHeader(block, out);
+
+		writeVarInt(block.getTransactions().size(), out);
+		for (TransactionMessage transaction : block.getTransactions()) {
+			writeTransaction(transaction, out);
+		}
+	}
+
+	/**
+	 * @param in - the buffer to read from
+	 * @return   - the block message
+	 */
+	static BlockMessage readBlock(ByteBuf in) {
+		int number = readVarInt(in);
+		int previousBlockNumber = readVarInt(in);
+		int ownerId = readVarInt(in);
+		Sha256Hash hash = readHash(in);
+
+		int count = readCount(in);
+		List<TransactionMessage> transactions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			transactions.add(readTransaction(in));
+		}
+
+		return new BlockMessage(number, previousBlockNumber, ownerId, transactions, hash);
+	}
+
+	/**
+	 * Writes the given chain updates. Every block is preceded by its length in bytes, so that
+	 * blocks can be skipped without decoding them. Of references to blocks, only the header is
+	 * written, preceded by {@link #BLOCK_REFERENCE} instead of a length.
+	 * @param chainUpdates - the chain updates to write
+	 * @param out          - the buffer to write to
+	 */
+	private static void writeChainUpdates(Map<Integer, List<BlockMessage>> chainUpdates, ByteBuf out) {
+		writeVarInt(chainUpdates.size(), out);
+		for (Entry<Integer, List<BlockMessage>> entry : chainUpdates.entrySet()) {
+			writeVarInt(entry.getKey(), out);
+			writeVarInt(entry.getValue().size(), out);
+			for (BlockMessage block : entry.getValue()) {
+				if (block.isReference()) {
+					out.writeInt(BLOCK_REFERENCE);
+					writeBlockHeader(block, out);
+					continue;
+				}
+				
+				int lengthIndex = out.writerIndex();
+				out.writeInt(0);
+				writeBlock(block, out);
+				out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+			}
+		}
+	}
+
+	/**
+	 * @param in - the buffer to read from
+	 * @return   - the chain updates
+	 */
+	static Map<Integer, List<BlockMessage>> readChainUpdates(ByteBuf in) {
+		int chains = readCount(in);
+		Map<Integer, List<BlockMessage>> chainUpdates = new HashMap<>();
+		for (int i = 0; i < chains; i++) {
+			int nodeId = readVarInt(in);
+			int count = readCount(in);
+			List<BlockMessage> blocks = new ArrayList<>(count);
+			for (int j = 0; j < count; j++) {
+				if (readBlockLength(in) == BLOCK_REFERENCE) {
+					blocks.add(readBlockReference(in));
+				} else {
+					blocks.add(readBlock(in));
+				}
+			}
+			chainUpdates.put(nodeId, blocks);
+		}
+		return chainUpdates;
+	}
+
+	/**
+	 * @param in - the buffer to read from
+	 * @return   - the length in bytes of the block that follows, or {@link #BLOCK_REFERENCE}
+	 */
+	static int readBlockLength(ByteBuf in) {
+		int length = in.readInt();
+		if (length == BLOCK_REFERENCE) return length;
+		if (length < 0 || length > in.readableBytes()) {
+			throw new DecoderException("Invalid block length " + length);
+		}
+		return length;
+	}
+
+	/**
+	 * @param hash - the hash to write
+	 * @param out  - the buffer to write to
+	 */
+	public static void writeHash(Sha256Hash hash, ByteBuf out) {
+		if (hash == null || hash.getBytes().length != HASH_LENGTH) {
+			throw new EncoderException("Hashes must be exactly " + HASH_LENGTH + " bytes");
+		}
+		out.writeBytes(hash.getBytes());
+	}
+
+	/**
+	 * @param in - the buffer to read from
+	 * @return   - the hash
+	 */
+	public static Sha256Hash readHash(ByteBuf in) {
+		byte[] bytes = new byte[HASH_LENGTH];
+		in.readBytes(bytes);
+		return Sha256Hash.withHash(bytes);
+	}
+
+	/**
+	 * Reads a count and checks that it is not larger than the remaining number of bytes, as every
+	 * element takes at least one byte.
+	 * @param in - the buffer to read from
+	 * @return   - the count
+	 */
+	static int readCount(ByteBuf in) {
+		int count = readVarInt(in);
+		if (count < 0 || count > in.readableBytes()) {
+			throw new DecoderException("Invalid element count " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the given int as a zigzag encoded varint.
+	 * @param value - the value
+	 * @param out   - the buffer to write to
+	 */
+	public static void writeVarInt(int value, ByteBuf out) {
+		int zigzag = (value << 1) ^ (value >> 31);
+		while ((zigzag & ~0x7F) != 0) {
+			out.writeByte((zigzag & 0x7F) | 0x80);
+			zigzag >>>= 7;
+		}
+		out.writeByte(zigzag);
+	}
+
+	/**
+	 * Reads a zigzag encoded varint.
+	 * @param in - the buffer to read from
+	 * @return   - the value
+	 */
+	public static int readVarInt(ByteBuf in) {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = in.readByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return (result >>> 1) ^ -(result & 1);
+		}
+		throw new DecoderException("Malformed varint");
+	}
+
+	/**
+	 * Writes the given long as a zigzag encoded varint.
+	 * @param value - the value
+	 * @param out   - the buffer to write to
+	 */
+	public static void writeVarLong(long value, ByteBuf out) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ((zigzag & ~0x7FL) != 0) {
+			out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		out.writeByte((int) zigzag);
+	}
+
+	/**
+	 * Reads a zigzag encoded varint.
+	 * @param in - the buffer to read from
+	 * @return   - the value
+	 */
+	public static long readVarLong(ByteBuf in) {
+		long result = 0L;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = in.readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return (result >>> 1) ^ -(result & 1);
+		}
+		throw new DecoderException("Malformed varint");
+	}
+}
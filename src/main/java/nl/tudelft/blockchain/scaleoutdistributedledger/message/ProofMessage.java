@@ -4,6 +4,7 @@ import lombok.Getter;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.CommunicationHelper;
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.exceptions.UnknownBlockException;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
@@ -11,10 +12,12 @@ import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.logging.Level;
 
 /**
@@ -30,15 +33,27 @@ public class ProofMessage extends Message {
 	 * Same map as in the original proof.
 	 * Map: node id, list of blocks
 	 */
-	@Getter
-	private final Map<Integer, List<BlockMessage>> chainUpdates;
+	private volatile Map<Integer, List<BlockMessage>> chainUpdates;
+	
+	//The chain updates as received, if this message was decoded
+	private final transient EncodedChainUpdates encodedChainUpdates;
 	
 	/**
 	 * Constructor.
 	 * @param proof - original proof 
 	 */
 	public ProofMessage(Proof proof) {
+		this(proof, Collections.emptySet());
+	}
+	
+	/**
+	 * Constructor.
+	 * @param proof      - original proof
+	 * @param referenced - the nodes of which the blocks are only sent as a reference
+	 */
+	public ProofMessage(Proof proof, Set<Node> referenced) {
 		this.transactionMessage = new TransactionMessage(proof.getTransaction());
+		this.encodedChainUpdates = null;
 		this.chainUpdates = new HashMap<>();
 		for (Entry<Node, List<Block>> entry : proof.getChainUpdates().entrySet()) {
 			Node node = entry.getKey();
@@ -48,17 +63,53 @@ public class ProofMessage extends Message {
 				List<BlockMessage> blockMessageList = new ArrayList<>();
 				for (int i = 0; i < blockList.size(); i++) {
 					Block block = blockList.get(i);
-					blockMessageList.add(new BlockMessage(block));
+					blockMessageList.add(referenced.contains(node) ? BlockMessage.reference(block) : new BlockMessage(block));
 				}
 				this.chainUpdates.put(node.getId(), blockMessageList);
 			}
 		}
 	}
 
+	/**
+	 * Constructor used when decoding.
+	 * @param transactionMessage  - the transaction
+	 * @param encodedChainUpdates - the encoded chain updates
+	 */
+	ProofMessage(TransactionMessage transactionMessage, EncodedChainUpdates encodedChainUpdates) {
+		this.transactionMessage = transactionMessage;
+		this.encodedChainUpdates = encodedChainUpdates;
+	}
+	
+	/**
+	 * @return - the chain updates, which are decoded completely if this message was received
+	 */
+	public Map<Integer, List<BlockMessage>> getChainUpdates() {
+		if (chainUpdates == null) {
+			chainUpdates = encodedChainUpdates.decodeMessages();
+		}
+		return chainUpdates;
+	}
+	
+	/**
+	 * Decodes the chain updates into blocks. Blocks that we already have are not decoded, our own
+	 * block is used instead. The transactions of the new blocks do not have sources yet.
+	 * @param localStore - the local store
+	 * @return           - the chain updates
+	 */
+	public Map<Node, List<Block>> decodeChainUpdates(LocalStore localStore) {
+		if (chainUpdates == null) return encodedChainUpdates.decodeBlocks(localStore);
+		
+		return EncodedChainUpdates.toBlocks(chainUpdates, localStore);
+	}
+
 	@Override
 	public void handle(LocalStore localStore) {
 		try {
 			CommunicationHelper.receiveTransaction(new Proof(this, localStore), localStore);
+		} catch (UnknownBlockException ex) {
+			Log.log(Level.FINE, "Requesting all blocks of transaction " + transactionMessage.getNumber() + ": " + ex.getMessage());
+			CommunicationHelper.requestChainUpdates(transactionMessage.getSenderId(),
+					Collections.singletonList(transactionMessage.getNumber()), localStore);
 		} catch (IOException e) {
 			Log.log(Level.SEVERE, "Exception while handling proof message", e);
 		}
@@ -68,11 +119,11 @@ public class ProofMessage extends Message {
 	public String toString() {
 		StringBuilder sb = new StringBuilder(64);
 		sb.append("ProofMessage\n  Transaction = ").append(transactionMessage).append("\n{");
-		if (chainUpdates.isEmpty()) {
+		if (getChainUpdates().isEmpty()) {
 			return sb.append("}").toString();
 		}
 		
-		for (Entry<Integer, List<BlockMessage>> entry : chainUpdates.entrySet()) {
+		for (Entry<Integer, List<BlockMessage>> entry : getChainUpdates().entrySet()) {
 			sb.append("\n  ").append(entry.getKey()).append(": [");
 			for (BlockMessage bm : entry.getValue()) {
 				sb.append("\n    ").append(bm);
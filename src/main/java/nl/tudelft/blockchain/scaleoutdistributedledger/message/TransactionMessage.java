@@ -80,6 +80,29 @@ public class TransactionMessage extends Message {
 		this.blockNumber = transaction.getBlockNumber().getAsInt();
 	}
 
+	/**
+	 * Constructor used when decoding.
+	 * @param number      - the number of the transaction
+	 * @param senderId    - the id of the sender
+	 * @param receiverId  - the id of the receiver
+	 * @param amount      - the amount
+	 * @param remainder   - the remainder
+	 * @param source      - the sources of the transaction
+	 * @param hash        - the hash of the transaction
+	 * @param blockNumber - the number of the block the transaction is in
+	 */
+	TransactionMessage(int number, int senderId, int receiverId, long amount, long remainder,
+			Set<TransactionSource> source, Sha256Hash hash, int blockNumber) {
+		this.number = number;
+		this.senderId = senderId;
+		this.receiverId = receiverId;
+		this.amount = amount;
+		this.remainder = remainder;
+		this.source = source;
+		this.hash = hash;
+		this.blockNumber = blockNumber;
+	}
+
 	/**
 	 * Converts this message into a transaction without any sources.
 	 * @param localStore - the local store
@@ -2,6 +2,9 @@ package nl.tudelft.blockchain.scaleoutdistributedledger.mocks;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,6 +19,8 @@ import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Utils;
  * Mock for TendermintChain.
  */
 public class TendermintChainMock implements MainChain {
+	private final List<Runnable> commitListeners = new CopyOnWriteArrayList<>();
+	
 	@Override
 	public void init() {}
 	
@@ -37,6 +42,28 @@ public class TendermintChainMock implements MainChain {
 		return Sha256Hash.withHash(hash);
 	}
 
+	@Override
+	public CompletableFuture<Sha256Hash> commitAbstractAsync(BlockAbstract abs) {
+		//Every abstract is present immediately, so the caller marks its block as committed as soon
+		//as it gets the future. Like on the real main chain, the listeners are notified after that.
+		CompletableFuture<Sha256Hash> future = CompletableFuture.completedFuture(commitAbstract(abs));
+		CompletableFuture.runAsync(this::notifyCommitListeners);
+		return future;
+	}
+	
+	/**
+	 * Calls all the commit listeners.
+	 */
+	private void notifyCommitListeners() {
+		for (Runnable listener : commitListeners) {
+			try {
+				listener.run();
+			} catch (Exception ex) {
+				Log.log(Level.SEVERE, "Uncaught exception in commit listener", ex);
+			}
+		}
+	}
+
 	@Override
 	public boolean isPresent(Sha256Hash hash) {
 		return true;
@@ -52,6 +79,16 @@ public class TendermintChainMock implements MainChain {
 		return true;
 	}
 	
+	@Override
+	public void addCommitListener(Runnable listener) {
+		commitListeners.add(listener);
+	}
+	
+	@Override
+	public void removeCommitListener(Runnable listener) {
+		commitListeners.remove(listener);
+	}
+	
 	@Override
 	public void stop() {}
 }
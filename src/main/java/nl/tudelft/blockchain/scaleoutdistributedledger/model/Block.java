@@ -3,6 +3,7 @@ package nl.tudelft.blockchain.scaleoutdistributedledger.model;
 import lombok.Getter;
 import lombok.Setter;
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.storage.BlockArchive;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Utils;
 
@@ -10,6 +11,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 /**
@@ -31,8 +33,11 @@ public class Block {
 	@Getter @Setter
 	private Node owner;
 
-	@Getter
-	private final List<Transaction> transactions;
+	// Custom getter, null when the transactions have been moved to an archive
+	private volatile List<Transaction> transactions;
+	
+	private transient BlockArchive archive;
+	private transient long archivePosition;
 
 	// Custom getter
 	private Sha256Hash hash;
@@ -40,6 +45,9 @@ public class Block {
 	private transient boolean onMainChain;
 	private transient boolean hasNoAbstract;
 	private transient volatile boolean finalized;
+	@Getter
+	private transient volatile boolean commitPending;
+	private transient volatile boolean pruned;
 
 	/**
 	 * Constructor for a (genesis) block.
@@ -74,16 +82,79 @@ public class Block {
 		}
 	}
 
+	/**
+	 * @return - the transactions in this block
+	 */
+	public List<Transaction> getTransactions() {
+		List<Transaction> list = this.transactions;
+		if (list != null) return list;
+		
+		return archive.load(this, archivePosition);
+	}
+	
+	/**
+	 * Moves the transactions of this block to the given archive, after which they are loaded from
+	 * the archive when needed. The hash of this block is calculated before the move.
+	 * @param archive  - the archive
+	 * @param position - the position of the transactions of this block in the archive
+	 */
+	public synchronized void moveTo(BlockArchive archive, long position) {
+		getHash();
+		this.archive = archive;
+		this.archivePosition = position;
+		this.transactions = null;
+	}
+	
+	/**
+	 * @return - true if the transactions of this block have been moved to an archive
+	 */
+	public boolean isArchived() {
+		return this.transactions == null;
+	}
+	
+	/**
+	 * Prunes this block, so that it only keeps the given transactions. This is used for blocks
+	 * that are part of a {@link Checkpoint}. The hash of this block is calculated before pruning.
+	 * @param retained - the transactions to keep
+	 */
+	public synchronized void prune(List<Transaction> retained) {
+		getHash();
+		this.transactions = new ArrayList<>(retained);
+		this.archive = null;
+		this.pruned = true;
+	}
+	
+	/**
+	 * @return - true if this block has been pruned and only contains its unspent transactions
+	 */
+	public boolean isPruned() {
+		return this.pruned;
+	}
+	
 	/**
 	 * Gets the transaction with the correct number in this block.
 	 * @param transactionNumber - the number of the transaction to get.
 	 * @return - the transaction.
 	 */
 	public Transaction getTransaction(int transactionNumber) {
-		for (Transaction transaction : this.transactions) {
+		//Use the position in the index of the owner's chain if it refers to this block
+		Chain chain = this.owner == null ? null : this.owner.getChain();
+		if (chain != null && chain.getIndexedBlockNumber(transactionNumber) == this.number) {
+			int offset = chain.getIndexedOffset(transactionNumber);
+			List<Transaction> list = getTransactions();
+			if (offset < list.size() && list.get(offset).getNumber() == transactionNumber) {
+				return list.get(offset);
+			}
+		}
+		
+		for (Transaction transaction : getTransactions()) {
 			if (transaction.getNumber() == transactionNumber)
 				return transaction;
 		}
+		
+		if (this.pruned) {
+			throw new IllegalStateException("Transaction " + transactionNumber + " has been spent and pruned from block " + this.number);
+		}
 		throw new IllegalStateException("Invalid transaction number");
 	}
 
@@ -99,6 +170,10 @@ public class Block {
 		
 		transactions.add(transaction);
 		transaction.setBlockNumber(getNumber());
+		if (this.owner != null && this.owner.getChain() != null) {
+			this.owner.getChain().indexTransaction(transaction, getNumber(), transactions.size() - 1);
+		}
+		Chain.markSourcesSpent(transaction);
 	}
 	
 	/**
@@ -147,18 +222,67 @@ public class Block {
 	}
 	
 	/**
-	 * Commits this block to the main chain.
+	 * Commits this block to the main chain, without waiting for it.
+	 * The block is marked as committed once its abstract is on the main chain.
+	 * Use a {@link nl.tudelft.blockchain.scaleoutdistributedledger.BlockCommitter} to retry failed commits.
 	 * @param localStore - the local store
+	 * @return           - a future with whether the block was committed
+	 * @throws IllegalStateException - If this block has already been committed.
 	 */
-	public synchronized void commit(LocalStore localStore) {
+	public CompletableFuture<Boolean> commit(LocalStore localStore) {
+		markCommitPending();
+		return submitAbstract(localStore).thenApply(hash -> {
+			if (hash == null) {
+				Log.log(Level.WARNING, "Block " + getNumber() + " could not be committed to the main chain", getOwner().getId());
+				return false;
+			}
+			
+			completeCommit(localStore);
+			return true;
+		});
+	}
+	
+	/**
+	 * Marks that this block is being committed. From now on, no transactions can be added to it.
+	 * @throws IllegalStateException - If this block has already been committed.
+	 */
+	public synchronized void markCommitPending() {
 		if (this.finalized) {
 			throw new IllegalStateException("This block has already been committed!");
 		}
-
+		
 		Log.log(Level.FINER, "Committing block " + getNumber(), getOwner().getId());
+		this.commitPending = true;
+		this.finalized = true;
+	}
+	
+	/**
+	 * Submits the abstract of this block to the main chain.
+	 * @param localStore - the local store
+	 * @return           - a future with the hash of the abstract on the main chain, or with null if committing failed
+	 */
+	public CompletableFuture<Sha256Hash> submitAbstract(LocalStore localStore) {
+		return localStore.getMainChain().commitAbstractAsync(calculateBlockAbstract());
+	}
+	
+	/**
+	 * Marks this block as committed after its abstract appeared on the main chain, and stores it
+	 * together with the blocks before it that are committed along with it.
+	 * @param localStore - the local store
+	 */
+	public void completeCommit(LocalStore localStore) {
+		markCommitted();
 		
-		//Commit to the main chain, and set the last committed block
-		localStore.getMainChain().commitAbstract(calculateBlockAbstract());
+		if (localStore.getBlockStore() != null) {
+			localStore.getBlockStore().appendOwnBlock(this);
+		}
+	}
+	
+	/**
+	 * Marks this block as committed, without committing it to the main chain.
+	 * This is used for blocks that were committed before a restart.
+	 */
+	public synchronized void markCommitted() {
 		getOwner().getChain().setLastCommittedBlock(this);
 		
 		//Set next committed block
@@ -166,9 +290,12 @@ public class Block {
 		Block prev = getPreviousBlock();
 		while (prev != null && prev.nextCommittedBlock == null) {
 			prev.nextCommittedBlock = this;
+			prev.commitPending = false;
 			prev = prev.getPreviousBlock();
 		}
 		
+		this.hasNoAbstract = false;
+		this.commitPending = false;
 		this.finalized = true;
 	}
 
@@ -197,12 +324,12 @@ public class Block {
 			if (other.previousBlock != null) return false;
 		} else if (!this.previousBlock.equals(other.previousBlock)) return false;
 
-		return this.transactions.equals(other.transactions);
+		return getTransactions().equals(other.getTransactions());
 	}
 	
 	@Override
 	public String toString() {
-		return "Block<nr=" + number + ", owner=" + owner + ", transactions=" + transactions + ">";
+		return "Block<nr=" + number + ", owner=" + owner + ", transactions=" + getTransactions() + ">";
 	}
 
 	/**
@@ -222,7 +349,7 @@ public class Block {
 				outputStream.write(Utils.intToByteArray(this.owner.getId()));
 			}
 			
-			for (Transaction tx : this.transactions) {
+			for (Transaction tx : getTransactions()) {
 				outputStream.write(tx.getHash().getBytes());
 			}
 		} catch (IOException ex) {
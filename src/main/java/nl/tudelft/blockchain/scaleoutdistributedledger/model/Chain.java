@@ -3,7 +3,11 @@ package nl.tudelft.blockchain.scaleoutdistributedledger.model;
 import lombok.Getter;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.AppendOnlyArrayList;
@@ -23,6 +27,15 @@ public class Chain {
 	private Transaction genesisTransaction;
 	
 	private Block lastCommittedBlock;
+	
+	//Map from transaction number to the position of the transaction (block number in the upper and offset in the lower 32 bits)
+	private final Map<Integer, Long> transactionIndex = new ConcurrentHashMap<>();
+	
+	//Map from transaction number to the numbers of the transactions spending its amount (upper) and remainder (lower 32 bits), plus one
+	private final Map<Integer, Long> spentOutputs = new ConcurrentHashMap<>();
+	
+	@Getter
+	private volatile Checkpoint checkpoint;
 
 	/**
 	 * Constructor.
@@ -38,14 +51,16 @@ public class Chain {
 	 * This method is used for updating a chain belonging to a different node.
 	 * @param updates - the new blocks to append
 	 * @param localStore - the localStore
+	 * @return - the blocks that were actually appended
 	 * @throws UnsupportedOperationException - If this chain is owned by us.
 	 */
-	public void update(List<Block> updates, LocalStore localStore) {
+	public List<Block> update(List<Block> updates, LocalStore localStore) {
 		if (owner instanceof OwnNode) throw new UnsupportedOperationException("You cannot use update to update your own chain");
 		
-		if (updates.isEmpty()) return;
+		if (updates.isEmpty()) return Collections.emptyList();
 		
 		Block lastCommitted = updates.get(updates.size() - 1);
+		ArrayList<Block> toAdd = new ArrayList<>();
 		synchronized (this) {
 			//Figure out where to start updating
 			int nextNr;
@@ -61,7 +76,6 @@ public class Chain {
 			}
 			
 			//Actually apply the updates
-			ArrayList<Block> toAdd = new ArrayList<>();
 			int lastBlockNr = nextNr - 1;
 			for (Block block : updates) {
 				//Skip any overlap
@@ -69,6 +83,10 @@ public class Chain {
 				block.setPreviousBlock(previousBlock);
 				lastBlockNr = fixNextCommitted(block, lastCommitted.getNumber(), lastBlockNr, localStore);
 				toAdd.add(block);
+				indexTransactions(block);
+				for (Transaction transaction : block.getTransactions()) {
+					markSourcesSpent(transaction);
+				}
 				nextNr++;
 				previousBlock = block;
 			}
@@ -78,6 +96,11 @@ public class Chain {
 		
 		//The last block in the updates must be a committed block
 		setLastCommittedBlock(lastCommitted);
+		
+		if (!toAdd.isEmpty() && localStore.getBlockArchive() != null) {
+			localStore.getBlockArchive().archiveOldBlocks(this);
+		}
+		return toAdd;
 	}
 	
 	/**
@@ -177,6 +200,213 @@ public class Chain {
 		return newBlock;
 	}
 	
+	/**
+	 * Adds the given transaction to the transaction index of this chain.
+	 * @param transaction - the transaction
+	 * @param blockNumber - the number of the block the transaction is in
+	 * @param offset      - the position of the transaction in the block
+	 */
+	void indexTransaction(Transaction transaction, int blockNumber, int offset) {
+		transactionIndex.put(transaction.getNumber(), ((long) blockNumber << 32) | (offset & 0xFFFFFFFFL));
+	}
+	
+	/**
+	 * Adds all transactions of the given block to the transaction index of this chain.
+	 * @param block - the block
+	 */
+	private void indexTransactions(Block block) {
+		List<Transaction> transactions = block.getTransactions();
+		for (int i = 0; i < transactions.size(); i++) {
+			indexTransaction(transactions.get(i), block.getNumber(), i);
+		}
+	}
+	
+	/**
+	 * @param transactionNumber - the number of the transaction
+	 * @return                  - the number of the block containing the given transaction, or -1 if it is not indexed
+	 */
+	public int getIndexedBlockNumber(int transactionNumber) {
+		Long position = transactionIndex.get(transactionNumber);
+		return position == null ? -1 : (int) (position >>> 32);
+	}
+	
+	/**
+	 * @param transactionNumber - the number of the transaction
+	 * @return                  - the position of the given transaction in its block, or -1 if it is not indexed
+	 */
+	public int getIndexedOffset(int transactionNumber) {
+		Long position = transactionIndex.get(transactionNumber);
+		return position == null ? -1 : (int) position.longValue();
+	}
+	
+	/**
+	 * Looks up the transaction with the given number in this chain using the transaction index.
+	 * @param transactionNumber - the number of the transaction
+	 * @return                  - the transaction, or null if it is not in this chain
+	 */
+	public Transaction getTransaction(int transactionNumber) {
+		Long position = transactionIndex.get(transactionNumber);
+		if (position == null) return null;
+		
+		int blockNumber = (int) (position >>> 32);
+		int offset = (int) position.longValue();
+		if (blockNumber >= blocks.size()) return null;
+		
+		List<Transaction> transactions = blocks.get(blockNumber).getTransactions();
+		if (offset >= transactions.size()) return null;
+		
+		Transaction transaction = transactions.get(offset);
+		return transaction.getNumber() == transactionNumber ? transaction : null;
+	}
+	
+	/**
+	 * Marks the outputs of the sources of the given transaction as spent by the given transaction.
+	 * @param transaction - the transaction
+	 */
+	public static void markSourcesSpent(Transaction transaction) {
+		Node spender = transaction.getSender();
+		if (spender == null) return;
+		
+		long number = transaction.getNumber() + 1L;
+		for (Transaction source : transaction.getSource()) {
+			long spent = 0L;
+			if (source.getReceiver() == spender) spent |= number << 32;
+			if (source.getSender() == spender) spent |= number;
+			if (spent == 0L) continue;
+			
+			of(source).spentOutputs.merge(source.getNumber(), spent, Chain::firstSpenders);
+		}
+	}
+	
+	/**
+	 * @param transaction - the transaction
+	 * @return            - the chain of the sender of the given transaction, or of the receiver for genesis transactions
+	 */
+	public static Chain of(Transaction transaction) {
+		Node owner = transaction.getSender() == null ? transaction.getReceiver() : transaction.getSender();
+		return owner.getChain();
+	}
+	
+	/**
+	 * @param transaction - the transaction
+	 * @return            - true if the given transaction is in the checkpointed prefix of its chain
+	 */
+	public static boolean isCheckpointed(Transaction transaction) {
+		return transaction.getBlockNumber().orElse(Integer.MAX_VALUE) <= of(transaction).getCheckpointNumber();
+	}
+	
+	/**
+	 * Combines two sets of spenders, where the first spender of an output is kept.
+	 * @param current - the current spenders
+	 * @param added   - the new spenders
+	 * @return        - the combined spenders
+	 */
+	private static long firstSpenders(long current, long added) {
+		long amount = (current >>> 32) != 0 ? current & 0xFFFFFFFF00000000L : added & 0xFFFFFFFF00000000L;
+		long remainder = (current & 0xFFFFFFFFL) != 0 ? current & 0xFFFFFFFFL : added & 0xFFFFFFFFL;
+		return amount | remainder;
+	}
+	
+	/**
+	 * @param source  - a transaction in this chain
+	 * @param spender - the node spending an output of the given transaction
+	 * @return        - the number of the transaction of the given node spending the given transaction, or -1 if it is not spent
+	 */
+	public int getSpender(Transaction source, Node spender) {
+		long spent = spentOutputs.getOrDefault(source.getNumber(), 0L);
+		long number = 0L;
+		if (source.getReceiver() == spender) number = spent >>> 32;
+		if (number == 0L && source.getSender() == spender) number = spent & 0xFFFFFFFFL;
+		return (int) number - 1;
+	}
+	
+	/**
+	 * @param transaction - a transaction in this chain
+	 * @return            - true if all outputs of the given transaction have been spent
+	 */
+	public boolean isSpent(Transaction transaction) {
+		long spent = spentOutputs.getOrDefault(transaction.getNumber(), 0L);
+		if (transaction.getAmount() > 0 && spent >>> 32 == 0) return false;
+		return transaction.getRemainder() <= 0 || (spent & 0xFFFFFFFFL) != 0;
+	}
+	
+	/**
+	 * @return - the number of the last block in the checkpoint of this chain, or -1 if there is no checkpoint
+	 */
+	public int getCheckpointNumber() {
+		Checkpoint current = checkpoint;
+		return current == null ? -1 : current.getBlockNumber();
+	}
+	
+	/**
+	 * Moves the checkpoint of this chain forward to the given block. All blocks up to the given
+	 * block are pruned, so that they only keep the transactions with an output that is not spent.
+	 * Transactions that were kept by an earlier checkpoint but have been spent since are pruned as
+	 * well.
+	 * 
+	 * The genesis block is never pruned and blocks that are not committed are never checkpointed.
+	 * @param blockNumber - the number of the last block of the new checkpoint
+	 * @return            - the checkpoint of this chain after the update, or null if there is none
+	 */
+	public synchronized Checkpoint createCheckpoint(int blockNumber) {
+		int first = Math.max(getCheckpointNumber(), Block.GENESIS_BLOCK_NUMBER) + 1;
+		if (lastCommittedBlock == null) return checkpoint;
+		
+		int last = Math.min(blockNumber, lastCommittedBlock.getNumber());
+		if (last < first) return checkpoint;
+		
+		//Revisit the blocks of transactions kept by the current checkpoint that have been spent since
+		List<Transaction> unspent = new ArrayList<>();
+		TreeSet<Integer> toPrune = new TreeSet<>();
+		if (checkpoint != null) {
+			for (Transaction transaction : checkpoint.getUnspent()) {
+				if (isSpent(transaction)) {
+					toPrune.add(transaction.getBlockNumber().getAsInt());
+				} else {
+					unspent.add(transaction);
+				}
+			}
+		}
+		
+		for (int i = first; i <= last; i++) {
+			toPrune.add(i);
+		}
+		
+		for (int number : toPrune) {
+			List<Transaction> retained = pruneBlock(blocks.get(number));
+			if (number >= first) unspent.addAll(retained);
+		}
+		
+		checkpoint = new Checkpoint(blocks.get(last), unspent);
+		return checkpoint;
+	}
+	
+	/**
+	 * Prunes the given block, so that it only keeps the transactions with an output that is not
+	 * spent. Spent transactions are removed from the indices of this chain.
+	 * @param block - the block
+	 * @return      - the transactions that are kept
+	 */
+	private List<Transaction> pruneBlock(Block block) {
+		List<Transaction> retained = new ArrayList<>();
+		for (Transaction transaction : block.getTransactions()) {
+			if (isSpent(transaction)) {
+				transactionIndex.remove(transaction.getNumber());
+				spentOutputs.remove(transaction.getNumber());
+			} else {
+				//Resolve the sources before the blocks they are in can be pruned
+				transaction.getSource();
+				retained.add(transaction);
+			}
+		}
+		
+		block.prune(retained);
+		for (int i = 0; i < retained.size(); i++) {
+			indexTransaction(retained.get(i), block.getNumber(), i);
+		}
+		return retained;
+	}
+	
 	/**
 	 * Finds the genesis transaction of the given node.
 	 * @param node         - the node 
@@ -112,7 +112,8 @@ public class ChainView implements Iterable<Block> {
 			for (int i = 0; i < overlap && !updates.isEmpty() && startIndex < updates.size(); i++) {
 				Block ownBlock = chain.getBlocks().get(baseI + i);
 				Block updatedBlock = updates.get(startIndex);
-				if (!ownBlock.equals(updatedBlock)) {
+				//Blocks we already had are decoded as our own block. Pruned blocks can no longer be compared.
+				if (ownBlock != updatedBlock && (ownBlock.isPruned() || !ownBlock.equals(updatedBlock))) {
 					this.valid = false;
 					return false;
 				}
@@ -0,0 +1,59 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Compact record of a prefix of a chain that is known by every node.
+ *
+ * The blocks up to and including the checkpointed block only keep the transactions that still
+ * have an output that is not spent. Verification does not walk the chain past the checkpoint.
+ */
+public class Checkpoint {
+
+	/**
+	 * @return - the number of the last block in the checkpointed prefix
+	 */
+	@Getter
+	private final int blockNumber;
+
+	/**
+	 * @return - the hash of the last block in the checkpointed prefix
+	 */
+	@Getter
+	private final Sha256Hash blockHash;
+
+	private final Map<Integer, Transaction> unspent;
+
+	/**
+	 * @param block   - the last block in the checkpointed prefix
+	 * @param unspent - the transactions in the prefix with an output that is not spent
+	 */
+	public Checkpoint(Block block, Collection<Transaction> unspent) {
+		this.blockNumber = block.getNumber();
+		this.blockHash = block.getHash();
+		this.unspent = new HashMap<>();
+		for (Transaction transaction : unspent) {
+			this.unspent.put(transaction.getNumber(), transaction);
+		}
+	}
+
+	/**
+	 * @return - the transactions in the prefix with an output that is not spent
+	 */
+	public Collection<Transaction> getUnspent() {
+		return Collections.unmodifiableCollection(unspent.values());
+	}
+
+	/**
+	 * @param transaction - the transaction
+	 * @return            - true if the given transaction is in the prefix and has an output that is not spent
+	 */
+	public boolean contains(Transaction transaction) {
+		return unspent.get(transaction.getNumber()) == transaction;
+	}
+}
@@ -72,7 +72,14 @@ public class Node {
 	 * @param proof - the proof to update with
 	 */
 	public void updateMetaKnowledge(Proof proof) {
-		Map<Node, List<Block>> updates = proof.getChainUpdates();
+		updateMetaKnowledge(proof.getChainUpdates());
+	}
+	
+	/**
+	 * Updates the knowledge that we have about what this node knows with the given chain updates.
+	 * @param updates - the chain updates that this node now knows about
+	 */
+	public void updateMetaKnowledge(Map<Node, List<Block>> updates) {
 		for (Entry<Node, List<Block>> entry : updates.entrySet()) {
 			//Don't include self
 			if (entry.getKey() == this) continue;
@@ -2,16 +2,23 @@ package nl.tudelft.blockchain.scaleoutdistributedledger.model;
 
 import lombok.Getter;
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.BatchProofMessage;
 import nl.tudelft.blockchain.scaleoutdistributedledger.message.ProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.TransactionMessage;
 import nl.tudelft.blockchain.scaleoutdistributedledger.message.TransactionMessage.TransactionSource;
-import nl.tudelft.blockchain.scaleoutdistributedledger.message.BlockMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Utils;
 import nl.tudelft.blockchain.scaleoutdistributedledger.validation.ProofValidationException;
 import nl.tudelft.blockchain.scaleoutdistributedledger.validation.ValidationException;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -27,7 +34,7 @@ public class Proof {
 	@Getter
 	private final Map<Node, List<Block>> chainUpdates;
 	
-	private final Map<Node, ChainView> chainViews = new HashMap<>();
+	private final Map<Node, ChainView> chainViews;
 
 	/**
 	 * Constructor.
@@ -36,6 +43,7 @@ public class Proof {
 	public Proof(Transaction transaction) {
 		this.transaction = transaction;
 		this.chainUpdates = new HashMap<>();
+		this.chainViews = new HashMap<>();
 	}
 	
 	/**
@@ -45,16 +53,19 @@ public class Proof {
 	 * @throws IOException - error while getting node info from tracker
 	 */
 	public Proof(ProofMessage proofMessage, LocalStore localStore) throws IOException {
-		this.chainUpdates = new HashMap<>();
-
-		// Decode the transactions while skipping sources
-		for (Entry<Integer, List<BlockMessage>> entry : proofMessage.getChainUpdates().entrySet()) {
-			List<Block> blocks = new ArrayList<>();
-			for (BlockMessage blockMessage : entry.getValue()) {
-				blocks.add(blockMessage.toBlockWithoutSources(localStore));
-			}
-			chainUpdates.put(localStore.getNode(entry.getKey()), blocks);
-		}
+		this(proofMessage.getTransactionMessage(), proofMessage.decodeChainUpdates(localStore), localStore);
+	}
+	
+	/**
+	 * Constructor to decode the given transaction and chain updates.
+	 * @param transactionMessage - the transaction received from the network
+	 * @param updates            - the decoded chain updates, where blocks we already have are our own blocks
+	 * @param localStore         - local store
+	 * @throws IOException - error while getting node info from tracker
+	 */
+	private Proof(TransactionMessage transactionMessage, Map<Node, List<Block>> updates, LocalStore localStore) throws IOException {
+		this.chainUpdates = updates;
+		this.chainViews = new HashMap<>();
 
 		// Fix backlinks
 		this.fixPreviousBlockPointers();
@@ -62,32 +73,113 @@ public class Proof {
 		// Fix the sources
 		this.fixTransactionSources(localStore);
 
-		Node senderNode = localStore.getNode(proofMessage.getTransactionMessage().getSenderId());
+		this.transaction = findTransaction(transactionMessage, localStore);
+	}
+	
+	/**
+	 * Constructor for a proof that shares the (already decoded) chain updates of another proof.
+	 * @param other              - the proof to share the chain updates with
+	 * @param transactionMessage - the transaction received from the network
+	 * @param localStore         - local store
+	 */
+	private Proof(Proof other, TransactionMessage transactionMessage, LocalStore localStore) {
+		this.chainUpdates = other.chainUpdates;
+		this.chainViews = other.chainViews;
+		this.transaction = findTransaction(transactionMessage, localStore);
+	}
+	
+	/**
+	 * Decodes a batch proof message. The chain updates are decoded only once and are shared by
+	 * all the returned proofs, as are the chain views.
+	 * @param batchMessage - the batch received from the network
+	 * @param localStore   - local store
+	 * @return             - a proof for each transaction in the batch, in the same order
+	 * @throws IOException - error while getting node info from tracker
+	 */
+	public static List<Proof> decodeBatch(BatchProofMessage batchMessage, LocalStore localStore) throws IOException {
+		List<TransactionMessage> transactionMessages = batchMessage.getTransactionMessages();
+		List<Proof> proofs = new ArrayList<>(transactionMessages.size());
+		if (transactionMessages.isEmpty()) return proofs;
+		
+		Proof first = new Proof(transactionMessages.get(0), batchMessage.decodeChainUpdates(localStore), localStore);
+		proofs.add(first);
+		for (int i = 1; i < transactionMessages.size(); i++) {
+			proofs.add(new Proof(first, transactionMessages.get(i), localStore));
+		}
+		return proofs;
+	}
+	
+	/**
+	 * @param transactionMessage - the transaction message
+	 * @param localStore         - local store
+	 * @return                   - the decoded transaction in the chain of its sender
+	 */
+	private Transaction findTransaction(TransactionMessage transactionMessage, LocalStore localStore) {
+		Node senderNode = localStore.getNode(transactionMessage.getSenderId());
 		ChainView senderChainView = getChainView(senderNode);
-		this.transaction = senderChainView.getBlock(proofMessage.getTransactionMessage().getBlockNumber())
-				.getTransaction(proofMessage.getTransactionMessage().getNumber());
+		return senderChainView.getBlock(transactionMessage.getBlockNumber())
+				.getTransaction(transactionMessage.getNumber());
+	}
+	
+	/**
+	 * Merges the chain updates of the given proofs. The proofs are expected to be for the same
+	 * receiver, so for every chain the updates are consecutive blocks. The merged updates of a
+	 * chain range from the lowest to the highest block in any of the proofs.
+	 * @param proofs - the proofs to merge
+	 * @return       - the merged chain updates
+	 */
+	public static Map<Node, List<Block>> mergeChainUpdates(List<Proof> proofs) {
+		Map<Node, int[]> ranges = new HashMap<>();
+		for (Proof proof : proofs) {
+			for (Entry<Node, List<Block>> entry : proof.getChainUpdates().entrySet()) {
+				List<Block> blocks = entry.getValue();
+				if (blocks.isEmpty()) continue;
+				
+				int first = blocks.get(0).getNumber();
+				int last = blocks.get(blocks.size() - 1).getNumber();
+				ranges.merge(entry.getKey(), new int[] {first, last},
+						(a, b) -> new int[] {Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+			}
+		}
+		
+		Map<Node, List<Block>> merged = new HashMap<>();
+		for (Entry<Node, int[]> entry : ranges.entrySet()) {
+			int[] range = entry.getValue();
+			List<Block> blocks = entry.getKey().getChain().getBlocks().subList(range[0], range[1] + 1);
+			merged.put(entry.getKey(), new ArrayList<>(blocks));
+		}
+		return merged;
 	}
 	
 	private void fixPreviousBlockPointers() {
 		for (Entry<Node, List<Block>> entry : this.chainUpdates.entrySet()) {
-			Node node = entry.getKey();
-			List<Block> updates = entry.getValue();
-			if (updates.isEmpty()) continue;
-			
+			Chain chain = entry.getKey().getChain();
 			Block previousBlock = null;
-			for (int i = 0; i < updates.size(); i++) {
-				Block block = updates.get(i);
+			for (Block block : entry.getValue()) {
+				//Our own blocks are already linked
+				if (isKnown(chain, block)) {
+					previousBlock = block;
+					continue;
+				}
+				
+				if (previousBlock == null && block.getNumber() != 0) {
+					previousBlock = chain.getBlocks().get(block.getNumber() - 1);
+				}
 				block.setPreviousBlock(previousBlock);
 				previousBlock = block;
 			}
-			
-			Block firstBlock = updates.get(0);
-			if (firstBlock.getNumber() != 0) {
-				previousBlock = node.getChain().getBlocks().get(firstBlock.getNumber() - 1);
-				firstBlock.setPreviousBlock(previousBlock);
-			}
 		}
 	}
+	
+	/**
+	 * @param chain - the chain
+	 * @param block - a block of the given chain
+	 * @return      - true if the given block is our own block, as opposed to a block that was decoded
+	 */
+	private static boolean isKnown(Chain chain, Block block) {
+		int number = block.getNumber();
+		return number < chain.getBlocks().size() && chain.getBlocks().get(number) == block;
+	}
 
 	private void fixTransactionSources(LocalStore localStore) {
 		HashMap<Integer, LightView> lightViews = new HashMap<>();
@@ -97,8 +189,13 @@ public class Proof {
 		}
 
 		// For all transactions of all nodes do
-		for (List<Block> blocks : this.chainUpdates.values()) {
-			for (Block block : blocks) {
+		for (Entry<Node, List<Block>> entry : this.chainUpdates.entrySet()) {
+			Chain chain = entry.getKey().getChain();
+			int checkpointNumber = chain.getCheckpointNumber();
+			for (Block block : entry.getValue()) {
+				// Our own blocks already have sources, and those of checkpointed blocks may have been pruned
+				if (isKnown(chain, block) || block.getNumber() <= checkpointNumber) continue;
+				
 				for (Transaction tx : block.getTransactions()) {
 					for (TransactionSource ts : tx.getMessage().getSource()) {
 						Block sourceBlock;
@@ -134,7 +231,74 @@ public class Proof {
 		}
 		
 		//TODO [BFT] all the blocks that were sent but not required for the proof are not validated at all.
-		verify(this.transaction, localStore);
+		if (localStore.isParallelVerification()) {
+			verifyParallel(localStore);
+		} else {
+			verify(this.transaction, localStore);
+		}
+	}
+	
+	/**
+	 * Verifies this proof, where the chains of different nodes are verified concurrently.
+	 * 
+	 * First the transactions that need to be verified are collected from the sources of the
+	 * transaction of this proof. Then the transactions of every chain are verified by a separate
+	 * task. The transactions are only marked as verified if all tasks succeed.
+	 * @param localStore - the local store
+	 * @throws ProofValidationException - If this proof is invalid.
+	 */
+	private void verifyParallel(LocalStore localStore) throws ProofValidationException {
+		Map<Node, List<Transaction>> perChain = new HashMap<>();
+		List<Transaction> verified = new ArrayList<>();
+		collectUnverified(localStore, perChain, verified);
+		
+		//Create the chain views up front, so the tasks do not contend for them
+		for (Node node : perChain.keySet()) {
+			getChainView(node);
+		}
+		
+		Utils.invokeParallel(perChain.values(), transactions -> {
+			for (Transaction transaction : transactions) {
+				verifyChainWithTransaction(transaction, localStore, transaction.getBlockNumber().getAsInt());
+			}
+		});
+		
+		for (Transaction transaction : verified) {
+			transaction.setLocallyVerified(true);
+		}
+	}
+	
+	/**
+	 * Collects the transaction of this proof and all its sources that are not verified yet, grouped
+	 * by the chain they are in. Genesis and checkpointed transactions are verified directly, and
+	 * the sources of checkpointed transactions are not collected.
+	 * @param localStore - the local store
+	 * @param perChain   - the map to add the transactions to verify to, per sender
+	 * @param verified   - the list to add all collected transactions to
+	 * @throws ProofValidationException - If a genesis or checkpointed transaction is invalid.
+	 */
+	private void collectUnverified(LocalStore localStore, Map<Node, List<Transaction>> perChain, List<Transaction> verified) {
+		Set<Transaction> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<Transaction> stack = new ArrayDeque<>();
+		stack.push(this.transaction);
+		while (!stack.isEmpty()) {
+			Transaction current = stack.pop();
+			if (current.isLocallyVerified() || !seen.add(current)) continue;
+			
+			if (!current.getBlockNumber().isPresent()) {
+				throw new ProofValidationException("The transaction has no block number, so we cannot validate it.");
+			}
+			
+			verified.add(current);
+			if (current.getSender() == null) {
+				verifyGenesisTransaction(current, localStore);
+			} else if (!verifyCheckpointedTransaction(current)) {
+				perChain.computeIfAbsent(current.getSender(), k -> new ArrayList<>()).add(current);
+				for (Transaction source : current.getSource()) {
+					stack.push(source);
+				}
+			}
+		}
 	}
 
 	/**
@@ -156,10 +320,29 @@ public class Proof {
 			return;
 		}
 
-		verifyChainWithTransaction(transaction, localStore, blockNumber);
-		verifySourceTransactions(transaction, localStore);
+		if (!verifyCheckpointedTransaction(transaction)) {
+			verifyChainWithTransaction(transaction, localStore, blockNumber);
+			verifySourceTransactions(transaction, localStore);
+		}
 		transaction.setLocallyVerified(true);
 	}
+	
+	/**
+	 * Verifies a transaction in the checkpointed prefix of the chain of its sender. Such a
+	 * transaction is committed and known by every node, so the chain is not walked and its
+	 * sources are not verified again. It is only valid if it still has an output that is not spent.
+	 * @param transaction - the transaction
+	 * @return            - true if the transaction is checkpointed, false otherwise
+	 * @throws ProofValidationException - If the transaction is checkpointed but all its outputs are spent.
+	 */
+	private boolean verifyCheckpointedTransaction(Transaction transaction) throws ProofValidationException {
+		if (!Chain.isCheckpointed(transaction)) return false;
+		
+		if (!transaction.getSender().getChain().getCheckpoint().contains(transaction)) {
+			throw new ProofValidationException("Transaction " + transaction + " is checkpointed, but all its outputs have been spent.");
+		}
+		return true;
+	}
 
 	/**
 	 * Performs the first part of the verification of a transaction.
@@ -178,7 +361,10 @@ public class Proof {
 		
 		boolean seen = false;
 		boolean absmark = false;
-		for (Block block : chainView) {
+		//Blocks up to the checkpoint never contain the transaction in question
+		ListIterator<Block> iterator = chainView.listIterator(transaction.getSender().getChain().getCheckpointNumber() + 1);
+		while (iterator.hasNext()) {
+			Block block = iterator.next();
 			//TODO This containment check will not report transactions with the same id in different blocks (they will be unequal).
 			//It is therefore impossible to find a duplicate transaction
 			if (block.getTransactions().contains(transaction)) {
@@ -255,14 +441,17 @@ public class Proof {
 	 * @param node - the node
 	 * @return - a chainview for the specified node
 	 */
-	public synchronized ChainView getChainView(Node node) {
-		ChainView chainView = chainViews.get(node);
-		if (chainView == null) {
-			chainView = new ChainView(node.getChain(), chainUpdates.get(node), false);
-			chainView.isValid();
-			chainViews.put(node, chainView);
+	public ChainView getChainView(Node node) {
+		//Chain views can be shared between the proofs of a batch, so we synchronize on the map.
+		synchronized (chainViews) {
+			ChainView chainView = chainViews.get(node);
+			if (chainView == null) {
+				chainView = new ChainView(node.getChain(), chainUpdates.get(node), false);
+				chainView.isValid();
+				chainViews.put(node, chainView);
+			}
+			return chainView;
 		}
-		return chainView;
 	}
 	
 	/**
@@ -271,15 +460,21 @@ public class Proof {
 	 * @param localStore - the localStore
 	 */
 	public void applyUpdates(LocalStore localStore) {
+		Map<Node, List<Block>> added = new HashMap<>();
 		for (Entry<Node, List<Block>> entry : chainUpdates.entrySet()) {
 			Node node = entry.getKey();
 			
 			List<Block> updates = entry.getValue();
-			node.getChain().update(updates, localStore);
+			List<Block> appended = node.getChain().update(updates, localStore);
+			if (!appended.isEmpty()) added.put(node, appended);
+		}
+		
+		if (!added.isEmpty() && localStore.getBlockStore() != null) {
+			localStore.getBlockStore().appendBlocks(added);
 		}
 		
 		//Update the meta knowledge of the sender
-		transaction.getSender().updateMetaKnowledge(this);
+		localStore.updateMetaKnowledge(transaction.getSender(), chainUpdates);
 	}
 	
 	/**
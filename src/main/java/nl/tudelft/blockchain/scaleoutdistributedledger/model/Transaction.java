@@ -92,6 +92,12 @@ public class Transaction implements Comparable<Transaction> {
 			if (this.sender == null) {
 				this.blockNumber = OptionalInt.of(Block.GENESIS_BLOCK_NUMBER);
 			} else {
+				Transaction indexed = sender.getChain().getTransaction(this.number);
+				if (indexed == this) {
+					this.blockNumber = OptionalInt.of(sender.getChain().getIndexedBlockNumber(this.number));
+					return this.blockNumber;
+				}
+				
 				for (Block block : sender.getChain().getBlocks()) {
 					if (block.getTransactions().contains(this)) {
 						this.blockNumber = OptionalInt.of(block.getNumber());
@@ -1,5 +1,7 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger.model.mainchain;
 
+import java.util.concurrent.CompletableFuture;
+
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.BlockAbstract;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
@@ -16,6 +18,16 @@ public interface MainChain {
 	 */
 	public Sha256Hash commitAbstract(BlockAbstract abs);
 
+	/**
+	 * Commit an abstract to the main chain, without waiting for it to be included.
+	 * Abstracts that are committed shortly after each other can be submitted together.
+	 *
+	 * @param abs - the abstract to commit
+	 * @return - a future with the hash given to the transaction, which completes when the abstract
+	 *           is present on the main chain, or with null if committing failed
+	 */
+	public CompletableFuture<Sha256Hash> commitAbstractAsync(BlockAbstract abs);
+
 	/**
 	 * Check whether the given hash is on the main chain (in a form of BlockAbstract).
 	 * @param hash the hash of the block to check
@@ -36,6 +48,18 @@ public interface MainChain {
 	 */
 	public boolean isInCache(Block block);
 
+	/**
+	 * Registers a listener that is called whenever new block abstracts appear on the main chain.
+	 * The listener is called from the thread that updates the main chain, so it should return quickly.
+	 * @param listener - the listener to add
+	 */
+	public void addCommitListener(Runnable listener);
+
+	/**
+	 * @param listener - the listener to remove
+	 */
+	public void removeCommitListener(Runnable listener);
+
 	/**
 	 * Initializes the tendermint chain.
 	 */
@@ -4,30 +4,69 @@ import nl.tudelft.blockchain.scaleoutdistributedledger.model.BlockAbstract;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Utils;
-import org.apache.http.client.fluent.Request;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.BasicResponseHandler;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
 /**
  * An ABCI client for sending to the Tendermint chain.
+ *
+ * The requests are sent over a pool of persistent connections to the Tendermint node.
  */
 public class ABCIClient {
+	//The maximum number of heights that Tendermint returns in a single blockchain request
+	public static final int MAX_HEIGHTS_PER_REQUEST = 20;
+	//The default maximum number of open connections to the Tendermint node
+	public static final int DEFAULT_MAX_CONNECTIONS = 8;
+	//In milliseconds, the default timeout for connecting and for waiting for data
+	public static final int DEFAULT_TIMEOUT = 30 * 1000;
+
 	private final String addr;
+	private final CloseableHttpClient httpClient;
 
 	/**
 	 * @param address - the address of the Tendermint node
 	 */
 	public ABCIClient(String address) {
+		this(address, DEFAULT_MAX_CONNECTIONS, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * @param address        - the address of the Tendermint node
+	 * @param maxConnections - the maximum number of open connections to the Tendermint node
+	 * @param timeout        - the timeout in milliseconds for connecting and for waiting for data
+	 */
+	public ABCIClient(String address, int maxConnections, int timeout) {
 		this.addr = address;
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(timeout)
+				.setConnectionRequestTimeout(timeout)
+				.setSocketTimeout(timeout)
+				.build();
+		this.httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.build();
 	}
 
 	/**
@@ -37,7 +76,7 @@ public class ABCIClient {
 	 * @return - the hash of the block on the chain if successful, null otherwise
 	 */
 	public byte[] commit(BlockAbstract abs) {
-		JSONObject result = sendTx(abs.toBytes());
+		JSONObject result = sendTx("broadcast_tx_commit", abs.toBytes());
 		if (result == null) return null;
 		JSONObject error;
 		if ((error = getError(result)) != null) {
@@ -62,6 +101,36 @@ public class ABCIClient {
 		}
 	}
 
+	/**
+	 * Submit a block abstract to Tendermint, without waiting for it to be included in a block.
+	 * Tendermint only checks the abstract before it returns.
+	 *
+	 * @param abs - the abstract to submit
+	 * @return - the hash of the transaction on the chain if the abstract was accepted, null otherwise
+	 */
+	public byte[] commitAsync(BlockAbstract abs) {
+		JSONObject result = sendTx("broadcast_tx_sync", abs.toBytes());
+		if (result == null) return null;
+		JSONObject error;
+		if ((error = getError(result)) != null) {
+			Log.log(Level.INFO, "Could not submit the abstract because: " + error.getString("data"));
+			return null;
+		}
+
+		try {
+			JSONObject resultField = result.getJSONObject("result");
+			if (resultField.getInt("code") != 0) {
+				Log.log(Level.INFO, "Abstract rejected by Tendermint: " + resultField.optString("log"));
+				return null;
+			}
+			return Utils.hexStringToBytes(resultField.getString("hash"));
+		} catch (Exception e) {
+			// Malformed result
+			Log.log(Level.WARNING, "Result parsing failed, result of sending was: \n" + result.toString(), e);
+			return null;
+		}
+	}
+
 	/**
 	 * Query Tendermint for the presence of a transaction (main chain block).
 	 *
@@ -106,6 +175,41 @@ public class ABCIClient {
 		return abstracts;
 	}
 
+	/**
+	 * Query the main chain for the heights in the given range at which blocks contain transactions.
+	 * At most {@link #MAX_HEIGHTS_PER_REQUEST} heights are checked with one request.
+	 *
+	 * @param minHeight - the first height to check
+	 * @param maxHeight - the last height to check, at most {@link #MAX_HEIGHTS_PER_REQUEST} - 1 above minHeight
+	 * @return - the heights with transactions in ascending order, or null if the request failed
+	 */
+	public List<Long> getHeightsWithTransactions(long minHeight, long maxHeight) {
+		Map<String, String> params = new HashMap<>();
+		params.put("minHeight", Long.toString(minHeight));
+		params.put("maxHeight", Long.toString(maxHeight));
+		JSONObject result = sendRequest("blockchain", params);
+		if (result == null) return null;
+		JSONObject error;
+		if ((error = getError(result)) != null) {
+			Log.log(Level.INFO, "Error while querying for heights " + minHeight + " to " + maxHeight + ": " + error.toString(1));
+			return null;
+		}
+
+		List<Long> heights = new ArrayList<>();
+		try {
+			JSONArray metas = result.getJSONObject("result").getJSONArray("block_metas");
+			for (int i = 0; i < metas.length(); i++) {
+				JSONObject header = metas.getJSONObject(i).getJSONObject("header");
+				if (header.getLong("num_txs") > 0) heights.add(header.getLong("height"));
+			}
+		} catch (Exception e) {
+			Log.log(Level.WARNING, "Malformed result " + result + "\nCausing exception:", e);
+			return null;
+		}
+		Collections.sort(heights);
+		return heights;
+	}
+
 	/**
 	 * Get the status JSON object of the main chain.
 	 *
@@ -139,13 +243,14 @@ public class ABCIClient {
 	/**
 	 * Send a transaction to Tendermint.
 	 *
+	 * @param endpoint - the broadcast endpoint to use
 	 * @param data - the byte array containing the tx data
 	 * @return - the JSON response
 	 */
-	private JSONObject sendTx(byte[] data) {
+	private JSONObject sendTx(String endpoint, byte[] data) {
 		Map<String, String> params = new HashMap<>();
 		params.put("tx", "0x" + Utils.bytesToHexString(data));
-		return sendRequest("broadcast_tx_commit", params);
+		return sendRequest(endpoint, params);
 	}
 
 	/**
@@ -181,23 +286,27 @@ public class ABCIClient {
 	 */
 	protected JSONObject sendRequest(String endpoint, Map<String, String> params) {
 		try {
-			StringBuilder str = new StringBuilder("http://" + addr + "/" + endpoint);
-
-			Iterator<Map.Entry<String, String>> it = params.entrySet().iterator();
-			if (it.hasNext()) {
-				Map.Entry<String, String> param = it.next();
-				str.append('?').append(param.getKey()).append('=').append(param.getValue());
-			}
-			while (it.hasNext()) {
-				Map.Entry<String, String> param = it.next();
-				str.append('&').append(param.getKey()).append('=').append(param.getValue());
+			URIBuilder uri = new URIBuilder("http://" + addr + "/" + endpoint);
+			for (Map.Entry<String, String> param : params.entrySet()) {
+				uri.addParameter(param.getKey(), param.getValue());
 			}
 
-			return new JSONObject(Request.Get(str.toString()).execute().returnContent().toString());
-		} catch (IOException | JSONException e) {
+			return new JSONObject(httpClient.execute(new HttpGet(uri.build()), new BasicResponseHandler()));
+		} catch (IOException | JSONException | URISyntaxException e) {
 			Log.log(Level.INFO, "Failed executing http request.");
 			Log.log(Level.FINE, "", e);
 			return null;
 		}
 	}
+
+	/**
+	 * Closes all connections to the Tendermint node.
+	 */
+	public void close() {
+		try {
+			httpClient.close();
+		} catch (IOException e) {
+			Log.log(Level.FINE, "Failed closing the http client.", e);
+		}
+	}
 }
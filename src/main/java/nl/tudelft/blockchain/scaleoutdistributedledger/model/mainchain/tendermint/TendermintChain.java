@@ -1,15 +1,27 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger.model.mainchain.tendermint;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import com.github.jtendermint.jabci.socket.TSocket;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.Application;
+import nl.tudelft.blockchain.scaleoutdistributedledger.SimulationMain;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.BlockAbstract;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
@@ -25,6 +37,10 @@ import lombok.Getter;
 public final class TendermintChain implements MainChain {
 	public static final String DEFAULT_ADDRESS = "localhost";
 	public static final int DEFAULT_ABCI_SERVER_PORT = 46658;
+	//In milliseconds, the time during which abstracts are collected before they are submitted together
+	private static final long COMMIT_BATCH_WINDOW = 20;
+	//In milliseconds, the time after which a submitted abstract that is not on the main chain is considered lost
+	private static final long COMMIT_TIMEOUT = 60 * 1000L;
 	public int abciServerPort;
 
 	private ABCIServer handler;
@@ -33,6 +49,12 @@ public final class TendermintChain implements MainChain {
 	private ExecutorService threadPool;
 	private Set<Sha256Hash> cache;
 	private final Object cacheLock = new Object();
+	private final List<Runnable> commitListeners = new CopyOnWriteArrayList<>();
+	private final ScheduledExecutorService committer = Executors.newSingleThreadScheduledExecutor();
+	private final Queue<PendingCommit> toSubmit = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean submitScheduled = new AtomicBoolean();
+	//Map: block hash, the submitted abstract of the block that is not yet on the main chain
+	private final Map<Sha256Hash, PendingCommit> pendingCommits = new ConcurrentHashMap<>();
 	@Getter
 	private long currentHeight;
 	@Getter
@@ -98,7 +120,8 @@ public final class TendermintChain implements MainChain {
 	 * Called on start of the instance.
 	 */
 	private void initClient() {
-		this.client = new ABCIClient(DEFAULT_ADDRESS + ":" + (abciServerPort - 1));
+		this.client = new ABCIClient(DEFAULT_ADDRESS + ":" + (abciServerPort - 1),
+				SimulationMain.ABCI_MAX_CONNECTIONS, SimulationMain.ABCI_TIMEOUT);
 		Log.log(Level.INFO, "Started ABCI Client on " + DEFAULT_ADDRESS + ":" + (abciServerPort - 1));
 	}
 
@@ -150,17 +173,30 @@ public final class TendermintChain implements MainChain {
 			height = this.client.status().getLong("latest_block_height");
 		}
 
-		for (long i = currentHeight + 1; i <= height; i++) {
-			List<BlockAbstract> abstractsAtCurrentHeight = this.client.query(i);
-			if (abstractsAtCurrentHeight == null) {
-				Log.log(Level.WARNING, "Could not get block at height " + i + ", perhaps the tendermint rpc is not (yet) running (or broken)");
-				return;
-			}
-			synchronized (cacheLock) {
-				for (BlockAbstract abs : abstractsAtCurrentHeight) {
-					cache.add(abs.getBlockHash());
+		boolean added = false;
+		try {
+			//Only the blocks with transactions are fetched, the others are skipped in bulk
+			for (long from = currentHeight + 1; from <= height; from += ABCIClient.MAX_HEIGHTS_PER_REQUEST) {
+				long to = Math.min(height, from + ABCIClient.MAX_HEIGHTS_PER_REQUEST - 1);
+				for (long i : getHeightsWithTransactions(from, to)) {
+					List<BlockAbstract> abstractsAtCurrentHeight = this.client.query(i);
+					if (abstractsAtCurrentHeight == null) {
+						Log.log(Level.WARNING, "Could not get block at height " + i + ", perhaps the tendermint rpc is not (yet) running (or broken)");
+						return;
+					}
+					synchronized (cacheLock) {
+						for (BlockAbstract abs : abstractsAtCurrentHeight) {
+							added |= cache.add(abs.getBlockHash());
+						}
+					}
+					for (BlockAbstract abs : abstractsAtCurrentHeight) {
+						completeCommit(abs.getBlockHash());
+					}
 				}
 			}
+		} finally {
+			//Also notify about the abstracts that were added before a failure
+			if (added) notifyCommitListeners();
 		}
 		if (currentHeight < height) {
 			Log.log(Level.FINE, "Successfully updated the Tendermint cache for node " + this.app.getLocalStore().getOwnNode().getId()
@@ -170,11 +206,53 @@ public final class TendermintChain implements MainChain {
 		currentHeight = Math.max(currentHeight, height);
 	}
 
+	/**
+	 * @param from - the first height
+	 * @param to   - the last height
+	 * @return     - the heights between from and to (inclusive) that have transactions, or all of
+	 *               them if Tendermint does not tell us
+	 */
+	private List<Long> getHeightsWithTransactions(long from, long to) {
+		List<Long> heights = this.client.getHeightsWithTransactions(from, to);
+		if (heights != null) return heights;
+
+		heights = new ArrayList<>();
+		for (long i = from; i <= to; i++) {
+			heights.add(i);
+		}
+		return heights;
+	}
+
+	/**
+	 * Calls all the commit listeners.
+	 */
+	private void notifyCommitListeners() {
+		for (Runnable listener : commitListeners) {
+			try {
+				listener.run();
+			} catch (Exception ex) {
+				Log.log(Level.SEVERE, "Uncaught exception in commit listener", ex);
+			}
+		}
+	}
+
+	@Override
+	public void addCommitListener(Runnable listener) {
+		commitListeners.add(listener);
+	}
+
+	@Override
+	public void removeCommitListener(Runnable listener) {
+		commitListeners.remove(listener);
+	}
+
 	/**
 	 * Stop the connection to Tendermint.
 	 */
 	@Override
 	public void stop() {
+		committer.shutdownNow();
+		if (client != null) client.close();
 		socket.stop();
 		Thread.interrupted();
 	}
@@ -191,6 +269,74 @@ public final class TendermintChain implements MainChain {
 		}
 	}
 	
+	@Override
+	public CompletableFuture<Sha256Hash> commitAbstractAsync(BlockAbstract abs) {
+		PendingCommit pending = new PendingCommit(abs);
+		toSubmit.add(pending);
+		if (submitScheduled.compareAndSet(false, true)) {
+			try {
+				committer.schedule(this::submitBatch, COMMIT_BATCH_WINDOW, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException ex) {
+				//We are shutting down
+				pending.future.complete(null);
+			}
+		}
+		return pending.future;
+	}
+
+	/**
+	 * Submits all abstracts that were committed since the last batch.
+	 * Tendermint only checks every abstract before it returns, so the whole batch can be included
+	 * in the same block of the main chain.
+	 */
+	private void submitBatch() {
+		submitScheduled.set(false);
+		List<PendingCommit> batch = new ArrayList<>();
+		PendingCommit pending;
+		while ((pending = toSubmit.poll()) != null) {
+			BlockAbstract abs = pending.abs;
+			byte[] hash = client.commitAsync(abs);
+			if (hash == null) {
+				Log.log(Level.INFO, "Submitting abstract of block " + abs.getBlockNumber() + " to tendermint failed");
+				pending.future.complete(null);
+				continue;
+			}
+
+			abs.setAbstractHash(Sha256Hash.withHash(hash));
+			pendingCommits.put(abs.getBlockHash(), pending);
+			batch.add(pending);
+
+			//The cache may have been updated before we registered the commit
+			if (isPresent(abs.getBlockHash())) completeCommit(abs.getBlockHash());
+		}
+
+		if (batch.isEmpty()) return;
+		Log.log(Level.FINE, "Submitted " + batch.size() + " abstracts to tendermint");
+		committer.schedule(() -> expire(batch), COMMIT_TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Completes the commit of the given block, if it was submitted by us.
+	 * @param blockHash - the hash of the block of which the abstract is on the main chain
+	 */
+	private void completeCommit(Sha256Hash blockHash) {
+		PendingCommit pending = pendingCommits.remove(blockHash);
+		if (pending != null) pending.future.complete(pending.abs.getAbstractHash());
+	}
+
+	/**
+	 * Fails the commits of the given batch that are not on the main chain yet.
+	 * @param batch - the submitted commits
+	 */
+	private void expire(List<PendingCommit> batch) {
+		for (PendingCommit pending : batch) {
+			if (!pendingCommits.remove(pending.abs.getBlockHash(), pending)) continue;
+
+			Log.log(Level.INFO, "Abstract of block " + pending.abs.getBlockNumber() + " did not appear on the main chain in time");
+			pending.future.complete(null);
+		}
+	}
+
 	@Override
 	public boolean isPresent(Sha256Hash hash) {
 		return cache.contains(hash);
@@ -216,4 +362,19 @@ public final class TendermintChain implements MainChain {
 	boolean addToCache(Sha256Hash genesisBlockHash) {
 		return cache.add(genesisBlockHash);
 	}
+
+	/**
+	 * An abstract that was committed, with the future to complete when it is on the main chain.
+	 */
+	private static class PendingCommit {
+		private final BlockAbstract abs;
+		private final CompletableFuture<Sha256Hash> future = new CompletableFuture<>();
+
+		/**
+		 * @param abs - the abstract
+		 */
+		PendingCommit(BlockAbstract abs) {
+			this.abs = abs;
+		}
+	}
 }
@@ -1,5 +1,6 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger.simulation.transactionpattern;
 
+import nl.tudelft.blockchain.scaleoutdistributedledger.BlockCommitter;
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
 import nl.tudelft.blockchain.scaleoutdistributedledger.SimulationMain;
 import nl.tudelft.blockchain.scaleoutdistributedledger.TransactionCreator;
@@ -99,14 +100,16 @@ public interface ITransactionPattern extends Serializable {
 	 */
 	public default void commitBlocks(LocalStore localStore, boolean force) throws InterruptedException {
 		Chain ownChain = localStore.getOwnNode().getChain();
+		BlockCommitter blockCommitter = localStore.getApplication().getBlockCommitter();
 		Block lastBlock = ownChain.getLastBlock();
-		Block lastCommitted = ownChain.getLastCommittedBlock();
+		//Blocks that are still being committed count as committed
+		Block lastCommitted = blockCommitter.getLastCommitRequested();
 		
 		//Don't commit if we don't have anything to commit
 		if (lastBlock == lastCommitted) return;
 		
 		if (force || shouldCommitBlocks(lastBlock, lastCommitted)) {
-			lastBlock.commit(localStore);
+			blockCommitter.commit(lastBlock);
 		}
 	}
 	
@@ -116,9 +119,10 @@ public interface ITransactionPattern extends Serializable {
 	 */
 	public default void commitExtraEmpty(LocalStore localStore) {
 		Chain ownChain = localStore.getOwnNode().getChain();
+		BlockCommitter blockCommitter = localStore.getApplication().getBlockCommitter();
 		for (int i = 0; i < SimulationMain.REQUIRED_COMMITS + 1; i++) {
 			Block block = ownChain.appendNewBlock();
-			block.commit(localStore);
+			blockCommitter.commit(block);
 		}
 	}
 
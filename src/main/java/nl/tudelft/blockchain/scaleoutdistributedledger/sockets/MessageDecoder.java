@@ -0,0 +1,32 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.sockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.MessageCodec;
+
+/**
+ * Decoder which reads length prefixed frames written by the {@link MessageEncoder}.
+ */
+public class MessageDecoder extends LengthFieldBasedFrameDecoder {
+
+    /**
+     * Constructor.
+     * @param maxMessageSize - the maximum size of a single message in bytes
+     */
+    public MessageDecoder(int maxMessageSize) {
+        super(maxMessageSize, 0, 4, 0, 4);
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) return null;
+
+        try {
+            return MessageCodec.decode(frame);
+        } finally {
+            frame.release();
+        }
+    }
+}
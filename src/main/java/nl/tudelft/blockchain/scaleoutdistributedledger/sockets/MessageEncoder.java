@@ -0,0 +1,23 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.sockets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.MessageCodec;
+
+/**
+ * Encoder which writes messages as length prefixed frames using the {@link MessageCodec}.
+ */
+public class MessageEncoder extends MessageToByteEncoder<Message> {
+
+    private static final int LENGTH_FIELD_SIZE = 4;
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Message msg, ByteBuf out) throws Exception {
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        MessageCodec.encode(msg, out);
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - LENGTH_FIELD_SIZE);
+    }
+}
@@ -0,0 +1,231 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.sockets;
+
+import io.netty.channel.Channel;
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.BatchProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.ProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Stage which handles received messages on a pool of worker threads instead of on the netty event loop.
+ *
+ * Every worker has its own queue. Messages are assigned to a worker based on their sender
+ * (or on their connection if they have no sender), so messages of the same sender are handled in
+ * the order in which they were received. When the queue of a worker is full, reading from the
+ * connection is paused until the worker has handled half of the queue, so the event loop is
+ * never blocked.
+ */
+public class MessageHandlerStage {
+
+    // In milliseconds, handling a single message taking longer than this is logged.
+    private static final long SLOW_MESSAGE_TIME = 1000;
+
+    private final LocalStore localStore;
+    private final int queueSize;
+    private final BlockingQueue<Task>[] queues;
+    private final Set<Channel>[] paused;
+    private final Thread[] workers;
+
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalHandleNanos = new LongAdder();
+    private final AtomicLong maxHandleNanos = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param localStore - the local store of the node
+     * @param threads    - the number of worker threads
+     * @param queueSize  - the number of messages waiting per worker at which reading is paused
+     */
+    @SuppressWarnings("unchecked")
+    public MessageHandlerStage(LocalStore localStore, int threads, int queueSize) {
+        if (threads <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException("The number of threads and the queue size must be positive");
+        }
+
+        this.localStore = localStore;
+        this.queueSize = queueSize;
+        this.queues = new BlockingQueue[threads];
+        this.paused = new Set[threads];
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int stripe = i;
+            queues[i] = new LinkedBlockingQueue<>();
+            paused[i] = ConcurrentHashMap.newKeySet();
+            workers[i] = new Thread(() -> work(stripe), "message-handler-" + localStore.getOwnNode().getId() + "-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queues the given message for handling.
+     * If the queue of the responsible worker is full, reading from the given channel is paused.
+     * Messages that were already read from the channel are still queued.
+     * @param msg     - the message
+     * @param channel - the connection the message was received on
+     */
+    public void submit(Message msg, Channel channel) {
+        int stripe = Math.floorMod(stripeKey(msg, channel.id()), queues.length);
+        BlockingQueue<Task> queue = queues[stripe];
+        queue.add(new Task(msg));
+        if (queue.size() < queueSize) return;
+
+        if (paused[stripe].add(channel)) {
+            channel.config().setAutoRead(false);
+        }
+
+        //The worker could have drained the queue before the channel was paused
+        if (queue.size() < queueSize) resume(stripe);
+    }
+
+    /**
+     * Resumes reading from all channels that were paused because the queue of the given worker was full.
+     * @param stripe - the worker
+     */
+    private void resume(int stripe) {
+        for (Channel channel : paused[stripe]) {
+            if (paused[stripe].remove(channel)) {
+                channel.config().setAutoRead(true);
+            }
+        }
+    }
+
+    /**
+     * @param msg        - the message
+     * @param channelKey - an identifier of the connection the message was received on
+     * @return           - the key which determines the worker that handles the given message
+     */
+    protected int stripeKey(Message msg, Object channelKey) {
+        if (msg instanceof ProofMessage) {
+            return ((ProofMessage) msg).getTransactionMessage().getSenderId();
+        } else if (msg instanceof BatchProofMessage) {
+            BatchProofMessage batch = (BatchProofMessage) msg;
+            if (!batch.getTransactionMessages().isEmpty()) {
+                return batch.getTransactionMessages().get(0).getSenderId();
+            }
+        }
+        return channelKey.hashCode();
+    }
+
+    /**
+     * Handles the messages in the queue of the given worker until interrupted.
+     * @param stripe - the worker
+     */
+    private void work(int stripe) {
+        BlockingQueue<Task> queue = queues[stripe];
+        while (!Thread.currentThread().isInterrupted()) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException ex) {
+                break;
+            }
+
+            if (!paused[stripe].isEmpty() && queue.size() <= queueSize / 2) resume(stripe);
+
+            long start = System.nanoTime();
+            try {
+                task.message.handle(localStore);
+            } catch (Exception ex) {
+                Log.log(Level.SEVERE, "Node " + localStore.getOwnNode().getId() + " Server: exception while handling message", ex);
+            }
+            long end = System.nanoTime();
+
+            long handleNanos = end - start;
+            handled.increment();
+            totalWaitNanos.add(start - task.queuedAt);
+            totalHandleNanos.add(handleNanos);
+            maxHandleNanos.accumulateAndGet(handleNanos, Math::max);
+            if (handleNanos > SLOW_MESSAGE_TIME * 1000000L) {
+                Log.log(Level.WARNING, "Node " + localStore.getOwnNode().getId() + " Server: handling "
+                        + task.message.getClass().getSimpleName() + " took " + handleNanos / 1000000L + " ms");
+            }
+        }
+    }
+
+    /**
+     * Stops all workers. Messages that are still queued are not handled.
+     */
+    public void shutdown() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * @return - the number of channels from which reading is paused
+     */
+    public int getPausedChannels() {
+        int count = 0;
+        for (Set<Channel> channels : paused) {
+            count += channels.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return - the number of messages waiting to be handled
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (BlockingQueue<Task> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return - the number of messages that have been handled
+     */
+    public long getHandledMessages() {
+        return handled.sum();
+    }
+
+    /**
+     * @return - the average time in milliseconds that messages waited in the queue
+     */
+    public double getAverageWaitTime() {
+        long count = handled.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / 1000000.0 / count;
+    }
+
+    /**
+     * @return - the average time in milliseconds that handling a message took
+     */
+    public double getAverageHandlingTime() {
+        long count = handled.sum();
+        return count == 0 ? 0 : totalHandleNanos.sum() / 1000000.0 / count;
+    }
+
+    /**
+     * @return - the maximum time in milliseconds that handling a message took
+     */
+    public double getMaxHandlingTime() {
+        return maxHandleNanos.get() / 1000000.0;
+    }
+
+    /**
+     * A queued message.
+     */
+    private static class Task {
+        private final Message message;
+        private final long queuedAt = System.nanoTime();
+
+        /**
+         * @param message - the message to handle
+         */
+        Task(Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -1,8 +1,18 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger.sockets;
 
-import java.util.HashMap;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 
@@ -11,21 +21,32 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 
 /**
  * Socket client.
+ *
+ * Messages are queued per peer and written by the event loop of the connection to that peer, so
+ * sending never blocks the caller. All messages that are queued when the event loop gets to them
+ * are written with a single flush.
  */
 public class SocketClient {
 
-    private HashMap<Node, Channel> connections;
+    // In seconds, the maximum time the blocking send waits for a message to be sent.
+    private static final int SEND_TIMEOUT = 60;
+    // The maximum number of messages waiting to be written to a single peer.
+    static final int MAX_QUEUED_MESSAGES = 1024;
+    // The number of bytes buffered in a channel at which it stops and starts being writable.
+    private static final int LOW_WATER_MARK = 512 * 1024;
+    private static final int HIGH_WATER_MARK = 2 * 1024 * 1024;
+
+    private final ConcurrentHashMap<Node, PeerConnection> connections;
 
     private Bootstrap bootstrap;
 
@@ -35,25 +56,35 @@ public class SocketClient {
      * Constructor.
      */
     public SocketClient() {
-        this.connections = new HashMap<>();
-        this.initSocketClient();
+        this(new NioEventLoopGroup());
+    }
+
+    /**
+     * Constructor.
+     * @param group - the event loops on which the connections are handled
+     */
+    SocketClient(EventLoopGroup group) {
+        this.connections = new ConcurrentHashMap<>();
+        this.initSocketClient(group);
     }
 
     /**
      * Init the client.
      * Note: one client can be used to send to multiple servers, this just sets the settings and pipeline.
+     * @param group - the event loops on which the connections are handled
      */
-    private void initSocketClient() {
-        group = new NioEventLoopGroup();
+    private void initSocketClient(EventLoopGroup group) {
+        this.group = group;
         bootstrap = new Bootstrap();
         bootstrap.group(group)
                 .channel(NioSocketChannel.class)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(LOW_WATER_MARK, HIGH_WATER_MARK))
                 .handler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel socketChannel) throws Exception {
                         ChannelPipeline p = socketChannel.pipeline();
-                        p.addLast(new ObjectEncoder(),
-                                new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
+                        p.addLast(new MessageEncoder(),
+                                new MessageDecoder(SocketServer.MAX_MESSAGE_SIZE),
                                 new SocketClientHandler());
                     }
                 });
@@ -61,10 +92,14 @@ public class SocketClient {
 
     /**
      * Shuts down the client server.
+     * Messages that have not been sent yet are failed.
      */
     public void shutdown() {
         Log.log(Level.INFO, "Shutting down socket client...");
         group.shutdownGracefully();
+        for (PeerConnection peer : connections.values()) {
+            peer.failAll();
+        }
     }
 
     /**
@@ -75,34 +110,173 @@ public class SocketClient {
      * @return - whether the message was sent successfully
      * @throws InterruptedException - If message sending is interrupted.
      */
-    public boolean sendMessage(Node node, Object msg) throws InterruptedException {
-        Channel channel = connections.get(node);
-        if (channel == null || !channel.isOpen()) {
-            Log.log(Level.FINE, "No open connection found, connecting...");
-            ChannelFuture future = bootstrap.connect(node.getAddress(), node.getPort());
-            if (!future.await().isSuccess()) {
-                // Could not connect
-            	Log.log(Level.SEVERE, "Unable to connect to " + node.getAddress() + ":" + node.getPort(), future.cause());
-                return false;
+    public boolean sendMessage(Node node, Message msg) throws InterruptedException {
+        try {
+            return sendMessageAsync(node, msg).get(SEND_TIMEOUT, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            Log.log(Level.SEVERE, "Failed to send message", ex.getCause());
+            return false;
+        } catch (TimeoutException ex) {
+            Log.log(Level.SEVERE, "Sending message to " + node.getAddress() + ":" + node.getPort() + " timed out");
+            return false;
+        }
+    }
+
+    /**
+     * Queues the given message to be sent to the given node.
+     *
+     * The returned future completes with true when the message was written to the connection, or
+     * with false when connecting or writing failed. If too many messages are already waiting for
+     * the given node, the future is completed exceptionally with a {@link RejectedExecutionException}
+     * and the caller should retry later.
+     * @param node - the node to send the message to
+     * @param msg  - the message to send
+     * @return     - a future with whether the message was sent successfully
+     */
+    public CompletableFuture<Boolean> sendMessageAsync(Node node, Message msg) {
+        return connections.computeIfAbsent(node, PeerConnection::new).enqueue(msg);
+    }
+
+    /**
+     * @param node - the node
+     * @return     - the number of messages waiting to be written to the given node
+     */
+    public int getQueuedMessages(Node node) {
+        PeerConnection peer = connections.get(node);
+        return peer == null ? 0 : peer.queued.get();
+    }
+
+    /**
+     * Message waiting to be written, together with the future to complete.
+     */
+    private static class PendingMessage {
+        private final Message message;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        /**
+         * @param message - the message to send
+         */
+        PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * The connection to a single peer with its queue of outbound messages.
+     */
+    private class PeerConnection {
+        private final Node node;
+        private final Queue<PendingMessage> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private ChannelFuture connectFuture;
+
+        /**
+         * @param node - the node to connect to
+         */
+        PeerConnection(Node node) {
+            this.node = node;
+        }
+
+        /**
+         * @param msg - the message to queue
+         * @return    - the future of the queued message
+         */
+        public CompletableFuture<Boolean> enqueue(Message msg) {
+            PendingMessage pending = new PendingMessage(msg);
+            if (queued.incrementAndGet() > MAX_QUEUED_MESSAGES) {
+                queued.decrementAndGet();
+                pending.future.completeExceptionally(new RejectedExecutionException(
+                        "Too many messages queued for " + node.getAddress() + ":" + node.getPort()));
+                return pending.future;
+            }
+
+            queue.add(pending);
+            scheduleDrain();
+            return pending.future;
+        }
+
+        /**
+         * Schedules writing the queued messages on the event loop, connecting first if needed.
+         */
+        public void scheduleDrain() {
+            if (!drainScheduled.compareAndSet(false, true)) return;
+
+            ChannelFuture future = connect();
+            future.addListener((ChannelFutureListener) f -> {
+                if (f.isSuccess()) {
+                    f.channel().eventLoop().execute(() -> drain(f.channel()));
+                } else {
+                    drainScheduled.set(false);
+                    failAll();
+                }
+            });
+        }
+
+        /**
+         * @return - the future of the current connection, or of a new connection if the current one is closed
+         */
+        private synchronized ChannelFuture connect() {
+            if (connectFuture != null && (!connectFuture.isDone() || connectFuture.channel().isActive())) {
+                return connectFuture;
             }
-            assert future.isDone();
-            channel = future.channel();
-            future.channel().closeFuture().addListener((ChannelFutureListener) channelFuture -> Log.log(Level.FINE, "Client detected channel close"));
-            Log.log(Level.FINE, "Client connected to server!");
+
+            Log.log(Level.FINE, "No open connection found, connecting...");
+            connectFuture = bootstrap.connect(node.getAddress(), node.getPort());
+            connectFuture.addListener((ChannelFutureListener) f -> {
+                if (!f.isSuccess()) {
+                    Log.log(Level.SEVERE, "Unable to connect to " + node.getAddress() + ":" + node.getPort(), f.cause());
+                    return;
+                }
+
+                f.channel().attr(SocketClientHandler.WRITABLE_CALLBACK).set(this::scheduleDrain);
+                f.channel().closeFuture().addListener((ChannelFutureListener) channelFuture -> Log.log(Level.FINE, "Client detected channel close"));
+                Log.log(Level.FINE, "Client connected to server!");
+            });
+            return connectFuture;
         }
 
-        ChannelFuture future = channel.writeAndFlush(msg);
-        Log.log(Level.FINE, "Message sent by client");
+        /**
+         * Writes queued messages until the queue is empty or the channel is no longer writable.
+         * Runs on the event loop of the channel.
+         * @param channel - the channel to write to
+         */
+        private void drain(Channel channel) {
+            drainScheduled.set(false);
+            if (!channel.isActive()) {
+                if (!queue.isEmpty()) scheduleDrain();
+                return;
+            }
+
+            int written = 0;
+            PendingMessage pending;
+            while (channel.isWritable() && (pending = queue.poll()) != null) {
+                queued.decrementAndGet();
+                CompletableFuture<Boolean> future = pending.future;
+                channel.write(pending.message).addListener(f -> {
+                    if (!f.isSuccess()) {
+                        Log.log(Level.SEVERE, "Failed to send message", f.cause());
+                    }
+                    future.complete(f.isSuccess());
+                });
+                written++;
+            }
 
-        this.connections.put(node, future.channel());
+            if (written > 0) {
+                channel.flush();
+                Log.log(Level.FINE, "Client sent " + written + " messages");
+            }
+        }
 
-        future.await();
-        
-        if (!future.isSuccess()) {
-        	Log.log(Level.SEVERE, "Failed to send message", future.cause());
-        	return false;
+        /**
+         * Fails all queued messages.
+         */
+        public void failAll() {
+            PendingMessage pending;
+            while ((pending = queue.poll()) != null) {
+                queued.decrementAndGet();
+                pending.future.complete(false);
+            }
         }
-        
-        return true;
     }
 }
@@ -2,6 +2,7 @@ package nl.tudelft.blockchain.scaleoutdistributedledger.sockets;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 
 import java.util.logging.Level;
@@ -11,6 +12,18 @@ import java.util.logging.Level;
  */
 public class SocketClientHandler extends ChannelInboundHandlerAdapter {
 
+    // Called when the channel becomes writable again, to continue writing queued messages.
+    public static final AttributeKey<Runnable> WRITABLE_CALLBACK = AttributeKey.valueOf("writableCallback");
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        Runnable callback = ctx.channel().attr(WRITABLE_CALLBACK).get();
+        if (callback != null && ctx.channel().isWritable()) {
+            callback.run();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         Log.log(Level.SEVERE, "Client socket error", cause);
@@ -7,13 +7,11 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.SimulationMain;
 import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
 
 import java.util.logging.Level;
@@ -26,10 +24,11 @@ public class SocketServer implements Runnable {
     // In seconds, time connections are kept open after messages.
     private static final int CHANNEL_TIMEOUT = 30;
     // The maximum message size in bytes.
-    private static final int MAX_MESSAGE_SIZE = 5 * 1024 * 1024;
+    static final int MAX_MESSAGE_SIZE = 5 * 1024 * 1024;
 
     private int port;
     private LocalStore localStore;
+    private volatile MessageHandlerStage handlerStage;
 
     /**
      * Constructor.
@@ -47,6 +46,8 @@ public class SocketServer implements Runnable {
     public void initServer() {
         EventLoopGroup bossGroup = new NioEventLoopGroup(1);
         EventLoopGroup workerGroup = new NioEventLoopGroup();
+        handlerStage = new MessageHandlerStage(localStore,
+                SimulationMain.MESSAGE_HANDLER_THREADS, SimulationMain.MESSAGE_HANDLER_QUEUE_SIZE);
 
         try {
             ServerBootstrap b = new ServerBootstrap();
@@ -58,9 +59,9 @@ public class SocketServer implements Runnable {
                         protected void initChannel(SocketChannel socketChannel) throws Exception {
                             ChannelPipeline p = socketChannel.pipeline();
                             p.addLast(new IdleStateHandler(0, 0, CHANNEL_TIMEOUT),
-                                    new ObjectEncoder(),
-                                    new ObjectDecoder(MAX_MESSAGE_SIZE, ClassResolvers.cacheDisabled(null)),
-                                    new SocketServerHandler(localStore));
+                                    new MessageEncoder(),
+                                    new MessageDecoder(MAX_MESSAGE_SIZE),
+                                    new SocketServerHandler(localStore, handlerStage));
                         }
                     });
 
@@ -73,9 +74,17 @@ public class SocketServer implements Runnable {
         } finally {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            handlerStage.shutdown();
         }
     }
 
+    /**
+     * @return - the stage on which received messages are handled, or null if the server has not been started
+     */
+    public MessageHandlerStage getHandlerStage() {
+        return handlerStage;
+    }
+
     @Override
     public void run() {
         this.initServer();
@@ -16,21 +16,34 @@ import java.util.logging.Level;
 public class SocketServerHandler extends ChannelInboundHandlerAdapter {
 
     private LocalStore localStore;
+    private MessageHandlerStage handlerStage;
 
     /**
      * Constructor.
      * @param localStore - the localstor of the node
      */
     public SocketServerHandler(LocalStore localStore) {
+        this(localStore, null);
+    }
+
+    /**
+     * Constructor.
+     * @param localStore   - the localstore of the node
+     * @param handlerStage - the stage to handle messages on, or null to handle them on the event loop
+     */
+    public SocketServerHandler(LocalStore localStore, MessageHandlerStage handlerStage) {
         this.localStore = localStore;
+        this.handlerStage = handlerStage;
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        if (msg instanceof Message) {
+        if (!(msg instanceof Message)) {
+            Log.log(Level.SEVERE, "Invalid message, not a message instance");
+        } else if (handlerStage == null) {
             ((Message) msg).handle(localStore);
         } else {
-            Log.log(Level.SEVERE, "Invalid message, not a message instance");
+            handlerStage.submit((Message) msg, ctx.channel());
         }
     }
 
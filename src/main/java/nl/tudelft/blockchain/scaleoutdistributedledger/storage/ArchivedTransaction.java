@@ -0,0 +1,165 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.storage;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.TreeSet;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+/**
+ * Transaction loaded from a {@link BlockArchive}.
+ *
+ * The sources are only stored as references (owner, block number and transaction number) and are
+ * looked up in the chains of the local store the first time the source set is used. This way, loading a
+ * block does not load the blocks of all its sources. Sources that have been pruned by a
+ * {@link nl.tudelft.blockchain.scaleoutdistributedledger.model.Checkpoint} are left out.
+ */
+class ArchivedTransaction extends Transaction {
+	private final Sha256Hash hash;
+
+	/**
+	 * @param number           - the number of this transaction
+	 * @param sender           - the sender of this transaction
+	 * @param receiver         - the receiver of this transaction
+	 * @param amount           - the amount to be transferred
+	 * @param remainder        - the remaining amount
+	 * @param hash             - the hash of this transaction
+	 * @param sourceReferences - the owner, block number and number of every source, in sequence
+	 * @param localStore       - the local store to look up the sources in
+	 */
+	ArchivedTransaction(int number, Node sender, Node receiver, long amount, long remainder,
+			Sha256Hash hash, int[] sourceReferences, LocalStore localStore) {
+		super(number, sender, receiver, amount, remainder, new SourceSet(sourceReferences, localStore));
+		this.hash = hash;
+	}
+
+	/**
+	 * @param block             - the block
+	 * @param transactionNumber - the number of the transaction
+	 * @return                  - the transaction, or null if it was spent and pruned from the block
+	 */
+	private static Transaction findTransaction(Block block, int transactionNumber) {
+		if (!block.isPruned()) return block.getTransaction(transactionNumber);
+		
+		for (Transaction transaction : block.getTransactions()) {
+			if (transaction.getNumber() == transactionNumber) return transaction;
+		}
+		return null;
+	}
+
+	@Override
+	public Sha256Hash getHash() {
+		return hash;
+	}
+
+	/**
+	 * Set of sources that looks up the referenced transactions the first time it is used.
+	 */
+	private static final class SourceSet extends TreeSet<Transaction> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient LocalStore localStore;
+		private transient int[] references;
+
+		/**
+		 * @param references - the owner, block number and number of every source, in sequence
+		 * @param localStore - the local store to look up the sources in
+		 */
+		SourceSet(int[] references, LocalStore localStore) {
+			this.references = references;
+			this.localStore = localStore;
+		}
+
+		/**
+		 * Looks up the referenced transactions, if that has not been done yet.
+		 */
+		private synchronized void resolve() {
+			int[] refs = references;
+			if (refs == null) return;
+
+			references = null;
+			for (int i = 0; i < refs.length; i += 3) {
+				Node owner = localStore.getNode(refs[i]);
+				Block block = owner.getChain().getBlocks().get(refs[i + 1]);
+				Transaction transaction = findTransaction(block, refs[i + 2]);
+				if (transaction != null) super.add(transaction);
+			}
+		}
+
+		@Override
+		public Iterator<Transaction> iterator() {
+			resolve();
+			return super.iterator();
+		}
+
+		@Override
+		public Iterator<Transaction> descendingIterator() {
+			resolve();
+			return super.descendingIterator();
+		}
+
+		@Override
+		public Spliterator<Transaction> spliterator() {
+			resolve();
+			return super.spliterator();
+		}
+
+		@Override
+		public int size() {
+			resolve();
+			return super.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			resolve();
+			return super.isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			resolve();
+			return super.contains(o);
+		}
+
+		@Override
+		public boolean add(Transaction e) {
+			resolve();
+			return super.add(e);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			resolve();
+			return super.remove(o);
+		}
+
+		@Override
+		public Transaction first() {
+			resolve();
+			return super.first();
+		}
+
+		@Override
+		public Transaction last() {
+			resolve();
+			return super.last();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			resolve();
+			return super.equals(o);
+		}
+
+		@Override
+		public int hashCode() {
+			resolve();
+			return super.hashCode();
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Chain;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.MessageCodec;
+
+/**
+ * Memory-mapped archive for the transactions of old blocks in the chains of other nodes.
+ *
+ * Once a block of another node is followed by enough committed blocks, its transactions are
+ * written to a memory-mapped file in a fixed layout and the block only keeps its position in the
+ * file. When the transactions are needed again, they are decoded from the file and kept in a
+ * small cache of recently used blocks. This way old history is held by the page cache instead of
+ * the heap.
+ *
+ * Blocks with transactions to our own node are never archived, so the transactions that we can
+ * spend always stay the same objects.
+ */
+public class BlockArchive implements Closeable {
+	//The size in bytes of a single mapped region of the file.
+	public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+	//Fixed size of a transaction, excluding its sources
+	private static final int TRANSACTION_SIZE = 4 + 4 + 4 + 8 + 8 + 1 + MessageCodec.HASH_LENGTH + 4;
+	private static final int SOURCE_SIZE = 4 + 4 + 4;
+	private static final byte LOCALLY_VERIFIED = 1;
+
+	private final LocalStore localStore;
+	private final Path file;
+	private final FileChannel channel;
+	private final int regionSize;
+	private final List<MappedByteBuffer> regions = new ArrayList<>();
+	private long end;
+
+	private final int hotBlocks;
+	private final Map<Integer, Integer> archivedUpTo = new HashMap<>();
+	private final LinkedHashMap<Long, List<Transaction>> cache;
+
+	private final LongAdder archivedBlocks = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+
+	/**
+	 * @param file       - the file to store the transactions in, which is overwritten
+	 * @param localStore - the local store
+	 * @param hotBlocks  - the number of committed blocks at the end of every chain that are not archived
+	 * @param cacheSize  - the maximum number of loaded blocks that are cached
+	 * @param regionSize - the size in bytes of a single mapped region of the file
+	 * @throws IOException - If the file cannot be opened.
+	 */
+	public BlockArchive(Path file, LocalStore localStore, int hotBlocks, int cacheSize, int regionSize) throws IOException {
+		this.file = file;
+		this.localStore = localStore;
+		this.hotBlocks = hotBlocks;
+		this.regionSize = regionSize;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.cache = new LinkedHashMap<Long, List<Transaction>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, List<Transaction>> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Creates an archive in a temporary file which is deleted when the archive is closed.
+	 * @param localStore - the local store
+	 * @param hotBlocks  - the number of committed blocks at the end of every chain that are not archived
+	 * @param cacheSize  - the maximum number of loaded blocks that are cached
+	 * @return           - the archive
+	 * @throws IOException - If the file cannot be created.
+	 */
+	public static BlockArchive createTemporary(LocalStore localStore, int hotBlocks, int cacheSize) throws IOException {
+		Path file = Files.createTempFile("chains-" + localStore.getOwnNode().getId() + "-", ".archive");
+		file.toFile().deleteOnExit();
+		return new BlockArchive(file, localStore, hotBlocks, cacheSize, DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * Archives the blocks of the given chain that are followed by enough committed blocks.
+	 * @param chain - the chain of another node
+	 */
+	public synchronized void archiveOldBlocks(Chain chain) {
+		Block lastCommitted = chain.getLastCommittedBlock();
+		if (lastCommitted == null) return;
+
+		int ownerId = chain.getOwner().getId();
+		int next = archivedUpTo.getOrDefault(ownerId, Block.GENESIS_BLOCK_NUMBER + 1);
+		int last = lastCommitted.getNumber() - hotBlocks;
+		for (; next <= last; next++) {
+			Block block = chain.getBlocks().get(next);
+			if (block.isArchived() || hasOwnTransaction(block)) continue;
+
+			block.moveTo(this, write(block.getTransactions()));
+			archivedBlocks.increment();
+		}
+		archivedUpTo.put(ownerId, next);
+	}
+
+	/**
+	 * @param block - the block
+	 * @return      - true if the given block contains a transaction to our own node
+	 */
+	private boolean hasOwnTransaction(Block block) {
+		for (Transaction transaction : block.getTransactions()) {
+			if (transaction.getReceiver() == localStore.getOwnNode()) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the given transactions to the end of the archive.
+	 * @param transactions - the transactions
+	 * @return             - the position of the transactions in the archive
+	 */
+	private long write(List<Transaction> transactions) {
+		int size = 4;
+		for (Transaction transaction : transactions) {
+			size += TRANSACTION_SIZE + SOURCE_SIZE * transaction.getSource().size();
+		}
+		if (size > regionSize) throw new IllegalStateException("Block of " + size + " bytes does not fit in an archive region");
+
+		//Records never cross regions
+		if (end / regionSize != (end + size - 1) / regionSize) {
+			end = (end / regionSize + 1) * regionSize;
+		}
+		long position = end;
+		ByteBuffer buffer = region(position);
+		buffer.putInt(transactions.size());
+		for (Transaction transaction : transactions) {
+			writeHeader(transaction, buffer);
+			writeSources(transaction, buffer);
+		}
+		end = position + size;
+		return position;
+	}
+
+	/**
+	 * Writes the fields of the given transaction, except for its sources.
+	 * @param transaction - the transaction
+	 * @param buffer      - the buffer to write to
+	 */
+	private static void writeHeader(Transaction transaction, ByteBuffer buffer) {
+		buffer.putInt(transaction.getNumber());
+		buffer.putInt(transaction.getSender() == null ? Transaction.GENESIS_SENDER : transaction.getSender().getId());
+		buffer.putInt(transaction.getReceiver().getId());
+		buffer.putLong(transaction.getAmount());
+		buffer.putLong(transaction.getRemainder());
+		buffer.put(transaction.isLocallyVerified() ? LOCALLY_VERIFIED : 0);
+		buffer.put(transaction.getHash().getBytes());
+	}
+
+	/**
+	 * Writes references to the sources of the given transaction.
+	 * @param transaction - the transaction
+	 * @param buffer      - the buffer to write to
+	 */
+	private static void writeSources(Transaction transaction, ByteBuffer buffer) {
+		buffer.putInt(transaction.getSource().size());
+		for (Transaction source : transaction.getSource()) {
+			//Genesis transactions are referenced through the chain of their receiver
+			Node owner = source.getSender() == null ? source.getReceiver() : source.getSender();
+			buffer.putInt(owner.getId());
+			buffer.putInt(source.getBlockNumber().getAsInt());
+			buffer.putInt(source.getNumber());
+		}
+	}
+
+	/**
+	 * Loads the transactions of the given archived block.
+	 * @param block    - the block
+	 * @param position - the position of the transactions in the archive
+	 * @return         - the transactions of the block
+	 */
+	public List<Transaction> load(Block block, long position) {
+		synchronized (cache) {
+			List<Transaction> transactions = cache.get(position);
+			if (transactions != null) return transactions;
+		}
+
+		cacheMisses.increment();
+		List<Transaction> transactions = read(block, position);
+		synchronized (cache) {
+			List<Transaction> cached = cache.putIfAbsent(position, transactions);
+			return cached == null ? transactions : cached;
+		}
+	}
+
+	/**
+	 * @param block    - the block
+	 * @param position - the position of the transactions in the archive
+	 * @return         - the decoded transactions
+	 */
+	private List<Transaction> read(Block block, long position) {
+		ByteBuffer buffer = region(position);
+		int count = buffer.getInt();
+		List<Transaction> transactions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int number = buffer.getInt();
+			int senderId = buffer.getInt();
+			int receiverId = buffer.getInt();
+			long amount = buffer.getLong();
+			long remainder = buffer.getLong();
+			boolean locallyVerified = buffer.get() == LOCALLY_VERIFIED;
+			byte[] hash = new byte[MessageCodec.HASH_LENGTH];
+			buffer.get(hash);
+			int[] sources = new int[buffer.getInt() * 3];
+			for (int j = 0; j < sources.length; j++) {
+				sources[j] = buffer.getInt();
+			}
+
+			Transaction transaction = new ArchivedTransaction(number, localStore.getNode(senderId), localStore.getNode(receiverId),
+					amount, remainder, Sha256Hash.withHash(hash), sources, localStore);
+			transaction.setBlockNumber(block.getNumber());
+			transaction.setLocallyVerified(locallyVerified);
+			transactions.add(transaction);
+		}
+		return transactions;
+	}
+
+	/**
+	 * @param position - a position in the archive
+	 * @return         - a buffer positioned at the given position, which is mapped if needed
+	 */
+	private ByteBuffer region(long position) {
+		int index = (int) (position / regionSize);
+		MappedByteBuffer region;
+		synchronized (regions) {
+			while (regions.size() <= index) {
+				try {
+					regions.add(channel.map(MapMode.READ_WRITE, (long) regions.size() * regionSize, regionSize));
+				} catch (IOException ex) {
+					throw new IllegalStateException("Unable to map the block archive", ex);
+				}
+			}
+			region = regions.get(index);
+		}
+
+		ByteBuffer buffer = region.duplicate();
+		buffer.position((int) (position % regionSize));
+		return buffer;
+	}
+
+	/**
+	 * @return - the number of blocks that have been archived
+	 */
+	public long getArchivedBlocks() {
+		return archivedBlocks.sum();
+	}
+
+	/**
+	 * @return - the number of times transactions had to be decoded from the archive
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		Files.deleteIfExists(file);
+	}
+}
@@ -0,0 +1,410 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.BlockMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.MessageCodec;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.TransactionMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.TransactionMessage.TransactionSource;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Chain;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+
+import lombok.Getter;
+
+/**
+ * Persistent store of the chains, the received transactions and the meta knowledge of a node.
+ *
+ * Changes are appended to a {@link SegmentLog} as they happen: our own blocks when they are
+ * committed, blocks of other nodes when they are added to their chain, transactions when they
+ * are received and meta knowledge when it is updated. After a restart, {@link #recover(LocalStore)}
+ * replays the log into the local store.
+ *
+ * Records are written to the operating system immediately. When syncing on commit is enabled, they
+ * are forced to disk every time we commit one of our own blocks, so a single sync covers all
+ * changes since the previous commit.
+ */
+public class BlockStore implements Closeable {
+	//Record types
+	public static final byte BLOCKS = 1;
+	public static final byte RECEIVED = 2;
+	public static final byte META_KNOWLEDGE = 3;
+
+	private final SegmentLog log;
+
+	@Getter
+	private final boolean syncOnCommit;
+
+	//The number of the last block of our own chain that is stored
+	private int lastOwnBlockNumber;
+
+	/**
+	 * @param directory    - the directory to store the log in
+	 * @param syncOnCommit - if the log should be forced to disk when we commit a block
+	 * @throws IOException - If the directory cannot be created or read.
+	 */
+	public BlockStore(Path directory, boolean syncOnCommit) throws IOException {
+		this(new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE), syncOnCommit);
+	}
+
+	/**
+	 * @param log          - the log to store records in
+	 * @param syncOnCommit - if the log should be forced to disk when we commit a block
+	 */
+	public BlockStore(SegmentLog log, boolean syncOnCommit) {
+		this.log = log;
+		this.syncOnCommit = syncOnCommit;
+	}
+
+	/**
+	 * Stores the given committed block of our own chain, together with the blocks before it that
+	 * have not been stored yet. These are the blocks that were committed along with it.
+	 * @param block - the block
+	 */
+	public synchronized void appendOwnBlock(Block block) {
+		if (block.getNumber() <= lastOwnBlockNumber) return;
+
+		LinkedList<Block> list = new LinkedList<>();
+		for (Block current = block; current != null && current.getNumber() > lastOwnBlockNumber; current = current.getPreviousBlock()) {
+			list.addFirst(current);
+		}
+
+		Map<Node, List<Block>> blocks = new HashMap<>();
+		blocks.put(block.getOwner(), list);
+		appendBlocks(blocks);
+		lastOwnBlockNumber = block.getNumber();
+
+		if (syncOnCommit) sync();
+	}
+
+	/**
+	 * Stores blocks which have been added to chains.
+	 * @param blocks - the added blocks per node
+	 */
+	public void appendBlocks(Map<Node, List<Block>> blocks) {
+		ByteBuf buffer = Unpooled.buffer();
+		buffer.writeByte(BLOCKS);
+		MessageCodec.writeVarInt(blocks.size(), buffer);
+		try {
+			for (Entry<Node, List<Block>> entry : blocks.entrySet()) {
+				MessageCodec.writeVarInt(entry.getKey().getId(), buffer);
+				MessageCodec.writeVarInt(entry.getValue().size(), buffer);
+				for (Block block : entry.getValue()) {
+					MessageCodec.encode(new BlockMessage(block), buffer);
+				}
+			}
+		} catch (IOException ex) {
+			throw new IllegalStateException("Unable to encode blocks", ex);
+		}
+		append(buffer);
+	}
+
+	/**
+	 * Stores that we have received and accepted the given transaction.
+	 * @param transaction - the transaction
+	 */
+	public void appendReceived(Transaction transaction) {
+		ByteBuf buffer = Unpooled.buffer(16);
+		buffer.writeByte(RECEIVED);
+		MessageCodec.writeVarInt(transaction.getSender().getId(), buffer);
+		MessageCodec.writeVarInt(transaction.getBlockNumber().getAsInt(), buffer);
+		MessageCodec.writeVarInt(transaction.getNumber(), buffer);
+		append(buffer);
+	}
+
+	/**
+	 * Stores an update of the meta knowledge of the given node.
+	 * @param node    - the node whose meta knowledge was updated
+	 * @param updates - the chain updates that the node now knows about
+	 */
+	public void appendMetaKnowledge(Node node, Map<Node, List<Block>> updates) {
+		Map<Integer, Integer> lastKnown = new HashMap<>();
+		for (Entry<Node, List<Block>> entry : updates.entrySet()) {
+			List<Block> blocks = entry.getValue();
+			if (entry.getKey() == node || blocks.isEmpty()) continue;
+			
+			lastKnown.put(entry.getKey().getId(), blocks.get(blocks.size() - 1).getNumber());
+		}
+		appendKnownHeights(node, lastKnown);
+	}
+
+	/**
+	 * Stores an update of the meta knowledge of the given node.
+	 * @param node      - the node whose meta knowledge was updated
+	 * @param lastKnown - the number of the last block that the node knows about, per node id
+	 */
+	public void appendKnownHeights(Node node, Map<Integer, Integer> lastKnown) {
+		if (lastKnown.isEmpty()) return;
+
+		ByteBuf buffer = Unpooled.buffer();
+		buffer.writeByte(META_KNOWLEDGE);
+		MessageCodec.writeVarInt(node.getId(), buffer);
+		MessageCodec.writeVarInt(lastKnown.size(), buffer);
+		for (Entry<Integer, Integer> entry : lastKnown.entrySet()) {
+			MessageCodec.writeVarInt(entry.getKey(), buffer);
+			MessageCodec.writeVarInt(entry.getValue(), buffer);
+		}
+		append(buffer);
+	}
+
+	/**
+	 * @param buffer - the record to append
+	 * @throws IllegalStateException - If the record cannot be written.
+	 */
+	private void append(ByteBuf buffer) {
+		try {
+			log.append(buffer.nioBuffer());
+		} catch (IOException ex) {
+			throw new IllegalStateException("Unable to write to the block store", ex);
+		}
+	}
+
+	/**
+	 * Forces all stored records to disk.
+	 * @throws IllegalStateException - If syncing fails.
+	 */
+	public void sync() {
+		try {
+			log.sync();
+		} catch (IOException ex) {
+			throw new IllegalStateException("Unable to sync the block store", ex);
+		}
+	}
+
+	/**
+	 * Replays the stored records into the given local store.
+	 *
+	 * The own chain of the local store must only contain the genesis block and all nodes must be
+	 * known. The given local store must not have this block store set yet, so that the replayed
+	 * changes are not stored again.
+	 * @param localStore - the local store to recover
+	 * @return           - the number of replayed records
+	 * @throws IOException - If the log cannot be read.
+	 */
+	public int recover(LocalStore localStore) throws IOException {
+		Recovery recovery = new Recovery(localStore);
+		int records = log.replay(recovery::apply);
+		recovery.finish();
+		synchronized (this) {
+			lastOwnBlockNumber = localStore.getOwnNode().getChain().getLastBlock().getNumber();
+		}
+		Log.log(Level.INFO, "Node " + localStore.getOwnNode().getId() + ": recovered " + records + " records, "
+				+ localStore.getOwnNode().getChain().getBlocks().size() + " own blocks and "
+				+ localStore.getUnspent().size() + " unspent transactions");
+		return records;
+	}
+
+	@Override
+	public void close() throws IOException {
+		log.close();
+	}
+
+	/**
+	 * State of a single recovery.
+	 */
+	private static class Recovery {
+		private final LocalStore localStore;
+		private final OwnNode ownNode;
+		private final List<Transaction> received = new ArrayList<>();
+		private int nextTransactionId;
+
+		/**
+		 * @param localStore - the local store to recover
+		 */
+		Recovery(LocalStore localStore) {
+			this.localStore = localStore;
+			this.ownNode = localStore.getOwnNode();
+		}
+
+		/**
+		 * @param record - the record to apply
+		 */
+		public void apply(ByteBuffer record) {
+			ByteBuf in = Unpooled.wrappedBuffer(record);
+			byte type = in.readByte();
+			switch (type) {
+				case BLOCKS:
+					applyBlocks(in);
+					break;
+				case RECEIVED:
+					int senderId = MessageCodec.readVarInt(in);
+					int blockNumber = MessageCodec.readVarInt(in);
+					int number = MessageCodec.readVarInt(in);
+					received.add(localStore.getTransactionFromNode(senderId, blockNumber, number));
+					break;
+				case META_KNOWLEDGE:
+					Node node = localStore.getNode(MessageCodec.readVarInt(in));
+					int count = MessageCodec.readVarInt(in);
+					for (int i = 0; i < count; i++) {
+						int nodeId = MessageCodec.readVarInt(in);
+						node.getMetaKnowledge().updateLastKnownBlockNumber(nodeId, MessageCodec.readVarInt(in));
+					}
+					break;
+				default:
+					throw new DecoderException("Unknown record type " + type);
+			}
+		}
+
+		/**
+		 * Decodes the blocks in the given record, fixes their transaction sources and appends
+		 * them to their chains.
+		 * @param in - the record
+		 */
+		private void applyBlocks(ByteBuf in) {
+			//Decode all blocks first, as their transactions can have sources in each others blocks
+			Map<Node, List<Block>> blocks = decodeBlocks(in);
+			for (List<Block> list : blocks.values()) {
+				for (Block block : list) {
+					fixTransactionSources(block, blocks);
+				}
+			}
+
+			for (Entry<Node, List<Block>> entry : blocks.entrySet()) {
+				List<Block> list = entry.getValue();
+				if (entry.getKey() != ownNode) {
+					entry.getKey().getChain().update(list, localStore);
+				} else if (!list.isEmpty()) {
+					//Our own blocks are stored when the last of them is committed
+					list.get(list.size() - 1).markCommitted();
+				}
+			}
+		}
+
+		/**
+		 * Decodes the blocks in the given record without their transaction sources. Our own
+		 * blocks are appended to our chain.
+		 * @param in - the record
+		 * @return   - the decoded blocks per node
+		 */
+		private Map<Node, List<Block>> decodeBlocks(ByteBuf in) {
+			int chains = MessageCodec.readVarInt(in);
+			Map<Node, List<Block>> blocks = new LinkedHashMap<>();
+			for (int i = 0; i < chains; i++) {
+				Node node = localStore.getNode(MessageCodec.readVarInt(in));
+				int count = MessageCodec.readVarInt(in);
+				List<Block> decoded = new ArrayList<>(count);
+				for (int j = 0; j < count; j++) {
+					BlockMessage message = readBlock(in);
+					decoded.add(node == ownNode ? restoreOwnBlock(message) : message.toBlockWithoutSources(localStore));
+				}
+				blocks.put(node, decoded);
+			}
+			return blocks;
+		}
+
+		/**
+		 * @param in - the buffer to read from
+		 * @return   - the block message
+		 */
+		private static BlockMessage readBlock(ByteBuf in) {
+			Message message;
+			try {
+				message = MessageCodec.decode(in);
+			} catch (IOException ex) {
+				throw new DecoderException("Unable to decode block", ex);
+			}
+			if (!(message instanceof BlockMessage)) throw new DecoderException("Expected a block, but got " + message);
+			return (BlockMessage) message;
+		}
+
+		/**
+		 * Appends a block with the transactions of the given message to our own chain.
+		 * @param message - the block message
+		 * @return        - the appended block
+		 */
+		private Block restoreOwnBlock(BlockMessage message) {
+			Block block = ownNode.getChain().appendNewBlock();
+			if (block.getNumber() != message.getNumber()) {
+				throw new IllegalStateException("Stored block " + message.getNumber() + " does not follow block " + (block.getNumber() - 1));
+			}
+
+			for (TransactionMessage transactionMessage : message.getTransactions()) {
+				block.addTransaction(transactionMessage.toTransactionWithoutSources(localStore));
+				nextTransactionId = Math.max(nextTransactionId, transactionMessage.getNumber() + 1);
+			}
+			return block;
+		}
+
+		/**
+		 * Adds the sources of the transactions in the given block. Sources are looked up in the
+		 * given blocks first and in the chains of the local store otherwise.
+		 * @param block  - the block
+		 * @param blocks - the blocks decoded from the same record
+		 */
+		private void fixTransactionSources(Block block, Map<Node, List<Block>> blocks) {
+			for (Transaction transaction : block.getTransactions()) {
+				for (TransactionSource source : transaction.getMessage().getSource()) {
+					Block sourceBlock = findBlock(localStore.getNode(source.getOwner()), source.getBlockNumber(), blocks);
+					transaction.getSource().add(sourceBlock.getTransaction(source.getId()));
+				}
+			}
+		}
+
+		/**
+		 * @param node        - the owner of the block
+		 * @param blockNumber - the number of the block
+		 * @param blocks      - the blocks decoded from the same record
+		 * @return            - the block with the given number
+		 */
+		private static Block findBlock(Node node, int blockNumber, Map<Node, List<Block>> blocks) {
+			List<Block> list = blocks.get(node);
+			if (list != null) {
+				for (Block block : list) {
+					if (block.getNumber() == blockNumber) return block;
+				}
+			}
+
+			return node.getChain().getBlocks().get(blockNumber);
+		}
+
+		/**
+		 * Restores the received and unspent transactions, the spent outputs of our own
+		 * transactions and the transaction counter.
+		 */
+		public void finish() {
+			localStore.restoreTransactionId(nextTransactionId);
+
+			List<Transaction> spent = new ArrayList<>();
+			for (Transaction transaction : received) {
+				localStore.getVerification().addReceivedTransaction(transaction);
+				if (transaction.getAmount() > 0) {
+					localStore.addUnspentTransaction(transaction);
+				}
+			}
+
+			for (Block block : ownNode.getChain().getBlocks()) {
+				if (block.getOwner() != ownNode) continue;
+
+				for (Transaction transaction : block.getTransactions()) {
+					//Our own transactions were restored without their sources
+					Chain.markSourcesSpent(transaction);
+					if (transaction.getRemainder() > 0 || transaction.getReceiver() == ownNode) {
+						localStore.addUnspentTransaction(transaction);
+					}
+					spent.addAll(transaction.getSource());
+				}
+			}
+			localStore.removeUnspentTransactions(spent);
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Log;
+
+/**
+ * Append-only log of records, split over segment files in a single directory.
+ *
+ * Every record is written as its length, the CRC32 checksum of its contents and the contents
+ * itself. When reading, the log stops at the first record that is incomplete or has a wrong
+ * checksum. Such a record can only be the result of a crash while writing, so it and everything
+ * after it is removed before new records are appended.
+ */
+public class SegmentLog implements Closeable {
+	//The size in bytes at which a new segment is started.
+	public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final int HEADER_SIZE = 8;
+
+	private final Path directory;
+	private final long segmentSize;
+	private final List<Path> segments;
+
+	private FileChannel channel;
+	private boolean opened;
+
+	/**
+	 * Creates a segment log in the given directory. The directory is created if it does not exist.
+	 * @param directory   - the directory containing the segments
+	 * @param segmentSize - the size in bytes at which a new segment is started
+	 * @throws IOException - If the directory cannot be created or read.
+	 */
+	public SegmentLog(Path directory, long segmentSize) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		Files.createDirectories(directory);
+		this.segments = findSegments(directory);
+	}
+
+	/**
+	 * @param directory - the directory
+	 * @return          - the segments in the given directory, in order
+	 * @throws IOException - If the directory cannot be read.
+	 */
+	private static List<Path> findSegments(Path directory) throws IOException {
+		List<Path> segments = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path path : stream) {
+				segments.add(path);
+			}
+		}
+		segments.sort((a, b) -> Long.compare(segmentIndex(a), segmentIndex(b)));
+		return segments;
+	}
+
+	/**
+	 * @param path - the path of a segment
+	 * @return     - the index of the given segment
+	 */
+	private static long segmentIndex(Path path) {
+		String name = path.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	/**
+	 * Reads all valid records in order and passes them to the given consumer. A damaged tail is
+	 * removed, so that records appended afterwards directly follow the last valid record.
+	 * This method must be called before anything is appended.
+	 * @param consumer - the consumer of the records
+	 * @return         - the number of records that were read
+	 * @throws IOException - If the segments cannot be read.
+	 * @throws IllegalStateException - If records have already been appended.
+	 */
+	public synchronized int replay(Consumer<ByteBuffer> consumer) throws IOException {
+		if (opened) throw new IllegalStateException("The log can only be replayed before appending to it");
+
+		int count = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			Path segment = segments.get(i);
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+			CRC32 crc = new CRC32();
+
+			int validEnd = 0;
+			while (buffer.remaining() >= HEADER_SIZE) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) break;
+
+				crc.reset();
+				crc.update(buffer.array(), buffer.position(), length);
+				if ((int) crc.getValue() != checksum) break;
+
+				ByteBuffer record = ByteBuffer.wrap(buffer.array(), buffer.position(), length).slice();
+				buffer.position(buffer.position() + length);
+				validEnd = buffer.position();
+				consumer.accept(record);
+				count++;
+			}
+
+			if (validEnd < buffer.limit()) {
+				Log.log(Level.WARNING, "Segment " + segment + " is damaged after " + validEnd + " bytes, discarding the rest of the log");
+				truncateFrom(i, validEnd);
+				break;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Truncates the segment with the given index to the given size and deletes all later segments.
+	 * @param index - the index of the segment in the list of segments
+	 * @param size  - the new size of the segment
+	 * @throws IOException - If truncating or deleting fails.
+	 */
+	private void truncateFrom(int index, long size) throws IOException {
+		try (FileChannel segmentChannel = FileChannel.open(segments.get(index), StandardOpenOption.WRITE)) {
+			segmentChannel.truncate(size);
+			segmentChannel.force(true);
+		}
+
+		while (segments.size() > index + 1) {
+			Files.delete(segments.remove(segments.size() - 1));
+		}
+	}
+
+	/**
+	 * Appends a record to the log. The record is not necessarily on disk until {@link #sync()} is called.
+	 * @param record - the contents of the record
+	 * @throws IOException - If writing fails.
+	 */
+	public synchronized void append(ByteBuffer record) throws IOException {
+		FileChannel current = currentChannel();
+		if (current.position() > 0 && current.position() + HEADER_SIZE + record.remaining() > segmentSize) {
+			current = startSegment();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(record.duplicate());
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(record.remaining());
+		header.putInt((int) crc.getValue());
+		header.flip();
+
+		ByteBuffer[] buffers = {header, record};
+		while (header.hasRemaining() || record.hasRemaining()) {
+			current.write(buffers);
+		}
+	}
+
+	/**
+	 * Forces all appended records to disk.
+	 * @throws IOException - If syncing fails.
+	 */
+	public synchronized void sync() throws IOException {
+		if (channel != null) channel.force(false);
+	}
+
+	/**
+	 * @return - the channel of the last segment, opened for appending
+	 * @throws IOException - If the segment cannot be opened.
+	 */
+	private FileChannel currentChannel() throws IOException {
+		if (channel != null) return channel;
+
+		opened = true;
+		if (segments.isEmpty()) return startSegment();
+
+		channel = FileChannel.open(segments.get(segments.size() - 1), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		return channel;
+	}
+
+	/**
+	 * Closes the current segment and starts a new one.
+	 * @return - the channel of the new segment
+	 * @throws IOException - If the new segment cannot be created.
+	 */
+	private FileChannel startSegment() throws IOException {
+		long index = 0;
+		if (!segments.isEmpty()) index = segmentIndex(segments.get(segments.size() - 1)) + 1;
+
+		if (channel != null) {
+			channel.force(false);
+			channel.close();
+		}
+
+		Path segment = directory.resolve(SEGMENT_PREFIX + index + SEGMENT_SUFFIX);
+		channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		segments.add(segment);
+		return channel;
+	}
+
+	/**
+	 * @return - the number of segments
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel == null) return;
+
+		channel.force(false);
+		channel.close();
+		channel = null;
+	}
+}
@@ -1,7 +1,13 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger.utils;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 /**
@@ -120,4 +126,39 @@ public final class Utils {
 	public static String bytesToBas64String(byte[] bytes) {
 		return Base64.getEncoder().encodeToString(bytes);
 	}
+
+	/**
+	 * Runs the given task for every given item in the common fork join pool, and waits for all
+	 * of them. A single item is handled on the calling thread.
+	 * @param items - the items
+	 * @param task  - the task to run for every item
+	 * @param <T>   - the type of the items
+	 * @throws RuntimeException - If the task throws an exception for one of the items.
+	 */
+	public static <T> void invokeParallel(Collection<T> items, Consumer<? super T> task) {
+		List<RecursiveAction> actions = new ArrayList<>(items.size());
+		for (T item : items) {
+			actions.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					task.accept(item);
+				}
+			});
+		}
+
+		if (actions.size() == 1) {
+			actions.get(0).invoke();
+		} else if (!actions.isEmpty()) {
+			ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(actions);
+				}
+			});
+		}
+	}
 }
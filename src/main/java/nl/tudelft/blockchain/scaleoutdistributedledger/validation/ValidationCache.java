@@ -0,0 +1,175 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.validation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+/**
+ * Concurrent cache of validation results, bounded in size and in age.
+ *
+ * Entries that have not been used for longer than the maximum age are evicted, and when the cache
+ * grows beyond its maximum size the least recently used entries are evicted. Entries of pinned
+ * transactions, such as the transactions that we can still spend, are never evicted.
+ */
+public class ValidationCache {
+	//The default maximum number of entries.
+	public static final int DEFAULT_MAX_SIZE = 100_000;
+	//The default time in milliseconds after which an unused entry is evicted.
+	public static final long DEFAULT_MAX_AGE = 10 * 60 * 1000L;
+
+	private final int maxSize;
+	private final long maxAge;
+	private final Map<Transaction, CacheEntry> entries = new ConcurrentHashMap<>();
+	private volatile long lastSweep = System.currentTimeMillis();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a cache with the default maximum size and age.
+	 */
+	public ValidationCache() {
+		this(DEFAULT_MAX_SIZE, DEFAULT_MAX_AGE);
+	}
+
+	/**
+	 * @param maxSize - the maximum number of entries, excluding pinned entries
+	 * @param maxAge  - the time in milliseconds after which an unused entry is evicted
+	 */
+	public ValidationCache(int maxSize, long maxAge) {
+		this.maxSize = maxSize;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * @param transaction - the transaction
+	 * @return            - the cached validation result of the given transaction, or null if it is not cached
+	 */
+	public Boolean get(Transaction transaction) {
+		CacheEntry entry = entries.get(transaction);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		entry.lastUsed = System.currentTimeMillis();
+		return entry.valid;
+	}
+
+	/**
+	 * Adds the given validation results to this cache.
+	 * @param results - the validation results
+	 */
+	public void putAll(Map<Transaction, Boolean> results) {
+		long now = System.currentTimeMillis();
+		for (Entry<Transaction, Boolean> result : results.entrySet()) {
+			entries.put(result.getKey(), new CacheEntry(result.getValue(), now));
+		}
+	}
+
+	/**
+	 * Evicts entries if this cache is too large, or if the last eviction was longer than the
+	 * maximum age ago.
+	 * @param pinned - the transactions whose entries must be kept
+	 */
+	public void evictIfNeeded(Predicate<Transaction> pinned) {
+		long now = System.currentTimeMillis();
+		if (entries.size() <= maxSize && now - lastSweep < maxAge) return;
+
+		synchronized (this) {
+			if (entries.size() <= maxSize && now - lastSweep < maxAge) return;
+			lastSweep = now;
+			evict(pinned, now);
+		}
+	}
+
+	/**
+	 * Evicts all expired entries and then the least recently used entries until this cache is
+	 * at most three quarters full, so that evictions are not needed on every insertion.
+	 * @param pinned - the transactions whose entries must be kept
+	 * @param now    - the current time
+	 */
+	private void evict(Predicate<Transaction> pinned, long now) {
+		List<Entry<Transaction, CacheEntry>> candidates = new ArrayList<>();
+		for (Entry<Transaction, CacheEntry> entry : entries.entrySet()) {
+			if (pinned.test(entry.getKey())) continue;
+
+			if (now - entry.getValue().lastUsed >= maxAge) {
+				remove(entry);
+			} else {
+				candidates.add(entry);
+			}
+		}
+
+		int excess = entries.size() - maxSize * 3 / 4;
+		if (excess <= 0) return;
+
+		candidates.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+		for (int i = 0; i < excess && i < candidates.size(); i++) {
+			remove(candidates.get(i));
+		}
+	}
+
+	/**
+	 * @param entry - the entry to remove
+	 */
+	private void remove(Entry<Transaction, CacheEntry> entry) {
+		if (entries.remove(entry.getKey(), entry.getValue())) {
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * @return - the number of entries in this cache
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return - the number of lookups that found an entry
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return - the number of lookups that did not find an entry
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return - the number of entries that have been evicted
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Cached validation result.
+	 */
+	private static class CacheEntry {
+		private final boolean valid;
+		private volatile long lastUsed;
+
+		/**
+		 * @param valid    - the validation result
+		 * @param lastUsed - the time the entry was added
+		 */
+		CacheEntry(boolean valid, long lastUsed) {
+			this.valid = valid;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
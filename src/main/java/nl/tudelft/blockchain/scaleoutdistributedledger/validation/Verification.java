@@ -1,41 +1,113 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger.validation;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Getter;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Chain;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.ChainView;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.utils.Utils;
 
 /**
  * Verification and validation algorithms.
+ * 
+ * This class can be used by multiple threads at the same time.
  */
 public class Verification {
-	private HashMap<Transaction, Boolean> validationCache = new HashMap<>();
-	private HashSet<Transaction> receivedTransactions = new HashSet<>();
+	@Getter
+	private final ValidationCache validationCache = new ValidationCache();
+	
+	//Numbers of the transactions made to us, per sender
+	private final Map<Integer, BitSet> receivedTransactions = new ConcurrentHashMap<>();
+	
+	/**
+	 * Marks the given transaction as received, so that receiving it again is rejected.
+	 * @param transaction - the transaction
+	 * @return            - false if the given transaction was already received, true otherwise
+	 */
+	public boolean addReceivedTransaction(Transaction transaction) {
+		int senderId = transaction.getSender() == null ? Transaction.GENESIS_SENDER : transaction.getSender().getId();
+		BitSet received = receivedTransactions.computeIfAbsent(senderId, id -> new BitSet());
+		synchronized (received) {
+			if (received.get(transaction.getNumber())) return false;
+			
+			received.set(transaction.getNumber());
+			return true;
+		}
+	}
 	
 	/**
+	 * @param transaction - the transaction
+	 * @return            - true if the given transaction has been received already
+	 */
+	public boolean isReceived(Transaction transaction) {
+		int senderId = transaction.getSender() == null ? Transaction.GENESIS_SENDER : transaction.getSender().getId();
+		BitSet received = receivedTransactions.get(senderId);
+		if (received == null) return false;
+		
+		synchronized (received) {
+			return received.get(transaction.getNumber());
+		}
+	}
+	
+	/**
+	 * Unmarks the given transaction as received, so that it can be received again.
+	 * @param transaction - the transaction
+	 */
+	public void removeReceivedTransaction(Transaction transaction) {
+		int senderId = transaction.getSender() == null ? Transaction.GENESIS_SENDER : transaction.getSender().getId();
+		BitSet received = receivedTransactions.get(senderId);
+		synchronized (received) {
+			received.clear(transaction.getNumber());
+		}
+	}
+	
+	/**
+	 * Validates a transaction that is made to us. If it is invalid, it is not marked as received,
+	 * so that the sender can retransmit it with a different proof.
 	 * @param proof - the proof
 	 * @param localStore - the local store
 	 * @throws ValidationException - If the proof or the transaction is invalid.
 	 */
 	public void validateNewMessage(Proof proof, LocalStore localStore) throws ValidationException {
 		Transaction transaction = proof.getTransaction();
-		if (!receivedTransactions.add(transaction)) {
+		if (!addReceivedTransaction(transaction)) {
 			throw new ValidationException("Transaction " + transaction + " has been made to us already!");
 		}
 		
-		proof.verify(localStore);
-		
 		HashMap<Transaction, Boolean> cache = new HashMap<>();
-		validateTransaction(transaction, proof, localStore, cache);
+		try {
+			proof.verify(localStore);
+			
+			if (localStore.isParallelVerification()) {
+				validateTransactionParallel(transaction, proof, localStore, cache);
+			} else {
+				validateTransaction(transaction, proof, localStore, cache);
+			}
+		} catch (RuntimeException ex) {
+			removeReceivedTransaction(transaction);
+			throw ex;
+		}
 		
 		//Transaction is valid, so update the global cache.
 		validationCache.putAll(cache);
+		validationCache.evictIfNeeded(localStore::isUnspent);
 	}
 	
 	/**
@@ -51,6 +123,12 @@ public class Verification {
 			return;
 		}
 		
+		//Checkpointed transactions are committed and known by every node
+		if (Chain.isCheckpointed(transaction)) {
+			cache.put(transaction, true);
+			return;
+		}
+		
 		checkMoney(transaction);
 		checkDoubleSpending(transaction, proof);
 		validateSources(transaction, proof, localStore, cache);
@@ -58,6 +136,89 @@ public class Verification {
 		cache.put(transaction, true);
 	}
 
+	/**
+	 * Validates the given transaction with the given proof, where the transactions of different
+	 * senders are validated concurrently.
+	 * 
+	 * First the transaction and all its sources that have not been validated before are
+	 * collected. Then the transactions of every sender are checked by a separate task. The
+	 * transactions are only added to the cache if all tasks succeed.
+	 * @param transaction - the transaction to validate
+	 * @param proof       - the proof
+	 * @param localStore  - the local store
+	 * @param cache       - the cache to use
+	 * @throws ValidationException - If the transaction or one of its sources is invalid.
+	 */
+	public void validateTransactionParallel(Transaction transaction, Proof proof, LocalStore localStore, HashMap<Transaction, Boolean> cache) {
+		Map<Node, List<Transaction>> perSender = collectUnvalidated(transaction, localStore, cache);
+		Utils.invokeParallel(perSender.values(), transactions -> {
+			for (Transaction txj : transactions) {
+				checkMoney(txj);
+				checkDoubleSpending(txj, proof);
+			}
+		});
+		
+		for (List<Transaction> transactions : perSender.values()) {
+			for (Transaction txj : transactions) {
+				cache.put(txj, true);
+			}
+		}
+	}
+	
+	/**
+	 * Collects the given transaction and all its sources that have not been validated before,
+	 * grouped by sender. Genesis and checkpointed transactions are validated directly.
+	 * @param transaction - the transaction to validate
+	 * @param localStore  - the local store
+	 * @param cache       - the cache to use
+	 * @return            - the transactions to check, per sender
+	 * @throws ValidationException - If one of the sources has been cached as invalid.
+	 */
+	private Map<Node, List<Transaction>> collectUnvalidated(Transaction transaction, LocalStore localStore, HashMap<Transaction, Boolean> cache) {
+		Map<Node, List<Transaction>> perSender = new HashMap<>();
+		Set<Transaction> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<Transaction> stack = new ArrayDeque<>();
+		stack.push(transaction);
+		while (!stack.isEmpty()) {
+			Transaction current = stack.pop();
+			if (!seen.add(current)) continue;
+			
+			if (current.getSender() == null) {
+				validateGenesisTransaction(current, localStore, cache);
+				continue;
+			}
+			
+			//Checkpointed transactions are committed and known by every node
+			if (Chain.isCheckpointed(current)) {
+				cache.put(current, true);
+				continue;
+			}
+			
+			perSender.computeIfAbsent(current.getSender(), k -> new ArrayList<>()).add(current);
+			pushUncachedSources(current, stack, cache);
+		}
+		return perSender;
+	}
+	
+	/**
+	 * Pushes the sources of the given transaction that have not been validated before.
+	 * @param transaction - the transaction
+	 * @param stack       - the stack of transactions to validate
+	 * @param cache       - the cache to use
+	 * @throws ValidationException - If one of the sources has been cached as invalid.
+	 */
+	private void pushUncachedSources(Transaction transaction, Deque<Transaction> stack, HashMap<Transaction, Boolean> cache) {
+		for (Transaction txj : transaction.getSource()) {
+			Boolean cached = validationCache.get(txj);
+			if (cached == null) cached = cache.get(txj);
+			if (cached == null) {
+				stack.push(txj);
+			} else if (!cached) {
+				throw new ValidationException(transaction, "source " + txj + " has been cached as invalid.");
+			}
+		}
+	}
+
 	/**
 	 * Checks if the amount of money in the given transaction is correct.
 	 * @param transaction - the transaction to check
@@ -91,13 +252,30 @@ public class Verification {
 	
 	/**
 	 * Checks if the given transaction tries to double spend.
+	 * 
+	 * The sources are first checked against the spent outputs recorded by the chains we know,
+	 * which cover every block that has been applied. Only the blocks of the sender that are new in
+	 * the given proof are walked, up to the block containing the transaction.
 	 * @param transaction - the transaction to check
 	 * @param proof       - the proof for the transaction
 	 * @throws ValidationException - If we detect double spending.
 	 */
 	private void checkDoubleSpending(Transaction transaction, Proof proof) throws ValidationException {
+		for (Transaction source : transaction.getSource()) {
+			int spender = Chain.of(source).getSpender(source, transaction.getSender());
+			if (spender != -1 && spender != transaction.getNumber()) {
+				throw new ValidationException(transaction, "double spending detected with source " + source
+						+ ", which was already spent by transaction " + spender);
+			}
+		}
+		
 		ChainView chainView = proof.getChainView(transaction.getSender());
-		for (Block block : chainView) {
+		int firstUnapplied = transaction.getSender().getChain().getBlocks().size();
+		if (firstUnapplied >= chainView.size()) return;
+		
+		ListIterator<Block> iterator = chainView.listIterator(firstUnapplied);
+		while (iterator.hasNext()) {
+			Block block = iterator.next();
 			boolean found = false;
 			for (Transaction txj : block.getTransactions()) {
 				if (transaction.equals(txj)) {
@@ -0,0 +1,161 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.BlockAbstract;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Chain;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Ed25519Key;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.mainchain.MainChain;
+import nl.tudelft.blockchain.scaleoutdistributedledger.storage.BlockStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.test.utils.TestHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for {@link BlockCommitter}.
+ */
+public class BlockCommitterTest {
+
+	private static final Sha256Hash HASH = Sha256Hash.withHash(new byte[] {1, 2});
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Block genesisBlock;
+
+	private LocalStore localStore;
+
+	private MainChain mainChain;
+
+	private Chain chain;
+
+	private BlockCommitter committer;
+
+	/**
+	 * Setup method.
+	 */
+	@Before
+	public void setUp() {
+		Ed25519Key keyPair = new Ed25519Key();
+		OwnNode ownNode = new OwnNode(0);
+		ownNode.setPrivateKey(keyPair.getPrivateKey());
+		ownNode.setPublicKey(keyPair.getPublicKey());
+		this.genesisBlock = TestHelper.generateGenesis(ownNode, 2, 1000);
+		this.localStore = spy(new LocalStore(ownNode, null, this.genesisBlock, false));
+		this.mainChain = mock(MainChain.class);
+		when(this.localStore.getMainChain()).thenReturn(this.mainChain);
+
+		this.chain = ownNode.getChain();
+		this.committer = new BlockCommitter(this.localStore);
+	}
+
+	/**
+	 * Stops the committer.
+	 */
+	@After
+	public void tearDown() {
+		this.committer.shutdownNow();
+	}
+
+	/**
+	 * Test for {@link BlockCommitter#commit(Block)} where the first attempt fails.
+	 * @throws Exception - If the commit does not complete.
+	 */
+	@Test
+	public void testCommit_Retry() throws Exception {
+		when(this.mainChain.commitAbstractAsync(any(BlockAbstract.class))).thenReturn(
+				CompletableFuture.completedFuture(null), CompletableFuture.completedFuture(HASH));
+		Block block = this.chain.appendNewBlock();
+
+		assertTrue(this.committer.commit(block).get(5, TimeUnit.SECONDS));
+		assertEquals(block, this.chain.getLastCommittedBlock());
+		assertFalse(block.isCommitPending());
+		verify(this.mainChain, times(2)).commitAbstractAsync(any(BlockAbstract.class));
+	}
+
+	/**
+	 * Test for {@link BlockCommitter#commit(Block)} where a block is not on the main chain yet, but
+	 * the block that was committed after it is.
+	 */
+	@Test
+	public void testCommit_WaitsForPrevious() {
+		when(this.mainChain.commitAbstractAsync(any(BlockAbstract.class))).thenReturn(
+				new CompletableFuture<>(), CompletableFuture.completedFuture(HASH));
+		Block genesis = this.chain.getLastCommittedBlock();
+		Block block1 = this.chain.appendNewBlock();
+		Block block2 = this.chain.appendNewBlock();
+
+		this.committer.commit(block1);
+		CompletableFuture<Boolean> committed2 = this.committer.commit(block2);
+		assertFalse(committed2.isDone());
+		assertEquals(genesis, this.chain.getLastCommittedBlock());
+		assertEquals(block2, this.committer.getLastCommitRequested());
+		assertTrue(block1.isCommitPending());
+	}
+
+	/**
+	 * Test for {@link BlockCommitter#commit(Block)} where a block is on the main chain before the
+	 * block that was committed before it.
+	 * @throws Exception - If the commit does not complete.
+	 */
+	@Test
+	public void testCommit_InOrder() throws Exception {
+		CompletableFuture<Sha256Hash> first = new CompletableFuture<>();
+		when(this.mainChain.commitAbstractAsync(any(BlockAbstract.class))).thenReturn(
+				first, CompletableFuture.completedFuture(HASH));
+		Block block1 = this.chain.appendNewBlock();
+		Block block2 = this.chain.appendNewBlock();
+
+		this.committer.commit(block1);
+		CompletableFuture<Boolean> committed2 = this.committer.commit(block2);
+		first.complete(HASH);
+		assertTrue(committed2.get(5, TimeUnit.SECONDS));
+		assertEquals(block2, this.chain.getLastCommittedBlock());
+		assertEquals(block1, block1.getNextCommittedBlock());
+	}
+
+	/**
+	 * Test for {@link BlockCommitter#commit(Block)} where committing a block is given up, but the
+	 * block after it is committed. Both blocks must be stored.
+	 * @throws Exception - If the commit does not complete or the blocks cannot be recovered.
+	 */
+	@Test
+	public void testCommit_GiveUp() throws Exception {
+		BlockStore blockStore = new BlockStore(this.folder.getRoot().toPath(), false);
+		this.localStore.setBlockStore(blockStore);
+		CompletableFuture<Sha256Hash> failed = CompletableFuture.completedFuture(null);
+		when(this.mainChain.commitAbstractAsync(any(BlockAbstract.class))).thenReturn(
+				failed, failed, failed, CompletableFuture.completedFuture(HASH));
+		Block block1 = this.chain.appendNewBlock();
+		Block block2 = this.chain.appendNewBlock();
+
+		assertFalse(this.committer.commit(block1).get(10, TimeUnit.SECONDS));
+		assertTrue(this.committer.commit(block2).get(5, TimeUnit.SECONDS));
+		assertFalse(block1.isCommitPending());
+		blockStore.close();
+
+		OwnNode recoveredNode = new OwnNode(0);
+		Block genesis = this.genesisBlock.genesisCopy();
+		recoveredNode.getChain().setGenesisBlock(genesis);
+		new BlockStore(this.folder.getRoot().toPath(), false).recover(new LocalStore(recoveredNode, null, genesis, false));
+		assertEquals(block2.getHash(), recoveredNode.getChain().getLastCommittedBlock().getHash());
+	}
+}
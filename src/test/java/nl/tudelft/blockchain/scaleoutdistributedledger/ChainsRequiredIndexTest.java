@@ -0,0 +1,136 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+/**
+ * Test class for {@link ChainsRequiredIndex}.
+ */
+public class ChainsRequiredIndexTest {
+	private static final int NODES = 4;
+
+	private ChainsRequiredIndex index;
+	private Node receiver;
+	private Node nodeA;
+	private Node nodeB;
+
+	/**
+	 * Called before every test.
+	 */
+	@Before
+	public void setUp() {
+		index = new ChainsRequiredIndex();
+		receiver = new Node(1);
+		nodeA = new Node(2);
+		nodeB = new Node(3);
+	}
+
+	/**
+	 * Appends a block with the given transaction to the chain of the sender.
+	 * @param transaction - the transaction
+	 * @return            - the transaction
+	 */
+	private Transaction addToChain(Transaction transaction) {
+		Node sender = transaction.getSender();
+		int number = sender.getChain().getBlocks().size();
+		sender.getChain().getBlocks().add(new Block(number, sender, Arrays.asList(transaction)));
+		return transaction;
+	}
+
+	/**
+	 * Creates a transaction from A (block 1) which uses a transaction from B (block 1) as source.
+	 * @return - the transaction from A
+	 */
+	private Transaction createTransaction() {
+		Transaction genesisB = new Transaction(0, null, nodeB, 10, 0, new TreeSet<>());
+		nodeB.getChain().getBlocks().add(new Block(0, null, Arrays.asList(genesisB)));
+		nodeA.getChain().getBlocks().add(new Block(0, null, Arrays.asList()));
+
+		Transaction fromB = addToChain(new Transaction(1, nodeB, nodeA, 10, 0, genesisB));
+		return addToChain(new Transaction(2, nodeA, receiver, 10, 0, fromB));
+	}
+
+	/**
+	 * @param ids - the ids to set
+	 * @return    - a BitSet with the given ids set
+	 */
+	private BitSet bits(int... ids) {
+		BitSet bitset = new BitSet();
+		for (int id : ids) {
+			bitset.set(id);
+		}
+		return bitset;
+	}
+
+	/**
+	 * Test for the chains required when the receiver knows nothing.
+	 */
+	@Test
+	public void testNothingKnown() {
+		Transaction transaction = createTransaction();
+
+		assertEquals(bits(2, 3), index.getChainsRequired(transaction, receiver, NODES));
+	}
+
+	/**
+	 * Test that the chains are updated when the receiver learns about a visited block.
+	 */
+	@Test
+	public void testKnowledgeAdvances() {
+		Transaction transaction = createTransaction();
+		assertEquals(bits(2, 3), index.getChainsRequired(transaction, receiver, NODES));
+
+		receiver.getMetaKnowledge().updateLastKnownBlockNumber(nodeB, 1);
+		assertEquals(bits(2), index.getChainsRequired(transaction, receiver, NODES));
+
+		receiver.getMetaKnowledge().updateLastKnownBlockNumber(nodeA, 1);
+		assertTrue(index.getChainsRequired(transaction, receiver, NODES).isEmpty());
+	}
+
+	/**
+	 * Test that knowledge of unvisited blocks does not change the chains.
+	 */
+	@Test
+	public void testUnrelatedKnowledge() {
+		Transaction transaction = createTransaction();
+		assertEquals(bits(2, 3), index.getChainsRequired(transaction, receiver, NODES));
+
+		receiver.getMetaKnowledge().updateLastKnownBlockNumber(nodeB, 0);
+		assertEquals(bits(2, 3), index.getChainsRequired(transaction, receiver, NODES));
+	}
+
+	/**
+	 * Test that modifying a returned BitSet does not modify the index.
+	 */
+	@Test
+	public void testReturnsCopy() {
+		Transaction transaction = createTransaction();
+		index.getChainsRequired(transaction, receiver, NODES).clear();
+
+		assertEquals(bits(2, 3), index.getChainsRequired(transaction, receiver, NODES));
+	}
+
+	/**
+	 * Test for {@link ChainsRequiredIndex#remove(Transaction)}.
+	 */
+	@Test
+	public void testRemove() {
+		Transaction transaction = createTransaction();
+		index.getChainsRequired(transaction, receiver, NODES);
+		assertEquals(1, index.size());
+
+		index.remove(transaction);
+		assertEquals(0, index.size());
+	}
+}
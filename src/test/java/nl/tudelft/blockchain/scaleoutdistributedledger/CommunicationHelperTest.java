@@ -1,18 +1,30 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
 
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.AcknowledgementMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
 import nl.tudelft.blockchain.scaleoutdistributedledger.test.utils.TestHelper;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Class to test {@link CommunicationHelper}.
@@ -31,6 +43,8 @@ public class CommunicationHelperTest {
 	
 	private Node charlieNode;
 	
+	private TransactionSender transactionSender;
+	
 	/**
 	 * Setup method.
 	 */
@@ -40,6 +54,8 @@ public class CommunicationHelperTest {
 		this.ownNode = new OwnNode(0);
 		this.genesisBlock = TestHelper.generateGenesis(this.ownNode, 10, 1000);
 		Application application = mock(Application.class);
+		this.transactionSender = mock(TransactionSender.class);
+		when(application.getTransactionSender()).thenReturn(this.transactionSender);
 		this.localStore = new LocalStore(this.ownNode, application, this.genesisBlock, false);
 		// Setup bobNode
 		this.bobNode = new Node(1);
@@ -110,4 +126,82 @@ public class CommunicationHelperTest {
 		assertFalse(CommunicationHelper.receiveTransaction(proof, this.localStore));
 	}
 	
+	/**
+	 * Test for {@link CommunicationHelper#receiveTransactions} with a batch in which one proof
+	 * is invalid, which rejects the whole batch.
+	 */
+	@Test
+	public void testReceiveTransactions_PartiallyValid() {
+		this.localStore.setAcknowledgedDelivery(true);
+		Transaction valid = this.createTransactionFromGenesis(this.bobNode, this.ownNode, 100, 900);
+		Transaction invalid = this.createTransactionFromGenesis(this.bobNode, this.ownNode, 9999, 900);
+		
+		int accepted = CommunicationHelper.receiveTransactions(Arrays.asList(new Proof(valid), new Proof(invalid)), this.localStore);
+		
+		assertEquals(0, accepted);
+		assertFalse(this.localStore.getUnspent().contains(valid));
+		assertFalse(this.localStore.getUnspent().contains(invalid));
+		
+		AcknowledgementMessage ack = getAcknowledgement();
+		assertTrue(ack.getAccepted().isEmpty());
+		assertTrue(ack.getRejected().contains(valid.getNumber()));
+		assertTrue(ack.getRejected().contains(invalid.getNumber()));
+		
+		//The valid transaction is accepted when it is sent again on its own
+		assertTrue(CommunicationHelper.receiveTransaction(new Proof(valid), this.localStore));
+		assertTrue(this.localStore.getUnspent().contains(valid));
+	}
+	
+	/**
+	 * @return - the acknowledgement that was sent to bob
+	 */
+	private AcknowledgementMessage getAcknowledgement() {
+		ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+		verify(this.transactionSender).sendMessage(eq(this.bobNode), captor.capture());
+		return (AcknowledgementMessage) captor.getValue();
+	}
+	
+	/**
+	 * Test for {@link CommunicationHelper#receiveTransaction} with acknowledged delivery.
+	 */
+	@Test
+	public void testReceiveTransaction_Acknowledged() {
+		this.localStore.setAcknowledgedDelivery(true);
+		Transaction transaction = this.createTransactionFromGenesis(this.bobNode, this.ownNode, 100, 900);
+		
+		assertTrue(CommunicationHelper.receiveTransaction(new Proof(transaction), this.localStore));
+		AcknowledgementMessage ack = getAcknowledgement();
+		assertEquals(Arrays.asList(transaction.getNumber()), ack.getAccepted());
+		assertTrue(ack.getRejected().isEmpty());
+	}
+	
+	/**
+	 * Test for {@link CommunicationHelper#receiveTransaction} with acknowledged delivery of an
+	 * invalid transaction, which can be retransmitted.
+	 */
+	@Test
+	public void testReceiveTransaction_Rejected() {
+		this.localStore.setAcknowledgedDelivery(true);
+		Transaction transaction = this.createTransactionFromGenesis(this.bobNode, this.ownNode, 9999, 900);
+		
+		assertFalse(CommunicationHelper.receiveTransaction(new Proof(transaction), this.localStore));
+		assertEquals(Arrays.asList(transaction.getNumber()), getAcknowledgement().getRejected());
+		assertFalse(this.localStore.getVerification().isReceived(transaction));
+	}
+	
+	/**
+	 * Test for {@link CommunicationHelper#receiveTransaction} with a transaction that was accepted
+	 * before, which is acknowledged again without being processed again.
+	 */
+	@Test
+	public void testReceiveTransaction_Retransmission() {
+		this.localStore.setAcknowledgedDelivery(true);
+		Transaction transaction = this.createTransactionFromGenesis(this.bobNode, this.ownNode, 100, 900);
+		assertTrue(CommunicationHelper.receiveTransaction(new Proof(transaction), this.localStore));
+		long money = this.localStore.getAvailableMoney();
+		
+		assertFalse(CommunicationHelper.receiveTransaction(new Proof(transaction), this.localStore));
+		assertEquals(money, this.localStore.getAvailableMoney());
+		verify(this.transactionSender, times(2)).sendMessage(eq(this.bobNode), any(AcknowledgementMessage.class));
+	}
 }
@@ -1,12 +1,20 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
 import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
 import nl.tudelft.blockchain.scaleoutdistributedledger.test.utils.TestHelper;
@@ -73,4 +81,25 @@ public class LocalStoreTest {
 		this.localStore.getTransactionFromNode(0, 0, 99);
 	}
 	
+	/**
+	 * Test for {@link LocalStore#getHeightsToAdvertise(Node)} and {@link LocalStore#updateKnownHeights(Node, Map)}.
+	 */
+	@Test
+	public void testHeightAdvertisement() {
+		this.localStore.getNodes().putAll(TestHelper.getNodeList(this.ownNode.getChain().getGenesisBlock()));
+		Node bobNode = this.localStore.getNode(1);
+		Node charlieNode = this.localStore.getNode(2);
+		Transaction genesis = bobNode.getChain().getGenesisTransaction();
+		Transaction transaction = new Transaction(10, bobNode, charlieNode, 100, 900, genesis);
+		List<Block> blocks = new ArrayList<>();
+		blocks.add(new Block(1, bobNode, new ArrayList<>(Arrays.asList(transaction))));
+		bobNode.getChain().update(blocks, this.localStore);
+		
+		Map<Integer, Integer> heights = this.localStore.getHeightsToAdvertise(charlieNode);
+		assertEquals(Collections.singletonMap(1, 1), heights);
+		assertTrue(this.localStore.getHeightsToAdvertise(charlieNode).isEmpty());
+		
+		this.localStore.updateKnownHeights(charlieNode, heights);
+		assertEquals(1, charlieNode.getMetaKnowledge().getLastKnownBlockNumber(bobNode));
+	}
 }
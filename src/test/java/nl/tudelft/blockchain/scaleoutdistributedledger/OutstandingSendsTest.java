@@ -0,0 +1,77 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.OutstandingSends.OutstandingSend;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link OutstandingSends}.
+ */
+public class OutstandingSendsTest {
+	
+	private final Node sender = new Node(0);
+	
+	private final Node receiver = new Node(1);
+	
+	private OutstandingSends outstanding;
+	
+	private List<Transaction> transactions;
+	
+	/**
+	 * Setup method.
+	 * Tracks a single send of two transactions.
+	 */
+	@Before
+	public void setUp() {
+		this.outstanding = new OutstandingSends();
+		this.transactions = Arrays.asList(
+				new Transaction(1, this.sender, this.receiver, 10, 0),
+				new Transaction(2, this.sender, this.receiver, 20, 0));
+		this.outstanding.add(this.receiver, this.transactions, Collections.emptyMap(), 2);
+	}
+	
+	/**
+	 * Test for {@link OutstandingSends#remove(Node, java.util.Collection)}.
+	 */
+	@Test
+	public void testRemove() {
+		assertEquals(2, this.outstanding.getAttempt(2));
+		
+		Set<OutstandingSend> removed = this.outstanding.remove(this.receiver, Arrays.asList(2, 1));
+		assertEquals(1, removed.size());
+		assertEquals(this.transactions, removed.iterator().next().getTransactions());
+		assertTrue(this.outstanding.isEmpty());
+		assertEquals(0, this.outstanding.getAttempt(1));
+	}
+	
+	/**
+	 * Test for {@link OutstandingSends#remove(Node, java.util.Collection)} with an acknowledgement
+	 * from a node that the transactions were not sent to.
+	 */
+	@Test
+	public void testRemove_OtherNode() {
+		assertTrue(this.outstanding.remove(this.sender, Arrays.asList(1)).isEmpty());
+		assertEquals(2, this.outstanding.getAttempt(1));
+	}
+	
+	/**
+	 * Test for {@link OutstandingSends#removeTimedOut(long)}.
+	 */
+	@Test
+	public void testRemoveTimedOut() {
+		assertTrue(this.outstanding.removeTimedOut(60 * 1000L).isEmpty());
+		assertEquals(1, this.outstanding.removeTimedOut(0).size());
+		assertTrue(this.outstanding.isEmpty());
+	}
+}
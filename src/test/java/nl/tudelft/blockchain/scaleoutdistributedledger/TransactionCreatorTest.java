@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -275,4 +276,109 @@ public class TransactionCreatorTest {
 		//We expect t4 to be used as the sources
 		checkTransactionSources(transaction, t4);
 	}
+	
+	/**
+	 * Test for the scenario of {@link #testScenario1()} with branch and bound source selection.
+	 */
+	@SuppressWarnings("unused")
+	@Test
+	public void testScenario1BranchAndBound() {
+		localStore.setSourceSelector(new BranchAndBoundSourceSelector(100000, 1000));
+		createNodes(1, 4);
+		addMetaKnowledge(getNode(1), 2, 3);
+		
+		Transaction t2 = addReceivedMoney(getNode(2), 5);
+		Transaction t3 = addReceivedMoney(getNode(3), 5);
+		Transaction t4 = addReceivedMoney(getNode(4), 10);
+		
+		TransactionCreator tc = new TransactionCreator(localStore, getNode(1), 10);
+		Transaction transaction = tc.createTransaction();
+		
+		assertEquals(0, transaction.getRemainder());
+		checkTransactionSources(transaction, t2, t3);
+	}
+	
+	/**
+	 * Test for the scenario of {@link #testScenario2()} with branch and bound source selection.
+	 */
+	@SuppressWarnings("unused")
+	@Test
+	public void testScenario2BranchAndBound() {
+		localStore.setSourceSelector(new BranchAndBoundSourceSelector(100000, 1000));
+		createNodes(1, 5);
+		addMetaKnowledge(getNode(1), 2, 5);
+		
+		Transaction t2 = addReceivedMoney(getNode(2), 5);
+		Transaction t3 = addReceivedMoney(getNode(3), 5);
+		Transaction t4 = addReceivedMoney(getNode(4), 10);
+		Transaction t5 = addReceivedMoney(getNode(5), 1);
+		
+		TransactionCreator tc = new TransactionCreator(localStore, getNode(1), 10);
+		Transaction transaction = tc.createTransaction();
+		
+		assertEquals(0, transaction.getRemainder());
+		checkTransactionSources(transaction, t4);
+	}
+	
+	/**
+	 * Test for branch and bound source selection when the search budget is exhausted immediately.
+	 * The greedy solution should be used in that case.
+	 */
+	@Test
+	public void testBranchAndBoundBudgetExhausted() {
+		localStore.setSourceSelector(new BranchAndBoundSourceSelector(1, 1000));
+		createNodes(1, 5);
+		addMetaKnowledge(getNode(1), 2);
+		
+		addReceivedMoney(getNode(2), 3);
+		addReceivedMoney(getNode(3), 3);
+		addReceivedMoney(getNode(4), 3);
+		addReceivedMoney(getNode(5), 3);
+		
+		TransactionCreator tc = new TransactionCreator(localStore, getNode(1), 10);
+		Transaction transaction = tc.createTransaction();
+		
+		assertEquals(10, transaction.getAmount());
+		assertEquals(2, transaction.getRemainder());
+		assertEquals(4, transaction.getSource().size());
+	}
+	
+	/**
+	 * Creates a random scenario with the given seed and selects the sources of a transaction.
+	 * @param seed     - the seed for the scenario
+	 * @param parallel - if the rounds should be evaluated in parallel
+	 * @return           a description of the selected sources and the remainder
+	 */
+	private String selectRandomScenario(long seed, boolean parallel) {
+		setUp();
+		localStore.setParallelSourceSelection(parallel);
+		Random random = new Random(seed);
+		createNodes(1, 20);
+		
+		for (int i = 2; i <= 20; i++) {
+			if (random.nextInt(4) == 0) addMetaKnowledge(getNode(1), i);
+			addReceivedMoney(getNode(i), 1 + random.nextInt(20));
+		}
+		
+		TransactionCreator tc = new TransactionCreator(localStore, getNode(1), 45);
+		Transaction transaction = tc.createTransaction();
+		
+		StringBuilder sb = new StringBuilder();
+		for (Transaction source : transaction.getSource()) {
+			sb.append(source.getSender().getId()).append(':').append(source.getNumber()).append(' ');
+		}
+		return sb.append("remainder=").append(transaction.getRemainder()).toString();
+	}
+	
+	/**
+	 * Test that evaluating the rounds in parallel gives exactly the same result as sequential.
+	 */
+	@Test
+	public void testParallelMatchesSequential() {
+		for (long seed = 0; seed < 20; seed++) {
+			String sequential = selectRandomScenario(seed, false);
+			String parallel = selectRandomScenario(seed, true);
+			assertEquals("Seed " + seed, sequential, parallel);
+		}
+	}
 }
@@ -0,0 +1,210 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.BatchProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.ProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Ed25519Key;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.sockets.SocketClient;
+import nl.tudelft.blockchain.scaleoutdistributedledger.test.utils.TestHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for {@link TransactionSender}.
+ */
+public class TransactionSenderTest {
+
+	private static final int RECEIVERS = SimulationMain.SENDER_THREADS + 2;
+
+	private OwnNode ownNode;
+
+	private LocalStore localStore;
+
+	private List<Node> receivers;
+
+	private SocketClient socketClient;
+
+	private TransactionSender sender;
+
+	private int nextNumber = 100;
+
+	private Transaction previous;
+
+	/**
+	 * Setup method.
+	 */
+	@Before
+	public void setUp() {
+		this.ownNode = new OwnNode(0);
+		Ed25519Key key = new Ed25519Key();
+		this.ownNode.setPrivateKey(key.getPrivateKey());
+		this.ownNode.setPublicKey(key.getPublicKey());
+		Block genesisBlock = TestHelper.generateGenesis(this.ownNode, RECEIVERS, 1000);
+		this.localStore = spy(new LocalStore(this.ownNode, null, genesisBlock, false));
+
+		this.receivers = new ArrayList<>();
+		for (int i = 1; i <= RECEIVERS; i++) {
+			Node node = new Node(i);
+			node.getChain().setGenesisBlock(genesisBlock);
+			this.localStore.getNodes().put(i, node);
+			this.receivers.add(node);
+		}
+
+		this.previous = this.ownNode.getChain().getGenesisTransaction();
+		this.socketClient = mock(SocketClient.class);
+		when(this.socketClient.sendMessageAsync(any(Node.class), any(Message.class)))
+				.thenReturn(CompletableFuture.completedFuture(true));
+		this.sender = new TransactionSender(this.localStore, this.socketClient);
+	}
+
+	/**
+	 * Stops the sender.
+	 */
+	@After
+	public void tearDown() {
+		this.sender.shutdownNow();
+	}
+
+	/**
+	 * Appends a block with a transaction to each of the given receivers, and commits it together
+	 * with an empty block, so that it can be sent.
+	 * @param to - the receivers
+	 * @return   - the transactions
+	 */
+	private List<Transaction> commitTransactions(Node... to) {
+		Block block = this.ownNode.getChain().appendNewBlock();
+		List<Transaction> transactions = new ArrayList<>();
+		for (Node receiver : to) {
+			long remainder = this.previous.getAmount() + this.previous.getRemainder() - 10;
+			if (this.previous.getReceiver() != this.ownNode) remainder = this.previous.getRemainder() - 10;
+			Transaction transaction = new Transaction(this.nextNumber++, this.ownNode, receiver, 10, remainder, this.previous);
+			block.addTransaction(transaction);
+			transactions.add(transaction);
+			this.previous = transaction;
+		}
+		block.commit(this.localStore);
+		this.ownNode.getChain().appendNewBlock().commit(this.localStore);
+		return transactions;
+	}
+
+	/**
+	 * Test for {@link TransactionSender#run()} where the sends to the same receiver are started
+	 * in the order in which they were added.
+	 */
+	@Test
+	public void testRun_InOrderPerReceiver() {
+		Node bob = this.receivers.get(0);
+		List<Transaction> transactions = commitTransactions(bob, bob);
+		this.sender.requestResend(bob, Arrays.asList(transactions.get(0).getNumber()));
+
+		this.sender.run();
+
+		ArgumentCaptor<Message> messages = ArgumentCaptor.forClass(Message.class);
+		verify(this.socketClient, times(2)).sendMessageAsync(eq(bob), messages.capture());
+		assertTrue(messages.getAllValues().get(0) instanceof BatchProofMessage);
+		assertTrue(messages.getAllValues().get(1) instanceof ProofMessage);
+	}
+
+	/**
+	 * Test for {@link TransactionSender#run()} where one receiver never receives its message.
+	 * The other receivers must still get theirs and the pass must not wait for the message.
+	 */
+	@Test(timeout = 4000)
+	public void testRun_StalledReceiver() {
+		Node stalled = this.receivers.get(0);
+		when(this.socketClient.sendMessageAsync(eq(stalled), any(Message.class))).thenReturn(new CompletableFuture<>());
+		commitTransactions(stalled, this.receivers.get(1), this.receivers.get(2));
+
+		this.sender.run();
+
+		verify(this.socketClient).sendMessageAsync(eq(this.receivers.get(1)), any(Message.class));
+		verify(this.socketClient).sendMessageAsync(eq(this.receivers.get(2)), any(Message.class));
+	}
+
+	/**
+	 * Test for {@link TransactionSender#run()} where the proofs of more receivers than there are
+	 * sender threads are constructed.
+	 */
+	@Test
+	public void testRun_BoundedThreads() {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		when(this.socketClient.sendMessageAsync(any(Node.class), any(Message.class))).thenAnswer(invocation -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			Thread.sleep(50);
+			running.decrementAndGet();
+			return CompletableFuture.completedFuture(true);
+		});
+		commitTransactions(this.receivers.toArray(new Node[0]));
+
+		this.sender.run();
+
+		verify(this.socketClient, times(RECEIVERS)).sendMessageAsync(any(Node.class), any(Message.class));
+		assertTrue(maxRunning.get() > 1);
+		assertTrue(maxRunning.get() <= SimulationMain.SENDER_THREADS);
+	}
+
+	/**
+	 * Test for {@link TransactionSender#run()} where the meta knowledge of the receiver is only
+	 * updated in a later send pass, and not by the thread that completes the send.
+	 */
+	@Test
+	public void testRun_MetaKnowledgeDeferred() {
+		Node bob = this.receivers.get(0);
+		CompletableFuture<Boolean> sent = new CompletableFuture<>();
+		when(this.socketClient.sendMessageAsync(eq(bob), any(Message.class))).thenReturn(sent);
+		List<Thread> updaters = new CopyOnWriteArrayList<>();
+		doAnswer(invocation -> {
+			updaters.add(Thread.currentThread());
+			return invocation.callRealMethod();
+		}).when(this.localStore).updateMetaKnowledge(eq(bob), anyMap());
+		commitTransactions(bob);
+
+		this.sender.run();
+		verify(this.localStore, never()).updateMetaKnowledge(eq(bob), anyMap());
+
+		sent.complete(true);
+		verify(this.localStore, timeout(TimeUnit.SECONDS.toMillis(2))).updateMetaKnowledge(eq(bob), anyMap());
+		assertEquals(1, updaters.size());
+		assertNotSame(Thread.currentThread(), updaters.get(0));
+	}
+
+	/**
+	 * Test for {@link TransactionSender#run()} where the receiver requests some of the transactions
+	 * of a batch again. The resend replaces the outstanding send of the whole batch, so that the
+	 * batch is not retransmitted again when it is not acknowledged in time.
+	 */
+	@Test
+	public void testRun_ResendReplacesOutstanding() {
+		this.localStore.setAcknowledgedDelivery(true);
+		Node bob = this.receivers.get(0);
+		List<Transaction> transactions = commitTransactions(bob, bob);
+		this.sender.run();
+
+		//The sender has started, so the request schedules a send pass of its own
+		this.sender.requestResend(bob, Arrays.asList(transactions.get(0).getNumber()));
+
+		ArgumentCaptor<Message> messages = ArgumentCaptor.forClass(Message.class);
+		verify(this.socketClient, timeout(TimeUnit.SECONDS.toMillis(2)).times(2)).sendMessageAsync(eq(bob), messages.capture());
+		BatchProofMessage resend = (BatchProofMessage) messages.getAllValues().get(1);
+		assertEquals(2, resend.getTransactionMessages().size());
+	}
+}
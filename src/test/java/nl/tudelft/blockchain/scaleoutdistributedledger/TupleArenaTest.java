@@ -0,0 +1,105 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for {@link TupleArena}.
+ */
+public class TupleArenaTest {
+	private static final int BASE_TUPLES = 70;
+
+	private TupleArena base;
+
+	/**
+	 * Creates a base arena where tuple {@code i} requires chain {@code i % 3} and has amount {@code i}.
+	 */
+	@Before
+	public void setUp() {
+		base = new TupleArena(1, 2, 4);
+		for (int i = 0; i < BASE_TUPLES; i++) {
+			long[] members = new long[2];
+			members[i >>> 6] = 1L << i;
+			assertTrue(base.add(new long[] {1L << (i % 3)}, members, i, 1));
+		}
+	}
+
+	/**
+	 * Test that the arena grows past its initial capacity.
+	 */
+	@Test
+	public void testGrow() {
+		assertEquals(BASE_TUPLES, base.getSize());
+		assertEquals(69, base.getAmount(69));
+		assertTrue(base.containsMember(69, 69));
+		assertFalse(base.containsMember(69, 5));
+	}
+
+	/**
+	 * Test that adding a tuple with the same members twice has no effect.
+	 */
+	@Test
+	public void testDuplicate() {
+		long[] members = new long[2];
+		members[1] = 1L << 1;
+
+		assertFalse(base.add(new long[] {1L}, members, 65, 1));
+		assertEquals(BASE_TUPLES, base.getSize());
+	}
+
+	/**
+	 * Test for combining tuples across words.
+	 */
+	@Test
+	public void testCombine() {
+		long[] chains = new long[1];
+		long[] members = new long[2];
+
+		assertEquals(2, base.combineChains(1, base, 66, chains));
+		base.combineMembers(1, base, 66, members);
+
+		assertEquals(0b011L, chains[0]);
+		assertEquals(67, base.amountOf(members));
+	}
+
+	/**
+	 * Test for {@link TupleArena#removeNotBetterThan(int)}.
+	 */
+	@Test
+	public void testRemoveNotBetterThan() {
+		TupleArena round = base.emptyCopy();
+		long[] chains = new long[1];
+		long[] members = new long[2];
+		for (int i = 0; i < 3; i++) {
+			int cardinality = base.combineChains(i, base, i + 3, chains);
+			base.combineMembers(i, base, i + 3, members);
+			round.add(chains, members, base.amountOf(members), cardinality + i);
+		}
+
+		round.removeNotBetterThan(2);
+		assertEquals(1, round.getSize());
+		assertEquals(3, round.getAmount(0));
+
+		//The remaining tuple should still be found after the removal
+		base.combineMembers(0, base, 3, members);
+		assertFalse(round.add(chains, members, 3, 1));
+	}
+
+	/**
+	 * Test for {@link TupleArena#copy()} and {@link TupleArena#clear()}.
+	 */
+	@Test
+	public void testCopyAndClear() {
+		TupleArena copy = base.copy();
+		assertEquals(BASE_TUPLES, copy.getSize());
+		assertFalse(copy.add(new long[] {1L}, base.getMembers(10), 10, 1));
+
+		copy.clear();
+		assertEquals(0, copy.getSize());
+		assertTrue(copy.add(new long[] {1L}, base.getMembers(10), 10, 1));
+	}
+}
@@ -3,6 +3,8 @@ package nl.tudelft.blockchain.scaleoutdistributedledger.model;
 import java.util.ArrayList;
 import java.util.List;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
@@ -72,4 +74,50 @@ public class ChainTest {
 		assertEquals(updateList, this.chain.getBlocks());
 	}
 	
+	/**
+	 * Test for {@link Chain#getTransaction(int)} after an update.
+	 */
+	@Test
+	public void testGetTransaction_Update() {
+		Node other = new Node(1);
+		Chain otherChain = other.getChain();
+		List<Transaction> transactions = new ArrayList<>();
+		transactions.add(new Transaction(3, other, this.ownNode, 10, 0));
+		transactions.add(new Transaction(4, other, this.ownNode, 20, 0));
+		List<Block> updateList = new ArrayList<>();
+		updateList.add(new Block(0, other, new ArrayList<>()));
+		updateList.add(new Block(1, other, transactions));
+		otherChain.update(updateList, localStore);
+		
+		assertSame(transactions.get(1), otherChain.getTransaction(4));
+		assertEquals(1, otherChain.getIndexedBlockNumber(4));
+		assertEquals(1, otherChain.getIndexedOffset(4));
+		assertSame(transactions.get(1), updateList.get(1).getTransaction(4));
+	}
+	
+	/**
+	 * Test for {@link Chain#getTransaction(int)} with a transaction that is not in the chain.
+	 */
+	@Test
+	public void testGetTransaction_Unknown() {
+		assertNull(this.ownNode.getChain().getTransaction(42));
+		assertEquals(-1, this.ownNode.getChain().getIndexedBlockNumber(42));
+	}
+	
+	/**
+	 * Test for {@link Chain#getTransaction(int)} with transactions added to our own chain.
+	 */
+	@Test
+	public void testGetTransaction_OwnChain() {
+		Chain ownChain = this.ownNode.getChain();
+		ownChain.setGenesisBlock(new Block(0, null, new ArrayList<>()));
+		Block block = ownChain.appendNewBlock();
+		Transaction transaction = new Transaction(7, this.ownNode, this.node, 10, 0);
+		block.addTransaction(transaction);
+		
+		assertSame(transaction, ownChain.getTransaction(7));
+		assertSame(transaction, this.localStore.getTransactionFromNode(0, 7));
+		assertEquals(1, transaction.getBlockNumber().getAsInt());
+	}
+	
 }
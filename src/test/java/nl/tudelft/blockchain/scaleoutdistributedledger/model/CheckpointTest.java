@@ -0,0 +1,163 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.test.utils.TestHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link Checkpoint} and {@link Chain#createCheckpoint(int)}.
+ */
+public class CheckpointTest {
+
+	private OwnNode ownNode;
+
+	private Node bobNode;
+
+	private Node charlieNode;
+
+	private LocalStore localStore;
+
+	private List<Transaction> transactions;
+
+	/**
+	 * Setup method.
+	 * Appends four blocks to the chain of bob, each spending the remainder of the previous one.
+	 * Only the second transaction transfers money, to charlie.
+	 */
+	@Before
+	public void setUp() {
+		this.ownNode = new OwnNode(0);
+		Block genesisBlock = TestHelper.generateGenesis(this.ownNode, 2, 1000);
+		this.localStore = new LocalStore(this.ownNode, null, genesisBlock, false);
+		this.localStore.getNodes().putAll(TestHelper.getNodeList(genesisBlock));
+		this.bobNode = this.localStore.getNode(1);
+		this.charlieNode = this.localStore.getNode(2);
+
+		this.transactions = new ArrayList<>();
+		List<Block> blocks = new ArrayList<>();
+		Transaction previous = this.bobNode.getChain().getGenesisTransaction();
+		for (long amount : new long[] {0, 10, 0, 0}) {
+			long remainder = previous.getAmount() + previous.getRemainder() - amount;
+			Transaction transaction = new Transaction(10 + blocks.size(), this.bobNode, this.charlieNode, amount, remainder,
+					new TreeSet<>(Collections.singleton(previous)));
+			this.transactions.add(transaction);
+			blocks.add(new Block(blocks.size() + 1, this.bobNode, new ArrayList<>(Arrays.asList(transaction))));
+			previous = transaction;
+		}
+		this.bobNode.getChain().update(blocks, this.localStore);
+	}
+
+	/**
+	 * Lets charlie spend the transfer to charlie in a new block in the chain of charlie.
+	 * @return - the transaction of charlie
+	 */
+	private Transaction charlieSpends() {
+		Transaction transfer = this.transactions.get(1);
+		Transaction spending = new Transaction(20, this.charlieNode, this.ownNode, 10, 0,
+				new TreeSet<>(Collections.singleton(transfer)));
+		Block block = new Block(1, this.charlieNode, new ArrayList<>(Arrays.asList(spending)));
+		this.charlieNode.getChain().update(new ArrayList<>(Arrays.asList(block)), this.localStore);
+		return spending;
+	}
+
+	/**
+	 * Test for {@link Chain#createCheckpoint(int)}.
+	 */
+	@Test
+	public void testCreateCheckpoint() {
+		Chain chain = this.bobNode.getChain();
+		Sha256Hash hash = chain.getBlocks().get(3).getHash();
+		Checkpoint checkpoint = chain.createCheckpoint(3);
+
+		assertEquals(3, checkpoint.getBlockNumber());
+		assertEquals(hash, checkpoint.getBlockHash());
+		assertEquals(1, checkpoint.getUnspent().size());
+		assertTrue(checkpoint.contains(this.transactions.get(1)));
+	}
+
+	/**
+	 * Test for {@link Chain#createCheckpoint(int)} pruning the blocks up to the checkpoint.
+	 */
+	@Test
+	public void testCreateCheckpoint_Pruned() {
+		Chain chain = this.bobNode.getChain();
+		chain.createCheckpoint(3);
+
+		assertTrue(chain.getBlocks().get(1).getTransactions().isEmpty());
+		assertTrue(chain.getBlocks().get(3).isPruned());
+		assertFalse(chain.getBlocks().get(4).isPruned());
+	}
+
+	/**
+	 * Test for {@link Chain#createCheckpoint(int)} keeping the unspent transactions.
+	 */
+	@Test
+	public void testCreateCheckpoint_Unspent() {
+		Chain chain = this.bobNode.getChain();
+		chain.createCheckpoint(3);
+
+		assertSame(this.transactions.get(1), chain.getTransaction(this.transactions.get(1).getNumber()));
+		assertTrue(Chain.isCheckpointed(this.transactions.get(1)));
+		assertFalse(Chain.isCheckpointed(this.transactions.get(3)));
+	}
+
+	/**
+	 * Test for {@link Chain#createCheckpoint(int)} when a transaction kept by an earlier checkpoint
+	 * has been spent since.
+	 */
+	@Test
+	public void testCreateCheckpoint_SpentSince() {
+		Chain chain = this.bobNode.getChain();
+		chain.createCheckpoint(3);
+		charlieSpends();
+
+		Checkpoint checkpoint = chain.createCheckpoint(4);
+		assertEquals(4, checkpoint.getBlockNumber());
+		assertTrue(checkpoint.contains(this.transactions.get(3)));
+		assertFalse(checkpoint.contains(this.transactions.get(1)));
+		assertTrue(chain.getBlocks().get(2).getTransactions().isEmpty());
+	}
+
+	/**
+	 * Test for {@link Chain#getSpender(Transaction, Node)}.
+	 */
+	@Test
+	public void testGetSpender() {
+		Chain chain = this.bobNode.getChain();
+		Transaction spending = charlieSpends();
+
+		assertEquals(spending.getNumber(), chain.getSpender(this.transactions.get(1), this.charlieNode));
+		assertEquals(this.transactions.get(2).getNumber(), chain.getSpender(this.transactions.get(1), this.bobNode));
+		assertEquals(-1, chain.getSpender(this.transactions.get(3), this.bobNode));
+		assertTrue(chain.isSpent(this.transactions.get(1)));
+		assertFalse(chain.isSpent(this.transactions.get(3)));
+	}
+
+	/**
+	 * Test for {@link LocalStore#updateCheckpoints(java.util.Collection)}.
+	 */
+	@Test
+	public void testUpdateCheckpoints() {
+		Chain chain = this.bobNode.getChain();
+		this.localStore.setCheckpointMargin(1);
+		this.localStore.updateCheckpoints(Arrays.asList(this.bobNode));
+		assertEquals(-1, chain.getCheckpointNumber());
+
+		this.charlieNode.getMetaKnowledge().put(this.bobNode.getId(), 4);
+		this.localStore.updateCheckpoints(Arrays.asList(this.bobNode));
+		assertEquals(3, chain.getCheckpointNumber());
+	}
+}
@@ -14,6 +14,7 @@ import org.junit.Test;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.Application;
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.ProofCache;
 import nl.tudelft.blockchain.scaleoutdistributedledger.ProofConstructor;
 import nl.tudelft.blockchain.scaleoutdistributedledger.test.utils.TestHelper;
 
@@ -256,4 +257,58 @@ public class ProofTest {
 		List<Block> expectedChain1Updates = Arrays.asList(node1Chain.getGenesisBlock(), node1Chain.getBlocks().get(1));
 		assertEquals(expectedChain1Updates, node1Updates);
 	}
+	
+	/**
+	 * Adds a block with a transaction from node 0 to node 2 to the scenario of {@link #basicScenario()}.
+	 * @param source - the source of the transaction
+	 * @return       - the new transaction
+	 */
+	private Transaction appendTransactionTo2(Transaction source) {
+		TreeSet<Transaction> sources = new TreeSet<>();
+		sources.add(source);
+		Transaction transaction = new Transaction(6, ownNode, storeSpy.getNode(2), 100, 700, sources);
+		Block block = ownNode.getChain().appendNewBlock();
+		block.addTransaction(transaction);
+		block.commit(storeSpy);
+		block.setNextCommittedBlock(block);
+		return transaction;
+	}
+	
+	/**
+	 * Test for constructing proofs with a {@link ProofCache}.
+	 */
+	@Test
+	public void testCreateProofWithCache() {
+		ProofCache cache = new ProofCache();
+		Transaction transaction = basicScenario();
+		Transaction first = ownNode.getChain().getBlocks().get(1).getTransactions().get(0);
+		
+		Proof proof1 = new ProofConstructor(transaction, cache).constructProof();
+		assertEquals(new ProofConstructor(transaction).constructProof().getChainUpdates(), proof1.getChainUpdates());
+		
+		//The next proof to node 2 should extend the cached closure
+		Transaction transaction2 = appendTransactionTo2(first);
+		Proof proof2 = new ProofConstructor(transaction2, cache).constructProof();
+		assertEquals(new ProofConstructor(transaction2).constructProof().getChainUpdates(), proof2.getChainUpdates());
+		assertEquals(ownNode.getChain().getBlocks(), proof2.getChainUpdates().get(ownNode));
+	}
+	
+	/**
+	 * Test that the {@link ProofCache} is not used when the meta knowledge of the receiver changed.
+	 */
+	@Test
+	public void testCreateProofWithCacheMetaKnowledgeChanged() {
+		ProofCache cache = new ProofCache();
+		Node node1 = storeSpy.getNode(1);
+		Transaction transaction = basicScenario();
+		Transaction first = ownNode.getChain().getBlocks().get(1).getTransactions().get(0);
+		new ProofConstructor(transaction, cache).constructProof();
+		
+		//Node 2 learns about the genesis of node 1
+		storeSpy.getNode(2).getMetaKnowledge().updateLastKnownBlockNumber(node1, 0);
+		
+		Transaction transaction2 = appendTransactionTo2(first);
+		Proof proof = new ProofConstructor(transaction2, cache).constructProof();
+		assertEquals(Arrays.asList(node1.getChain().getLastBlock()), proof.getChainUpdates().get(node1));
+	}
 }
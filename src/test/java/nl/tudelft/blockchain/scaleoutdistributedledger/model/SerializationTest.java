@@ -1,15 +1,35 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger.model;
 
 import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.AcknowledgementMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.BatchProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.exceptions.UnknownBlockException;
 import nl.tudelft.blockchain.scaleoutdistributedledger.message.BlockMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.HeightAdvertisementMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.MessageCodec;
 import nl.tudelft.blockchain.scaleoutdistributedledger.message.ProofMessage;
 import nl.tudelft.blockchain.scaleoutdistributedledger.message.TransactionMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.StartTransactingMessage;
 import nl.tudelft.blockchain.scaleoutdistributedledger.simulation.tendermint.TendermintHelper;
+import nl.tudelft.blockchain.scaleoutdistributedledger.sockets.MessageDecoder;
+import nl.tudelft.blockchain.scaleoutdistributedledger.sockets.MessageEncoder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static org.junit.Assert.*;
 
@@ -231,4 +251,194 @@ public class SerializationTest {
 		assertEquals(originalBlock, decodedBlock);
 	}
 	
+	/**
+	 * Test the encoding and decoding of a {@link BatchProofMessage}.
+	 * @throws IOException - error while getting nodes from tracker
+	 */
+	@Test
+	public void testBatchProofMessage_Valid() throws IOException {
+		// Send another 20 coins from Bob to Alice, in the same block
+		Transaction transaction2 = generateTransaction(this.bobNode, this.aliceNode, 20, this.genesisBlock.getTransactions().get(1));
+		
+		// Encode both transactions with the chain updates of the proof (from Bob to Alice)
+		BatchProofMessage batchMessage = new BatchProofMessage(Arrays.asList(this.transaction, transaction2), this.proof.getChainUpdates());
+		// Decode on Alice node
+		List<Proof> decodedProofs = Proof.decodeBatch(batchMessage, this.aliceLocalStore);
+		
+		assertEquals(2, decodedProofs.size());
+		assertEquals(this.transaction, decodedProofs.get(0).getTransaction());
+		assertEquals(transaction2, decodedProofs.get(1).getTransaction());
+		// The chain updates are decoded only once
+		assertEquals(this.proof.getChainUpdates(), decodedProofs.get(0).getChainUpdates());
+		assertSame(decodedProofs.get(0).getChainUpdates(), decodedProofs.get(1).getChainUpdates());
+	}
+	
+	/**
+	 * Encodes the given message with the binary codec and decodes it again.
+	 * @param message - the message
+	 * @return        - the decoded message
+	 * @throws IOException - If encoding or decoding fails.
+	 */
+	private Message roundTrip(Message message) throws IOException {
+		ByteBuf buffer = Unpooled.buffer();
+		try {
+			MessageCodec.encode(message, buffer);
+			Message decoded = MessageCodec.decode(buffer);
+			assertEquals(0, buffer.readableBytes());
+			return decoded;
+		} finally {
+			buffer.release();
+		}
+	}
+	
+	/**
+	 * Test that a {@link ProofMessage} survives the binary codec and can still be decoded into the same proof.
+	 * @throws IOException - error while encoding or decoding
+	 */
+	@Test
+	public void testProofMessage_BinaryRoundTrip() throws IOException {
+		ProofMessage original = new ProofMessage(this.proof);
+		ProofMessage decoded = (ProofMessage) roundTrip(original);
+		
+		assertEquals(original.getTransactionMessage(), decoded.getTransactionMessage());
+		assertEquals(original.getChainUpdates().keySet(), decoded.getChainUpdates().keySet());
+		
+		Proof decodedProof = new Proof(decoded, this.aliceLocalStore);
+		assertEquals(this.proof.getTransaction(), decodedProof.getTransaction());
+		assertEquals(this.proof.getChainUpdates(), decodedProof.getChainUpdates());
+	}
+	
+	/**
+	 * Test that blocks we already have are not decoded again, but replaced by our own blocks.
+	 * @throws IOException - error while encoding or decoding
+	 */
+	@Test
+	public void testProofMessage_SkipsKnownBlocks() throws IOException {
+		new Proof((ProofMessage) roundTrip(new ProofMessage(this.proof)), this.aliceLocalStore).applyUpdates(this.aliceLocalStore);
+		
+		Proof decodedProof = new Proof((ProofMessage) roundTrip(new ProofMessage(this.proof)), this.aliceLocalStore);
+		Node bobView = this.aliceLocalStore.getNode(this.bobNode.getId());
+		List<Block> updates = decodedProof.getChainUpdates().get(bobView);
+		assertSame(bobView.getChain().getBlocks().get(1), updates.get(0));
+		assertSame(bobView.getChain().getLastBlock(), updates.get(updates.size() - 1));
+		assertTrue(decodedProof.getChainView(bobView).isValid());
+		assertEquals(this.proof.getTransaction(), decodedProof.getTransaction());
+	}
+	
+	/**
+	 * Test that referenced blocks are resolved with our own blocks.
+	 * @throws IOException - error while encoding or decoding
+	 */
+	@Test
+	public void testProofMessage_References() throws IOException {
+		new Proof((ProofMessage) roundTrip(new ProofMessage(this.proof)), this.aliceLocalStore).applyUpdates(this.aliceLocalStore);
+		
+		ProofMessage decoded = (ProofMessage) roundTrip(new ProofMessage(this.proof, Collections.singleton(this.bobNode)));
+		assertTrue(decoded.getChainUpdates().get(this.bobNode.getId()).get(0).isReference());
+		
+		Proof decodedProof = new Proof(decoded, this.aliceLocalStore);
+		Node bobView = this.aliceLocalStore.getNode(this.bobNode.getId());
+		assertSame(bobView.getChain().getLastBlock(), decodedProof.getChainUpdates().get(bobView).get(1));
+		assertTrue(decodedProof.getChainView(bobView).isValid());
+	}
+	
+	/**
+	 * Test that a proof cannot be decoded if it references a block that we do not have.
+	 * @throws IOException - error while encoding or decoding
+	 */
+	@Test(expected = UnknownBlockException.class)
+	public void testProofMessage_UnknownReference() throws IOException {
+		ProofMessage decoded = (ProofMessage) roundTrip(new ProofMessage(this.proof, Collections.singleton(this.bobNode)));
+		new Proof(decoded, this.aliceLocalStore);
+	}
+	
+	/**
+	 * Test that a {@link HeightAdvertisementMessage} survives the binary codec.
+	 * @throws IOException - error while encoding or decoding
+	 */
+	@Test
+	public void testHeightAdvertisementMessage_BinaryRoundTrip() throws IOException {
+		Map<Integer, Integer> heights = new HashMap<>();
+		heights.put(1, 2);
+		heights.put(2, 300);
+		HeightAdvertisementMessage decoded = (HeightAdvertisementMessage) roundTrip(new HeightAdvertisementMessage(0, heights));
+		
+		assertEquals(0, decoded.getSenderId());
+		assertEquals(heights, decoded.getHeights());
+	}
+	
+	/**
+	 * Test that an {@link AcknowledgementMessage} survives the binary codec.
+	 * @throws IOException - error while encoding or decoding
+	 */
+	@Test
+	public void testAcknowledgementMessage_BinaryRoundTrip() throws IOException {
+		AcknowledgementMessage original = new AcknowledgementMessage(1, Arrays.asList(11, 12), Arrays.asList(13),
+				Collections.singletonMap(2, 5));
+		AcknowledgementMessage decoded = (AcknowledgementMessage) roundTrip(original);
+		
+		assertEquals(1, decoded.getReceiverId());
+		assertEquals(original.getAccepted(), decoded.getAccepted());
+		assertEquals(original.getRejected(), decoded.getRejected());
+		assertEquals(original.getHeights(), decoded.getHeights());
+	}
+	
+	/**
+	 * Test that a {@link BatchProofMessage} survives the binary codec.
+	 * @throws IOException - error while encoding or decoding
+	 */
+	@Test
+	public void testBatchProofMessage_BinaryRoundTrip() throws IOException {
+		Transaction transaction2 = generateTransaction(this.bobNode, this.aliceNode, 20, this.genesisBlock.getTransactions().get(1));
+		BatchProofMessage original = new BatchProofMessage(Arrays.asList(this.transaction, transaction2), this.proof.getChainUpdates());
+		BatchProofMessage decoded = (BatchProofMessage) roundTrip(original);
+		
+		assertEquals(original.getTransactionMessages(), decoded.getTransactionMessages());
+		
+		List<Proof> decodedProofs = Proof.decodeBatch(decoded, this.aliceLocalStore);
+		assertEquals(this.transaction, decodedProofs.get(0).getTransaction());
+		assertEquals(transaction2, decodedProofs.get(1).getTransaction());
+		assertEquals(this.proof.getChainUpdates(), decodedProofs.get(0).getChainUpdates());
+	}
+	
+	/**
+	 * Test that the genesis block, which has negative ids, survives the binary codec.
+	 * @throws IOException - error while encoding or decoding
+	 */
+	@Test
+	public void testGenesisBlockMessage_BinaryRoundTrip() throws IOException {
+		BlockMessage original = new BlockMessage(this.genesisBlock);
+		BlockMessage decoded = (BlockMessage) roundTrip(original);
+		
+		assertEquals(-1, decoded.getPreviousBlockNumber());
+		assertEquals(Transaction.GENESIS_SENDER, decoded.getOwnerId());
+		assertEquals(original.getHash(), decoded.getHash());
+		assertEquals(original.getTransactions(), decoded.getTransactions());
+	}
+	
+	/**
+	 * Test that messages written by the {@link MessageEncoder} are read back by the {@link MessageDecoder},
+	 * also when they arrive in multiple parts.
+	 */
+	@Test
+	public void testMessageEncoderDecoder_Fragmented() {
+		EmbeddedChannel out = new EmbeddedChannel(new MessageEncoder());
+		assertTrue(out.writeOutbound(new ProofMessage(this.proof), new StartTransactingMessage()));
+		ByteBuf frames = Unpooled.buffer();
+		for (ByteBuf frame = out.readOutbound(); frame != null; frame = out.readOutbound()) {
+			frames.writeBytes(frame);
+			frame.release();
+		}
+		
+		EmbeddedChannel in = new EmbeddedChannel(new MessageDecoder(1024 * 1024));
+		while (frames.isReadable()) {
+			in.writeInbound(frames.readRetainedSlice(Math.min(7, frames.readableBytes())));
+		}
+		frames.release();
+		
+		ProofMessage proofMessage = in.readInbound();
+		assertEquals(new TransactionMessage(this.transaction), proofMessage.getTransactionMessage());
+		assertTrue(in.readInbound() instanceof StartTransactingMessage);
+		assertNull(in.readInbound());
+	}
 }
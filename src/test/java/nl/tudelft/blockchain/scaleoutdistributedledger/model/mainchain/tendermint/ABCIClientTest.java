@@ -10,6 +10,7 @@ import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -73,6 +74,68 @@ public class ABCIClientTest extends SilencedTestClass {
 		assertNull(instance.commit(abs));
 	}
 
+	/**
+	 * Test a successful asynchronous commit.
+	 */
+	@Test
+	public void testCommitAsyncSuccess() {
+		String hash = "AAFF";
+		BlockAbstract abs = new BlockAbstract(0, 0, null, null);
+		JSONObject json = new JSONObject();
+		JSONObject result = new JSONObject();
+		json.put("result", result);
+		result.put("code", 0);
+		result.put("hash", hash);
+
+		doReturn(json).when(instance).sendRequest(eq("broadcast_tx_sync"), any());
+		assertArrayEquals(Utils.hexStringToBytes(hash), instance.commitAsync(abs));
+	}
+
+	/**
+	 * Test an asynchronous commit of an abstract that Tendermint rejects.
+	 */
+	@Test
+	public void testCommitAsyncRejected() {
+		BlockAbstract abs = new BlockAbstract(0, 0, null, null);
+		JSONObject json = new JSONObject();
+		JSONObject result = new JSONObject();
+		json.put("result", result);
+		result.put("code", 1);
+		result.put("hash", "AAFF");
+
+		doReturn(json).when(instance).sendRequest(anyString(), any());
+		assertNull(instance.commitAsync(abs));
+	}
+
+	/**
+	 * Test getting the heights with transactions from the block metas.
+	 */
+	@Test
+	public void testGetHeightsWithTransactions() {
+		JSONArray metas = new JSONArray();
+		long[][] headers = {{3, 1}, {2, 0}, {1, 4}};
+		for (long[] values : headers) {
+			JSONObject header = new JSONObject();
+			header.put("height", values[0]);
+			header.put("num_txs", values[1]);
+			metas.put(new JSONObject().put("header", header));
+		}
+		JSONObject json = new JSONObject();
+		json.put("result", new JSONObject().put("block_metas", metas));
+
+		doReturn(json).when(instance).sendRequest(eq("blockchain"), any());
+		assertEquals(Arrays.asList(1L, 3L), instance.getHeightsWithTransactions(1, 3));
+	}
+
+	/**
+	 * Test getting the heights with transactions on a failing connection.
+	 */
+	@Test
+	public void testGetHeightsWithTransactionsFail() {
+		doReturn(null).when(instance).sendRequest(anyString(), any());
+		assertNull(instance.getHeightsWithTransactions(1, 3));
+	}
+
 	/**
 	 * Test a successful query.
 	 */
@@ -16,9 +16,12 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -46,6 +49,8 @@ public class TendermintChainTest extends SilencedTestClass {
 
 		when(appMock.getLocalStore()).thenReturn(localStoreMock);
 		when(localStoreMock.getOwnNode()).thenReturn(new OwnNode(0));
+		//Unless stubbed otherwise, every height is queried
+		when(clientMock.getHeightsWithTransactions(anyLong(), anyLong())).thenReturn(null);
 
 		instance = new TendermintChain(clientMock, socketMock, cache, appMock);
 	}
@@ -94,6 +99,66 @@ public class TendermintChainTest extends SilencedTestClass {
 		assertEquals(2, instance.getCurrentHeight());
 	}
 
+	/**
+	 * Test that commit listeners are notified when new abstracts are added to the cache.
+	 */
+	@Test
+	public void testUpdateCache_NotifiesCommitListeners() {
+		JSONObject json = new JSONObject();
+		json.put("latest_block_height", 1L);
+		when(clientMock.status()).thenReturn(json);
+		List<BlockAbstract> abss = new ArrayList<>();
+		abss.add(new BlockAbstract(0, 0, Sha256Hash.withHash(Utils.hexStringToBytes("FF77")), null));
+		when(clientMock.query(1L)).thenReturn(abss);
+		Runnable listener = mock(Runnable.class);
+		Runnable removed = mock(Runnable.class);
+		instance.addCommitListener(listener);
+		instance.addCommitListener(removed);
+		instance.removeCommitListener(removed);
+
+		instance.initialUpdateCache();
+
+		verify(listener, times(1)).run();
+		verify(removed, never()).run();
+	}
+
+	/**
+	 * Test that commit listeners are not notified if there are no new abstracts.
+	 */
+	@Test
+	public void testUpdateCache_NothingNew() {
+		JSONObject json = new JSONObject();
+		json.put("latest_block_height", 0L);
+		when(clientMock.status()).thenReturn(json);
+		Runnable listener = mock(Runnable.class);
+		instance.addCommitListener(listener);
+
+		instance.initialUpdateCache();
+
+		verify(listener, never()).run();
+	}
+
+	/**
+	 * Test that updating the cache only queries the heights that have transactions.
+	 */
+	@Test
+	public void testUpdateCache_SkipsEmptyHeights() {
+		JSONObject json = new JSONObject();
+		json.put("latest_block_height", 25L);
+		when(clientMock.status()).thenReturn(json);
+		when(clientMock.getHeightsWithTransactions(1L, 20L)).thenReturn(Arrays.asList(2L, 7L));
+		when(clientMock.getHeightsWithTransactions(21L, 25L)).thenReturn(Arrays.asList(25L));
+		List<BlockAbstract> abss = new ArrayList<>();
+		abss.add(new BlockAbstract(0, 0, Sha256Hash.withHash(Utils.hexStringToBytes("FF88")), null));
+		when(clientMock.query(anyLong())).thenReturn(abss);
+
+		instance.initialUpdateCache();
+
+		verify(clientMock, times(3)).query(anyLong());
+		verify(clientMock).query(25L);
+		assertEquals(25, instance.getCurrentHeight());
+	}
+
 	/**
 	 * Test if stopping stops the socket.
 	 */
@@ -130,6 +195,42 @@ public class TendermintChainTest extends SilencedTestClass {
 		assertNull(instance.commitAbstract(abs));
 	}
 
+	/**
+	 * Test that an asynchronous commit completes once the abstract is on the main chain.
+	 * @throws Exception - If the commit does not complete.
+	 */
+	@Test
+	public void testCommitAbstractAsync() throws Exception {
+		Sha256Hash blockHash = Sha256Hash.withHash(Utils.hexStringToBytes("11FF"));
+		BlockAbstract abs = new BlockAbstract(0, 0, blockHash, null);
+		when(clientMock.commitAsync(abs)).thenReturn(Utils.hexStringToBytes("FF11"));
+
+		CompletableFuture<Sha256Hash> future = instance.commitAbstractAsync(abs);
+		verify(clientMock, timeout(1000)).commitAsync(abs);
+
+		JSONObject json = new JSONObject();
+		json.put("latest_block_height", 1L);
+		when(clientMock.status()).thenReturn(json);
+		List<BlockAbstract> abss = new ArrayList<>();
+		abss.add(new BlockAbstract(0, 0, blockHash, null));
+		when(clientMock.query(1L)).thenReturn(abss);
+		instance.initialUpdateCache();
+
+		assertEquals(Sha256Hash.withHash(Utils.hexStringToBytes("FF11")), future.get(1, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Test an asynchronous commit that Tendermint does not accept.
+	 * @throws Exception - If the commit does not complete.
+	 */
+	@Test
+	public void testCommitAbstractAsyncFail() throws Exception {
+		BlockAbstract abs = new BlockAbstract(0, 0, Sha256Hash.withHash(Utils.hexStringToBytes("11FF")), null);
+		when(clientMock.commitAsync(abs)).thenReturn(null);
+
+		assertNull(instance.commitAbstractAsync(abs).get(1, TimeUnit.SECONDS));
+	}
+
 	/**
 	 * Test isPresent when the data is in the cache.
 	 */
@@ -0,0 +1,222 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.sockets;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelId;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
+
+/**
+ * Test class for {@link MessageHandlerStage}.
+ */
+public class MessageHandlerStageTest {
+
+	private LocalStore localStore;
+	private MessageHandlerStage stage;
+
+	/**
+	 * Setup method.
+	 */
+	@Before
+	public void setUp() {
+		localStore = mock(LocalStore.class);
+		when(localStore.getOwnNode()).thenReturn(new OwnNode(0));
+		stage = new MessageHandlerStage(localStore, 2, 16);
+	}
+
+	/**
+	 * Stops the workers.
+	 */
+	@After
+	public void tearDown() {
+		stage.shutdown();
+	}
+
+	/**
+	 * @param action - the action to run when the message is handled
+	 * @return       - a message which runs the given action
+	 */
+	private static Message message(Consumer<LocalStore> action) {
+		return new Message() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void handle(LocalStore localStore) {
+				action.accept(localStore);
+			}
+		};
+	}
+
+	/**
+	 * @param id - the hash code of the id of the channel, which determines its stripe
+	 * @return   - a mocked channel
+	 */
+	private static Channel channel(int id) {
+		Channel channel = mock(Channel.class);
+		when(channel.id()).thenReturn(new TestChannelId(id));
+		when(channel.config()).thenReturn(mock(ChannelConfig.class));
+		return channel;
+	}
+
+	/**
+	 * Test that messages from the same connection are handled in order.
+	 * @throws InterruptedException - If interrupted while waiting.
+	 */
+	@Test
+	public void testSubmit_Ordered() throws InterruptedException {
+		Channel channel = channel(0);
+		List<Integer> order = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(100);
+		for (int i = 0; i < 100; i++) {
+			int nr = i;
+			stage.submit(message(ls -> {
+				order.add(nr);
+				done.countDown();
+			}), channel);
+		}
+		
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, (int) order.get(i));
+		}
+		assertEquals(0, stage.getQueueDepth());
+	}
+
+	/**
+	 * Test that a slow message does not stop messages on other stripes from being handled.
+	 * @throws InterruptedException - If interrupted while waiting.
+	 */
+	@Test
+	public void testSubmit_SlowMessageOtherStripe() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch handled = new CountDownLatch(1);
+		stage.submit(message(ls -> {
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}), channel(0));
+		stage.submit(message(ls -> handled.countDown()), channel(1));
+		
+		assertTrue(handled.await(10, TimeUnit.SECONDS));
+		release.countDown();
+	}
+
+	/**
+	 * Test that exceptions while handling are caught and that the metrics are updated.
+	 * @throws InterruptedException - If interrupted while waiting.
+	 */
+	@Test
+	public void testSubmit_Metrics() throws InterruptedException {
+		CountDownLatch handled = new CountDownLatch(1);
+		Channel channel = channel(0);
+		stage.submit(message(ls -> {
+			throw new IllegalStateException("Test");
+		}), channel);
+		stage.submit(message(ls -> handled.countDown()), channel);
+		
+		assertTrue(handled.await(10, TimeUnit.SECONDS));
+		//The metrics are updated after the message has been handled
+		long deadline = System.currentTimeMillis() + 10000;
+		while (stage.getHandledMessages() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, stage.getHandledMessages());
+		assertTrue(stage.getMaxHandlingTime() >= stage.getAverageHandlingTime());
+	}
+
+	/**
+	 * Test that reading from a channel is paused instead of blocking when the queue is full, and
+	 * that it is resumed once the queue has drained.
+	 * @throws InterruptedException - If interrupted while waiting.
+	 */
+	@Test
+	public void testSubmit_QueueFull() throws InterruptedException {
+		Channel channel = channel(0);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		stage.submit(message(ls -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}), channel);
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		
+		for (int i = 0; i < 15; i++) {
+			stage.submit(message(ls -> { }), channel);
+		}
+		verify(channel.config(), never()).setAutoRead(false);
+		
+		stage.submit(message(ls -> { }), channel);
+		verify(channel.config()).setAutoRead(false);
+		assertEquals(1, stage.getPausedChannels());
+		
+		release.countDown();
+		verify(channel.config(), timeout(10000)).setAutoRead(true);
+		assertEquals(0, stage.getPausedChannels());
+	}
+
+	/**
+	 * Channel id with a fixed hash code.
+	 */
+	private static class TestChannelId implements ChannelId {
+		private static final long serialVersionUID = 1L;
+
+		private final int id;
+
+		/**
+		 * @param id - the hash code of this id
+		 */
+		TestChannelId(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public String asShortText() {
+			return Integer.toString(id);
+		}
+
+		@Override
+		public String asLongText() {
+			return Integer.toString(id);
+		}
+
+		@Override
+		public int compareTo(ChannelId other) {
+			return asLongText().compareTo(other.asLongText());
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof TestChannelId && ((TestChannelId) obj).id == id;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.sockets;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.Message;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.StartTransactingMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.StopTransactingMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+
+/**
+ * Test class for {@link SocketClient}.
+ */
+public class SocketClientTest {
+	private static final String LOCALHOST = InetAddress.getLoopbackAddress().getHostAddress();
+
+	private EventLoopGroup serverGroup;
+	private Channel serverChannel;
+	private BlockingQueue<Message> received;
+	private SocketClient client;
+	private Node node;
+
+	/**
+	 * Starts a server which collects all messages it receives.
+	 * @throws InterruptedException - If binding is interrupted.
+	 */
+	@Before
+	public void setUp() throws InterruptedException {
+		received = new LinkedBlockingQueue<>();
+		serverGroup = new NioEventLoopGroup(1);
+		serverChannel = new ServerBootstrap()
+				.group(serverGroup)
+				.channel(NioServerSocketChannel.class)
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel socketChannel) {
+						socketChannel.pipeline().addLast(new MessageDecoder(SocketServer.MAX_MESSAGE_SIZE), new ChannelInboundHandlerAdapter() {
+							@Override
+							public void channelRead(ChannelHandlerContext ctx, Object msg) {
+								received.add((Message) msg);
+							}
+						});
+					}
+				})
+				.bind(LOCALHOST, 0).sync().channel();
+		
+		int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+		node = new Node(1, null, LOCALHOST, port);
+		client = new SocketClient();
+	}
+
+	/**
+	 * Stops the client and the server.
+	 */
+	@After
+	public void tearDown() {
+		client.shutdown();
+		serverChannel.close();
+		serverGroup.shutdownGracefully();
+	}
+
+	/**
+	 * Test that many messages sent without waiting all arrive, in order.
+	 * @throws Exception - If sending fails.
+	 */
+	@Test
+	public void testSendMessageAsync_Ordered() throws Exception {
+		List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			Message msg = i % 2 == 0 ? new StartTransactingMessage() : new StopTransactingMessage();
+			futures.add(client.sendMessageAsync(node, msg));
+		}
+		
+		for (CompletableFuture<Boolean> future : futures) {
+			assertTrue(future.get(10, TimeUnit.SECONDS));
+		}
+		
+		for (int i = 0; i < 100; i++) {
+			Message msg = received.poll(10, TimeUnit.SECONDS);
+			assertTrue(i % 2 == 0 ? msg instanceof StartTransactingMessage : msg instanceof StopTransactingMessage);
+		}
+		assertEquals(0, client.getQueuedMessages(node));
+	}
+
+	/**
+	 * Test that the blocking send reuses the connection.
+	 * @throws Exception - If sending fails.
+	 */
+	@Test
+	public void testSendMessage_Blocking() throws Exception {
+		assertTrue(client.sendMessage(node, new StartTransactingMessage()));
+		assertTrue(client.sendMessage(node, new StopTransactingMessage()));
+		assertTrue(received.poll(10, TimeUnit.SECONDS) instanceof StartTransactingMessage);
+		assertTrue(received.poll(10, TimeUnit.SECONDS) instanceof StopTransactingMessage);
+	}
+
+	/**
+	 * Test that sending to a node which is not listening fails instead of blocking.
+	 * @throws Exception - If waiting is interrupted.
+	 */
+	@Test
+	public void testSendMessageAsync_ConnectionRefused() throws Exception {
+		int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+		serverChannel.close().sync();
+		Node offline = new Node(2, null, LOCALHOST, port);
+		
+		assertFalse(client.sendMessageAsync(offline, new StartTransactingMessage()).get(10, TimeUnit.SECONDS));
+		assertEquals(0, client.getQueuedMessages(offline));
+	}
+
+	/**
+	 * Test that messages to a peer whose queue is full are rejected, while other peers can still
+	 * be sent to.
+	 * @throws Exception - If sending fails.
+	 */
+	@Test
+	public void testSendMessageAsync_QueueFull() throws Exception {
+		//Block the only event loop of the client, so that no queued message is written
+		EventLoopGroup clientGroup = new NioEventLoopGroup(1);
+		CountDownLatch release = new CountDownLatch(1);
+		clientGroup.execute(() -> {
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		client.shutdown();
+		client = new SocketClient(clientGroup);
+		Node other = new Node(2, null, LOCALHOST, node.getPort());
+		
+		List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+		for (int i = 0; i < SocketClient.MAX_QUEUED_MESSAGES; i++) {
+			futures.add(client.sendMessageAsync(node, new StartTransactingMessage()));
+		}
+		assertEquals(SocketClient.MAX_QUEUED_MESSAGES, client.getQueuedMessages(node));
+		
+		CompletableFuture<Boolean> rejected = client.sendMessageAsync(node, new StartTransactingMessage());
+		assertTrue(rejected.isCompletedExceptionally());
+		try {
+			rejected.get();
+			fail("The message should have been rejected");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof RejectedExecutionException);
+		}
+		assertEquals(SocketClient.MAX_QUEUED_MESSAGES, client.getQueuedMessages(node));
+		
+		CompletableFuture<Boolean> toOther = client.sendMessageAsync(other, new StopTransactingMessage());
+		assertFalse(toOther.isDone());
+		assertEquals(1, client.getQueuedMessages(other));
+		
+		release.countDown();
+		assertTrue(toOther.get(10, TimeUnit.SECONDS));
+		for (CompletableFuture<Boolean> future : futures) {
+			assertTrue(future.get(10, TimeUnit.SECONDS));
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Sha256Hash;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.test.utils.TestHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link BlockArchive}.
+ */
+public class BlockArchiveTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private OwnNode ownNode;
+
+	private Node bobNode;
+
+	private Node charlieNode;
+
+	private LocalStore localStore;
+
+	private BlockArchive archive;
+
+	/**
+	 * Setup method.
+	 * @throws IOException - If the archive cannot be created.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.ownNode = new OwnNode(0);
+		Block genesisBlock = TestHelper.generateGenesis(this.ownNode, 2, 1000);
+		this.localStore = new LocalStore(this.ownNode, null, genesisBlock, false);
+		this.localStore.getNodes().putAll(TestHelper.getNodeList(genesisBlock));
+		this.bobNode = this.localStore.getNode(1);
+		this.charlieNode = this.localStore.getNode(2);
+
+		this.archive = new BlockArchive(folder.newFile().toPath(), this.localStore, 1, 1, 256);
+		this.localStore.setBlockArchive(this.archive);
+	}
+
+	/**
+	 * Cleanup method.
+	 * @throws IOException - If the archive cannot be closed.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		this.archive.close();
+	}
+
+	/**
+	 * Appends blocks with one transaction each to the chain of bob. Every transaction spends the
+	 * remainder of the previous one.
+	 * @param receivers - the receiver of the transaction in every block
+	 * @return          - the appended blocks
+	 */
+	private List<Block> appendBlocks(Node... receivers) {
+		List<Block> blocks = new ArrayList<>();
+		Transaction previous = this.bobNode.getChain().getGenesisTransaction();
+		int number = 10;
+		for (Node receiver : receivers) {
+			List<Transaction> transactions = new ArrayList<>();
+			Transaction transaction = new Transaction(number++, this.bobNode, receiver, 10, previous.getAmount() + previous.getRemainder() - 10, previous);
+			transactions.add(transaction);
+			blocks.add(new Block(blocks.size() + 1, this.bobNode, transactions));
+			previous = transaction;
+		}
+		this.bobNode.getChain().update(blocks, this.localStore);
+		return blocks;
+	}
+
+	/**
+	 * Test for archiving old blocks when a chain is updated.
+	 */
+	@Test
+	public void testArchiveOldBlocks() {
+		List<Block> blocks = appendBlocks(charlieNode, charlieNode, ownNode, charlieNode, charlieNode);
+
+		assertTrue(blocks.get(0).isArchived());
+		assertTrue(blocks.get(1).isArchived());
+		assertTrue(blocks.get(3).isArchived());
+		assertEquals(3, this.archive.getArchivedBlocks());
+	}
+
+	/**
+	 * Test for archiving old blocks when a chain is updated, where blocks with transactions to us
+	 * and recent blocks are kept in memory.
+	 */
+	@Test
+	public void testArchiveOldBlocks_Kept() {
+		List<Block> blocks = appendBlocks(charlieNode, charlieNode, ownNode, charlieNode, charlieNode);
+
+		assertFalse(blocks.get(2).isArchived());
+		assertFalse(blocks.get(4).isArchived());
+	}
+
+	/**
+	 * Test for loading the transactions of archived blocks.
+	 */
+	@Test
+	public void testLoad() {
+		List<Block> blocks = appendBlocks(charlieNode, charlieNode, charlieNode, charlieNode);
+		Transaction original = this.bobNode.getChain().getBlocks().get(4).getTransactions().get(0).getSource().first();
+
+		Transaction loaded = blocks.get(2).getTransactions().get(0);
+		assertNotSame(original, loaded);
+		assertEquals(original, loaded);
+		assertEquals(original.getHash(), loaded.getHash());
+		assertEquals(3, loaded.getBlockNumber().getAsInt());
+	}
+
+	/**
+	 * Test for loading the sources of the transactions of archived blocks.
+	 */
+	@Test
+	public void testLoad_Sources() {
+		List<Block> blocks = appendBlocks(charlieNode, charlieNode, charlieNode, charlieNode);
+		Sha256Hash hash = blocks.get(1).getHash();
+
+		Transaction loaded = blocks.get(2).getTransactions().get(0);
+		assertEquals(hash, blocks.get(1).getHash());
+		assertEquals(blocks.get(1).getTransactions().get(0), loaded.getSource().first());
+	}
+
+	/**
+	 * Test for the cache of loaded blocks.
+	 */
+	@Test
+	public void testLoad_Cache() {
+		List<Block> blocks = appendBlocks(charlieNode, charlieNode, charlieNode, charlieNode);
+
+		Transaction first = blocks.get(0).getTransactions().get(0);
+		assertEquals(first, blocks.get(0).getTransactions().get(0));
+		assertEquals(1, this.archive.getCacheMisses());
+
+		blocks.get(1).getTransactions();
+		blocks.get(0).getTransactions();
+		assertEquals(3, this.archive.getCacheMisses());
+	}
+}
@@ -0,0 +1,252 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.storage;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.CommunicationHelper;
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.ProofConstructor;
+import nl.tudelft.blockchain.scaleoutdistributedledger.TransactionCreator;
+import nl.tudelft.blockchain.scaleoutdistributedledger.message.ProofMessage;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Chain;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Ed25519Key;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.simulation.tendermint.TendermintHelper;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link BlockStore}.
+ */
+public class BlockStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Block genesisBlock;
+
+	private LocalStore aliceStore;
+
+	private LocalStore bobStore;
+
+	private BlockStore blockStore;
+
+	private Transaction sent;
+
+	private Transaction received;
+
+	/**
+	 * Setup method.
+	 * @throws IOException - If the block store cannot be created.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		Map<Integer, Node> nodes = new HashMap<>();
+		nodes.put(0, new Node(0));
+		nodes.put(1, new Node(1));
+		this.genesisBlock = TendermintHelper.generateGenesisBlock(1000, nodes);
+
+		this.aliceStore = createStore(0);
+		this.bobStore = createStore(1);
+		this.blockStore = new BlockStore(folder.newFolder("alice").toPath(), true);
+		this.aliceStore.setBlockStore(this.blockStore);
+	}
+
+	/**
+	 * @param id - the id of the own node
+	 * @return   - a local store that knows both nodes
+	 */
+	private LocalStore createStore(int id) {
+		Block genesis = this.genesisBlock.genesisCopy();
+		OwnNode ownNode = new OwnNode(id);
+		Ed25519Key key = new Ed25519Key();
+		ownNode.setPrivateKey(key.getPrivateKey());
+		ownNode.setPublicKey(key.getPublicKey());
+		ownNode.getChain().setGenesisBlock(genesis);
+
+		LocalStore localStore = new LocalStore(ownNode, null, genesis, false);
+		Node other = new Node(1 - id);
+		other.getChain().setGenesisBlock(genesis);
+		localStore.getNodes().put(other.getId(), other);
+		return localStore;
+	}
+
+	/**
+	 * Creates a transaction in a new block, without committing the block.
+	 * @param localStore - the local store of the sender
+	 * @param amount     - the amount
+	 * @return           - the transaction
+	 */
+	private static Transaction send(LocalStore localStore, long amount) {
+		Node receiver = localStore.getNode(1 - localStore.getOwnNode().getId());
+		Block block = localStore.getOwnNode().getChain().appendNewBlock();
+		Transaction transaction = new TransactionCreator(localStore, receiver, amount).createTransaction();
+		block.addTransaction(transaction);
+		return transaction;
+	}
+
+	/**
+	 * Commits the last block of the own chain of the given local store.
+	 * @param localStore - the local store
+	 */
+	private static void commitLastBlock(LocalStore localStore) {
+		localStore.getOwnNode().getChain().getLastBlock().commit(localStore);
+	}
+
+	/**
+	 * Delivers the given transaction to the given receiving store.
+	 * @param transaction - the transaction
+	 * @param receiver    - the local store of the receiver
+	 * @return            - the proof that was sent
+	 * @throws IOException - If the proof cannot be decoded.
+	 */
+	private static Proof deliver(Transaction transaction, LocalStore receiver) throws IOException {
+		Proof proof = new ProofConstructor(transaction).constructProof();
+		Proof decoded = new Proof(new ProofMessage(proof), receiver);
+		assertTrue(CommunicationHelper.receiveTransaction(decoded, receiver));
+		return proof;
+	}
+
+	/**
+	 * Lets alice send a transaction to bob and receive one from bob, committing every block.
+	 * @throws IOException - If a proof cannot be decoded.
+	 */
+	private void exchange() throws IOException {
+		this.sent = send(aliceStore, 100);
+		commitLastBlock(aliceStore);
+		Proof sentProof = deliver(this.sent, bobStore);
+		aliceStore.updateMetaKnowledge(bobStore.getOwnNode(), sentProof.getChainUpdates());
+
+		this.received = send(bobStore, 50);
+		commitLastBlock(bobStore);
+		deliver(this.received, aliceStore);
+		send(aliceStore, 120);
+		commitLastBlock(aliceStore);
+	}
+
+	/**
+	 * Closes the block store of alice and recovers a new local store from it.
+	 * @return - the recovered local store
+	 * @throws IOException - If recovering fails.
+	 */
+	private LocalStore recoverAlice() throws IOException {
+		this.blockStore.close();
+
+		LocalStore recovered = createStore(0);
+		BlockStore reopened = new BlockStore(folder.getRoot().toPath().resolve("alice"), true);
+		assertTrue(reopened.recover(recovered) > 0);
+		return recovered;
+	}
+
+	/**
+	 * Test for {@link BlockStore#recover(LocalStore)} restoring our own chain.
+	 * @throws Exception - If storing or recovering fails.
+	 */
+	@Test
+	public void testRecover_OwnChain() throws Exception {
+		exchange();
+		OwnNode ownNode = recoverAlice().getOwnNode();
+
+		assertEquals(3, ownNode.getChain().getBlocks().size());
+		assertEquals(aliceStore.getOwnNode().getChain().getLastBlock().getHash(), ownNode.getChain().getLastBlock().getHash());
+		assertEquals(ownNode.getChain().getLastBlock(), ownNode.getChain().getLastCommittedBlock());
+	}
+
+	/**
+	 * Test for {@link BlockStore#recover(LocalStore)} restoring our transactions.
+	 * @throws Exception - If storing or recovering fails.
+	 */
+	@Test
+	public void testRecover_Transactions() throws Exception {
+		exchange();
+		LocalStore recovered = recoverAlice();
+
+		assertEquals(aliceStore.getAvailableMoney(), recovered.getAvailableMoney());
+		assertEquals(aliceStore.getUnspent().size(), recovered.getUnspent().size());
+		assertTrue(recovered.getNewTransactionId() > this.sent.getNumber());
+	}
+
+	/**
+	 * Test for {@link BlockStore#recover(LocalStore)} restoring which outputs our own transactions spend.
+	 * @throws Exception - If storing or recovering fails.
+	 */
+	@Test
+	public void testRecover_SpentOutputs() throws Exception {
+		exchange();
+		LocalStore recovered = recoverAlice();
+
+		Transaction spender = recovered.getOwnNode().getChain().getLastBlock().getTransactions().get(0);
+		assertFalse(spender.getSource().isEmpty());
+		for (Transaction source : spender.getSource()) {
+			assertEquals(spender.getNumber(), Chain.of(source).getSpender(source, recovered.getOwnNode()));
+		}
+	}
+
+	/**
+	 * Test for {@link BlockStore#recover(LocalStore)} restoring the chains and meta knowledge of others.
+	 * @throws Exception - If storing or recovering fails.
+	 */
+	@Test
+	public void testRecover_OtherNodes() throws Exception {
+		exchange();
+		LocalStore recovered = recoverAlice();
+
+		assertEquals(2, recovered.getNode(1).getChain().getBlocks().size());
+		assertEquals(1, recovered.getNode(1).getMetaKnowledge().getLastKnownBlockNumber(0));
+	}
+
+	/**
+	 * Test for {@link BlockStore#recover(LocalStore)} where a received transaction is received again.
+	 * @throws Exception - If storing or recovering fails.
+	 */
+	@Test
+	public void testRecover_ReceivedAgain() throws Exception {
+		exchange();
+		LocalStore recovered = recoverAlice();
+
+		Proof again = new Proof(new ProofMessage(new ProofConstructor(this.received).constructProof()), recovered);
+		assertFalse(CommunicationHelper.receiveTransaction(again, recovered));
+	}
+
+	/**
+	 * Test for {@link BlockStore#recover(LocalStore)} where several blocks are committed at once.
+	 * @throws Exception - If storing or recovering fails.
+	 */
+	@Test
+	public void testRecover_SeveralBlocksCommitted() throws Exception {
+		send(aliceStore, 100);
+		send(aliceStore, 200);
+		send(aliceStore, 300);
+		commitLastBlock(aliceStore);
+		LocalStore recovered = recoverAlice();
+
+		Chain chain = recovered.getOwnNode().getChain();
+		assertEquals(4, chain.getBlocks().size());
+		assertEquals(aliceStore.getOwnNode().getChain().getLastBlock().getHash(), chain.getLastBlock().getHash());
+		assertEquals(chain.getLastBlock(), chain.getBlocks().get(1).getNextCommittedBlock());
+		assertEquals(aliceStore.getAvailableMoney(), recovered.getAvailableMoney());
+	}
+
+	/**
+	 * Test for {@link BlockStore#recover(LocalStore)} with an empty store.
+	 * @throws IOException - If recovering fails.
+	 */
+	@Test
+	public void testRecover_Empty() throws IOException {
+		LocalStore recovered = createStore(0);
+		assertEquals(0, new BlockStore(folder.newFolder("empty").toPath(), false).recover(recovered));
+		assertEquals(1000, recovered.getAvailableMoney());
+	}
+}
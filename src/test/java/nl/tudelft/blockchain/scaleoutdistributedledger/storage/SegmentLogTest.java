@@ -0,0 +1,130 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.storage;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link SegmentLog}.
+ */
+public class SegmentLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+
+	/**
+	 * Setup method.
+	 * @throws IOException - If the folder cannot be created.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.directory = folder.newFolder("log").toPath();
+	}
+
+	/**
+	 * @param log     - the log to append to
+	 * @param records - the records to append
+	 * @throws IOException - If appending fails.
+	 */
+	private static void append(SegmentLog log, String... records) throws IOException {
+		for (String record : records) {
+			log.append(ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8)));
+		}
+	}
+
+	/**
+	 * @param log - the log to replay
+	 * @return    - the replayed records
+	 * @throws IOException - If replaying fails.
+	 */
+	private static List<String> replay(SegmentLog log) throws IOException {
+		List<String> records = new ArrayList<>();
+		log.replay(record -> {
+			byte[] bytes = new byte[record.remaining()];
+			record.get(bytes);
+			records.add(new String(bytes, StandardCharsets.UTF_8));
+		});
+		return records;
+	}
+
+	/**
+	 * Test for replaying a log after it was closed.
+	 * @throws IOException - If the log cannot be used.
+	 */
+	@Test
+	public void testReplay() throws IOException {
+		try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+			append(log, "a", "bc", "");
+		}
+
+		try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+			List<String> records = replay(log);
+			append(log, "d");
+			assertEquals(3, records.size());
+			assertEquals("bc", records.get(1));
+		}
+
+		try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+			assertEquals(4, replay(log).size());
+		}
+	}
+
+	/**
+	 * Test for starting a new segment when a segment is full.
+	 * @throws IOException - If the log cannot be used.
+	 */
+	@Test
+	public void testSegments() throws IOException {
+		try (SegmentLog log = new SegmentLog(directory, 32)) {
+			append(log, "0123456789", "0123456789", "0123456789");
+			assertEquals(3, log.getSegmentCount());
+		}
+
+		try (SegmentLog log = new SegmentLog(directory, 32)) {
+			assertEquals(3, replay(log).size());
+		}
+	}
+
+	/**
+	 * Test for replaying a log whose last record was only partially written.
+	 * @throws IOException - If the log cannot be used.
+	 */
+	@Test
+	public void testReplay_DamagedTail() throws IOException {
+		try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+			append(log, "first", "second");
+		}
+
+		//Flip a byte in the last record
+		try (RandomAccessFile file = new RandomAccessFile(directory.resolve("segment-0.log").toFile(), "rw")) {
+			file.seek(file.length() - 1);
+			file.write('x');
+		}
+
+		try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+			List<String> records = replay(log);
+			assertEquals(1, records.size());
+			append(log, "third");
+		}
+
+		try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+			List<String> records = replay(log);
+			assertEquals(2, records.size());
+			assertTrue(records.contains("third"));
+		}
+	}
+}
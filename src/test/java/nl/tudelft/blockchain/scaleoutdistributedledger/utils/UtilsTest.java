@@ -1,5 +1,10 @@
 package nl.tudelft.blockchain.scaleoutdistributedledger.utils;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -43,4 +48,34 @@ public class UtilsTest {
 		byte[] array = new byte[]{0x00, 0x12, (byte) 0xFF};
 		assertEquals("0012ff", Utils.bytesToHexString(array));
 	}
+
+	/**
+	 * Test for {@link Utils#invokeParallel(java.util.Collection, java.util.function.Consumer)}.
+	 */
+	@Test
+	public void testInvokeParallel() {
+		Set<Integer> handled = ConcurrentHashMap.newKeySet();
+		Utils.invokeParallel(Arrays.asList(1, 2, 3), handled::add);
+		assertEquals(3, handled.size());
+	}
+
+	/**
+	 * Test for {@link Utils#invokeParallel(java.util.Collection, java.util.function.Consumer)}
+	 * where the task fails for one of the items.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testInvokeParallel_Exception() {
+		Utils.invokeParallel(Arrays.asList(1, 2), item -> {
+			if (item == 2) throw new IllegalStateException();
+		});
+	}
+
+	/**
+	 * Test for {@link Utils#invokeParallel(java.util.Collection, java.util.function.Consumer)}
+	 * without items.
+	 */
+	@Test
+	public void testInvokeParallel_Empty() {
+		Utils.invokeParallel(Collections.<Integer>emptyList(), item -> fail());
+	}
 }
@@ -0,0 +1,82 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.validation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link ValidationCache}.
+ */
+public class ValidationCacheTest {
+
+	private final Node sender = new Node(1);
+
+	private final Node receiver = new Node(2);
+
+	/**
+	 * @param count - the number of transactions
+	 * @return      - valid results for the given number of transactions
+	 */
+	private Map<Transaction, Boolean> results(int count) {
+		Map<Transaction, Boolean> results = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			results.put(new Transaction(i, sender, receiver, i, 0), true);
+		}
+		return results;
+	}
+
+	/**
+	 * Test for the hit and miss counters.
+	 */
+	@Test
+	public void testGet() {
+		ValidationCache cache = new ValidationCache(10, ValidationCache.DEFAULT_MAX_AGE);
+		Map<Transaction, Boolean> results = results(1);
+		cache.putAll(results);
+
+		assertTrue(cache.get(results.keySet().iterator().next()));
+		assertNull(cache.get(new Transaction(5, sender, receiver, 5, 0)));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * Test for evicting entries when the cache is too large.
+	 */
+	@Test
+	public void testEvictIfNeeded_Size() {
+		ValidationCache cache = new ValidationCache(8, ValidationCache.DEFAULT_MAX_AGE);
+		Map<Transaction, Boolean> results = results(12);
+		cache.putAll(results);
+		Transaction pinned = results.keySet().iterator().next();
+
+		cache.evictIfNeeded(transaction -> transaction == pinned);
+		assertEquals(6, cache.size());
+		assertEquals(6, cache.getEvictions());
+		assertNotNull(cache.get(pinned));
+	}
+
+	/**
+	 * Test for evicting entries that are too old.
+	 */
+	@Test
+	public void testEvictIfNeeded_Age() {
+		ValidationCache cache = new ValidationCache(8, 0);
+		Map<Transaction, Boolean> results = results(2);
+		cache.putAll(results);
+		Transaction pinned = results.keySet().iterator().next();
+
+		cache.evictIfNeeded(transaction -> transaction == pinned);
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get(pinned));
+	}
+}
@@ -0,0 +1,108 @@
+package nl.tudelft.blockchain.scaleoutdistributedledger.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tudelft.blockchain.scaleoutdistributedledger.LocalStore;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Block;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Node;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.OwnNode;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Proof;
+import nl.tudelft.blockchain.scaleoutdistributedledger.model.Transaction;
+import nl.tudelft.blockchain.scaleoutdistributedledger.test.utils.TestHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link Verification}.
+ */
+public class VerificationTest {
+
+	private OwnNode ownNode;
+
+	private Node bobNode;
+
+	private LocalStore localStore;
+
+	private Transaction first;
+
+	/**
+	 * Setup method.
+	 * Applies a block to the chain of bob in which bob spends its genesis transaction.
+	 */
+	@Before
+	public void setUp() {
+		this.ownNode = new OwnNode(0);
+		Block genesisBlock = TestHelper.generateGenesis(this.ownNode, 2, 1000);
+		this.localStore = new LocalStore(this.ownNode, null, genesisBlock, false);
+		this.localStore.getNodes().putAll(TestHelper.getNodeList(genesisBlock));
+		this.bobNode = this.localStore.getNode(1);
+
+		Transaction genesis = this.bobNode.getChain().getGenesisTransaction();
+		this.first = new Transaction(10, this.bobNode, this.localStore.getNode(2), 100, 900, genesis);
+		List<Block> blocks = new ArrayList<>();
+		blocks.add(new Block(1, this.bobNode, new ArrayList<>(Arrays.asList(this.first))));
+		this.bobNode.getChain().update(blocks, this.localStore);
+	}
+
+	/**
+	 * @param transaction - the transaction to send to us in a new block of bob
+	 * @return            - the proof of the transaction
+	 */
+	private Proof proofInNewBlock(Transaction transaction) {
+		Proof proof = new Proof(transaction);
+		Block previous = this.bobNode.getChain().getLastBlock();
+		Block block = new Block(previous.getNumber() + 1, this.bobNode, new ArrayList<>(Arrays.asList(transaction)));
+		block.setPreviousBlock(previous);
+		proof.addBlock(block);
+		return proof;
+	}
+
+	/**
+	 * Test for {@link Verification#validateNewMessage(Proof, LocalStore)} with a transaction that
+	 * spends the remainder of an applied transaction.
+	 */
+	@Test
+	public void testValidateNewMessage_Valid() {
+		Transaction transaction = new Transaction(11, this.bobNode, this.ownNode, 100, 800, this.first);
+		this.localStore.getVerification().validateNewMessage(proofInNewBlock(transaction), this.localStore);
+	}
+
+	/**
+	 * Test for {@link Verification#validateNewMessage(Proof, LocalStore)} with a transaction that
+	 * spends a source that was already spent in an applied block.
+	 */
+	@Test(expected = ValidationException.class)
+	public void testValidateNewMessage_DoubleSpending() {
+		Transaction genesis = this.bobNode.getChain().getGenesisTransaction();
+		Transaction transaction = new Transaction(11, this.bobNode, this.ownNode, 1000, 0, genesis);
+		this.localStore.getVerification().validateNewMessage(proofInNewBlock(transaction), this.localStore);
+	}
+
+	/**
+	 * Test for {@link Verification#validateNewMessage(Proof, LocalStore)} with parallel verification.
+	 */
+	@Test
+	public void testValidateNewMessage_Parallel() {
+		this.localStore.setParallelVerification(true);
+		Transaction transaction = new Transaction(11, this.bobNode, this.ownNode, 100, 800, this.first);
+		this.localStore.getVerification().validateNewMessage(proofInNewBlock(transaction), this.localStore);
+		assertTrue(transaction.isLocallyVerified());
+	}
+
+	/**
+	 * Test for {@link Verification#validateNewMessage(Proof, LocalStore)} with parallel verification
+	 * of a transaction that double spends.
+	 */
+	@Test(expected = ValidationException.class)
+	public void testValidateNewMessage_ParallelDoubleSpending() {
+		this.localStore.setParallelVerification(true);
+		Transaction genesis = this.bobNode.getChain().getGenesisTransaction();
+		Transaction transaction = new Transaction(11, this.bobNode, this.ownNode, 1000, 0, genesis);
+		this.localStore.getVerification().validateNewMessage(proofInNewBlock(transaction), this.localStore);
+	}
+}